@@ -0,0 +1,766 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Threadsafe implementation of LruCache which switches between
+ * SynchronizedLruCache and ConcurrentLruCache engines depending on load.
+ * <p>
+ * Every SAMPLE_INTERVAL-th operation (per thread stripe) is sampled: its
+ * duration and number of operations in flight at the same time are recorded.
+ * After DECISION_SAMPLES samples, if synchronized engine sees average
+ * concurrency of at least CONTENTION_HIGH (and its operations are slower
+ * than last measured concurrent ones) entries are migrated to concurrent
+ * engine. Concurrent engine migrates back when average concurrency drops to
+ * CONTENTION_LOW. Migrations are at least MIN_MIGRATION_INTERVAL apart.
+ * <p>
+ * Migration is done by thread which made the decision. Entries are moved in
+ * LRU order with their TTLs, cache stays fully usable in the meantime -
+ * operations on not yet migrated key move it first. Operations started after
+ * migration began block until ones in progress on previous engine end.
+ * Callables passed to computeIfAbsent and updaters passed to
+ * computeIfPresent are not waited for, so they can use this cache - value
+ * loaded into previous engine is copied to new one afterwards.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class AdaptiveLruCache<K, V> implements LruCache<K, V> {
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    public static final int SAMPLE_INTERVAL = 64;
+    public static final int DECISION_SAMPLES = 256;
+    public static final double CONTENTION_HIGH = 2.0;
+    public static final double CONTENTION_LOW = 1.25;
+    public static final long MIN_MIGRATION_INTERVAL = 1000;
+
+    //counters of different stripes are kept on different cache lines
+    private static final int LONG_PADDING = 8;
+    private static final int INT_PADDING = 16;
+
+    private final int capacity;
+    private final long ttl;
+    private final int concurrencyLevel;
+    private final int stripeMask;
+
+    private volatile State<K, V> state;
+    private volatile Expiry<? super K, ? super V> expiry;
+    private volatile double ttlJitter;
+    private volatile double earlyRefresh;
+    private volatile long timeToIdle;
+    private volatile ValueCodec<V> valueCodec;
+    private volatile int hotSetSize;
+    private volatile long maximumWeight = Long.MAX_VALUE;
+    private volatile HotKeyTracker<? super K> hotKeyTracker;
+    private volatile CacheEventListener eventListener;
+    private final AtomicBoolean migrating = new AtomicBoolean();
+    private final Object[] transferLocks;
+
+    //racy counters, lost increments only shift sampling
+    private final int[] sampleCounters;
+
+    //guarded by this
+    private int samples;
+    private double concurrencySum;
+    private long costSum;
+    private double synchronizedCost;
+    private double concurrentCost;
+    private long lastMigrationTime;
+    private long migrationCount;
+
+    /**
+     * Creates new AdaptiveLruCache, starting with synchronized engine
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @param concurrencyLevel
+     * @throws IllegalArgumentException if capacity, ttl or concurrencyLevel is not positive
+     */
+    public AdaptiveLruCache(int capacity, long ttl, int concurrencyLevel) {
+        if (concurrencyLevel <= 0) throw new IllegalArgumentException("concurrencyLevel must be positive");
+
+        this.capacity = capacity;
+        this.ttl = ttl;
+        this.concurrencyLevel = concurrencyLevel;
+
+        int stripes = 1;
+        while (stripes < concurrencyLevel) stripes <<= 1;
+
+        stripeMask = stripes - 1;
+        sampleCounters = new int[stripes * INT_PADDING];
+        transferLocks = new Object[stripes];
+
+        for (int i = 0; i < stripes; ++i) {
+            transferLocks[i] = new Object();
+        }
+
+        state = new State<K, V>(createEngine(false), null, stripes);
+        lastMigrationTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Creates new AdaptiveLruCache with DEFAULT_CONCURRENCY_LEVEL
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @throws IllegalArgumentException if capacity or ttl is not positive
+     */
+    public AdaptiveLruCache(int capacity, long ttl) {
+        this(capacity, ttl, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    @Override
+    public void clear() {
+        State<K, V> current = enter();
+
+        try {
+            current.engine.clear();
+            if (current.previous != null) current.previous.clear();
+        } finally {
+            exit(current, 0);
+        }
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V get(K key) {
+        State<K, V> current = enter();
+        long start = sampleStart();
+
+        try {
+            return engine(current, key).get(key);
+        } finally {
+            exit(current, start);
+        }
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable, long ttl) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, final Callable<V> callable, long ttl) throws Exception {
+        final State<K, V> current = enter();
+        final boolean[] migrated = new boolean[1];
+        V value;
+
+        try {
+            value = engine(current, key).computeIfAbsent(key, new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    int stripe = stripe();
+
+                    //migration doesn't wait for callable, it may even use this cache
+                    current.exit(stripe);
+
+                    try {
+                        return callable.call();
+                    } finally {
+                        current.enter(stripe);
+                        migrated[0] = state != current;
+                    }
+                }
+            }, ttl);
+        } finally {
+            exit(current, 0);
+        }
+
+        //loaded value went to engine which is being or was migrated
+        if (migrated[0] && value != null) copyLoaded(current.engine, key, value, ttl);
+
+        return value;
+    }
+
+    /**
+     * Copies value loaded into previous engine to current one
+     */
+    private void copyLoaded(BaseLruCache<K, V> previous, K key, V value, long ttl) {
+        State<K, V> current = enter();
+
+        try {
+            BaseLruCache<K, V> engine = engine(current, key);
+
+            //if previous engine is still being migrated entry was already moved by engine()
+            if (current.previous != previous) engine.putIfAbsent(key, value, ttl);
+        } finally {
+            exit(current, 0);
+        }
+    }
+
+    @Override
+    public V computeIfPresent(K key, ValueUpdater<K, V> updater) throws Exception {
+        for (;;) {
+            V value = getPresent(key);
+
+            if (value == null) return null;
+
+            //updater runs outside of any operation, so migration doesn't wait for it
+            V newValue = updater.update(key, value);
+
+            if (newValue == null) {
+                if (remove(key, value)) return null;
+            } else {
+                if (replace(key, value, newValue)) return newValue;
+            }
+        }
+    }
+
+    /**
+     * Returns current value of key without recording access
+     */
+    private V getPresent(K key) {
+        State<K, V> current = enter();
+
+        try {
+            BaseLruCache<K, V> engine = engine(current, key);
+            LruCacheEntry<V> entry;
+
+            if (engine instanceof SynchronizedLruCache) {
+                //engine monitor is needed by SynchronizedLruCache primitives
+                synchronized (engine) {
+                    entry = engine.getEntry(key);
+                }
+            } else {
+                entry = engine.getEntry(key);
+            }
+
+            return entry != null ? entry.getValue() : null;
+        } finally {
+            exit(current, 0);
+        }
+    }
+
+    @Override
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns number of migrations between engines done so far
+     *
+     * @return
+     */
+    synchronized public long getMigrationCount() {
+        return migrationCount;
+    }
+
+    @Override
+    public long getSize() {
+        State<K, V> current = state;
+        long size = current.engine.getSize();
+
+        if (current.previous != null) size += current.previous.getSize();
+
+        return size;
+    }
+
+    @Override
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Checks whether cache currently uses concurrent engine
+     *
+     * @return
+     */
+    public boolean isConcurrent() {
+        return state.engine instanceof ConcurrentLruCache;
+    }
+
+    /**
+     * Sets Expiry used to compute lifetime of entries
+     *
+     * @param expiry Expiry or null to use requested ttls
+     * @see BaseLruCache#setExpiry(Expiry)
+     */
+    public void setExpiry(Expiry<? super K, ? super V> expiry) {
+        this.expiry = expiry;
+        configureEngines();
+    }
+
+    /**
+     * Sets random reduction of entry lifetimes
+     *
+     * @param ttlJitter fraction of ttl from 0 (disabled) to 1
+     * @throws IllegalArgumentException if ttlJitter is out of range
+     * @see BaseLruCache#setTtlJitter(double)
+     */
+    public void setTtlJitter(double ttlJitter) {
+        if (!(ttlJitter >= 0 && ttlJitter < 1)) throw new IllegalArgumentException("ttlJitter must be in [0, 1)");
+
+        this.ttlJitter = ttlJitter;
+        configureEngines();
+    }
+
+    /**
+     * Enables probabilistic early refresh
+     *
+     * @param beta 0 disables early refresh, 1 is usual value
+     * @throws IllegalArgumentException if beta is negative
+     * @see BaseLruCache#setEarlyRefresh(double)
+     */
+    public void setEarlyRefresh(double beta) {
+        if (!(beta >= 0)) throw new IllegalArgumentException("beta can't be negative");
+
+        earlyRefresh = beta;
+        configureEngines();
+    }
+
+    /**
+     * Enables expire-after-access
+     *
+     * @param timeToIdle time to idle in milliseconds, 0 disables it
+     * @throws IllegalArgumentException if timeToIdle is negative
+     * @see BaseLruCache#setTimeToIdle(long)
+     */
+    public void setTimeToIdle(long timeToIdle) {
+        if (timeToIdle < 0) throw new IllegalArgumentException("timeToIdle can't be negative");
+
+        this.timeToIdle = timeToIdle;
+        configureEngines();
+    }
+
+    /**
+     * Enables store-by-value mode
+     *
+     * @param valueCodec codec or null to store values as they are
+     * @param hotSetSize number of decoded values kept, 0 to decode on every read
+     * @throws IllegalArgumentException if hotSetSize is negative
+     * @see BaseLruCache#setValueCodec(ValueCodec, int)
+     */
+    public void setValueCodec(ValueCodec<V> valueCodec, int hotSetSize) {
+        if (hotSetSize < 0) throw new IllegalArgumentException("hotSetSize can't be negative");
+
+        this.valueCodec = valueCodec;
+        this.hotSetSize = hotSetSize;
+        configureEngines();
+    }
+
+    /**
+     * Limits total weight of entries
+     *
+     * @param maximumWeight
+     * @throws IllegalArgumentException if maximumWeight is not positive
+     * @see ConcurrentLruCache#setMaximumWeight(long)
+     */
+    public void setMaximumWeight(long maximumWeight) {
+        if (maximumWeight <= 0) throw new IllegalArgumentException("maximumWeight must be positive");
+
+        this.maximumWeight = maximumWeight;
+        configureEngines();
+    }
+
+    /**
+     * Sets tracker which records reads to report hottest keys
+     *
+     * @param hotKeyTracker tracker or null to disable tracking
+     * @see BaseLruCache#setHotKeyTracker(HotKeyTracker)
+     */
+    public void setHotKeyTracker(HotKeyTracker<? super K> hotKeyTracker) {
+        this.hotKeyTracker = hotKeyTracker;
+        configureEngines();
+    }
+
+    /**
+     * Sets listener of cache events
+     *
+     * @param eventListener listener or null to disable events
+     * @see BaseLruCache#setEventListener(CacheEventListener)
+     */
+    public void setEventListener(CacheEventListener eventListener) {
+        this.eventListener = eventListener;
+        configureEngines();
+    }
+
+    private void configureEngines() {
+        State<K, V> current = state;
+
+        configure(current.engine);
+        if (current.previous != null) configure(current.previous);
+    }
+
+    private void configure(BaseLruCache<K, V> engine) {
+        engine.setExpiry(expiry);
+        engine.setTtlJitter(ttlJitter);
+        engine.setEarlyRefresh(earlyRefresh);
+        engine.setTimeToIdle(timeToIdle);
+        engine.setValueCodec(valueCodec, hotSetSize);
+        engine.setHotKeyTracker(hotKeyTracker);
+        engine.setEventListener(eventListener);
+
+        if (engine instanceof ConcurrentLruCache) ((ConcurrentLruCache<K, V>) engine).setMaximumWeight(maximumWeight);
+        else ((SynchronizedLruCache<K, V>) engine).setMaximumWeight(maximumWeight);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        put(key, value, ttl);
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
+        State<K, V> current = enter();
+        long start = sampleStart();
+
+        try {
+            engine(current, key).put(key, value, ttl);
+        } finally {
+            exit(current, start);
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putIfAbsent(key, value, ttl);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value, long ttl) {
+        State<K, V> current = enter();
+
+        try {
+            return engine(current, key).putIfAbsent(key, value, ttl);
+        } finally {
+            exit(current, 0);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        State<K, V> current = enter();
+
+        try {
+            engine(current, key).remove(key);
+        } finally {
+            exit(current, 0);
+        }
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        State<K, V> current = enter();
+
+        try {
+            return engine(current, key).remove(key, value);
+        } finally {
+            exit(current, 0);
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        State<K, V> current = enter();
+
+        try {
+            return engine(current, key).replace(key, oldValue, newValue);
+        } finally {
+            exit(current, 0);
+        }
+    }
+
+    /**
+     * Moves all entries to other engine. Does nothing if migration is
+     * already in progress.
+     *
+     * @param toConcurrent target engine
+     */
+    void migrate(boolean toConcurrent) {
+        if (!migrating.compareAndSet(false, true)) return;
+
+        try {
+            State<K, V> old = state;
+
+            if ((old.engine instanceof ConcurrentLruCache) == toConcurrent) return;
+
+            State<K, V> migration = new State<K, V>(createEngine(toConcurrent), old.engine, stripeMask + 1);
+
+            //from now on nobody starts operation on old state, wait for ones in progress
+            state = migration;
+            //after state is published, so concurrent setters can't be missed
+            configure(migration.engine);
+            old.awaitQuiescence();
+            migration.markReady();
+
+            //least recently used first, so LRU order is preserved
+            for (Map.Entry<K, LruCacheEntry<V>> entry : orderedEntries(old.engine)) {
+                transfer(migration, entry.getKey());
+            }
+
+            state = new State<K, V>(migration.engine, null, stripeMask + 1);
+            migration.awaitQuiescence();
+            old.engine.clear();
+
+            synchronized (this) {
+                lastMigrationTime = System.currentTimeMillis();
+                ++migrationCount;
+            }
+        } finally {
+            migrating.set(false);
+        }
+    }
+
+    private BaseLruCache<K, V> createEngine(boolean concurrent) {
+        if (concurrent) return new ConcurrentLruCache<K, V>(capacity, ttl, ConcurrentLruCache.DEFAULT_INITIAL_CAPACITY, concurrencyLevel);
+        else return new SynchronizedLruCache<K, V>(capacity, ttl);
+    }
+
+    private List<Map.Entry<K, LruCacheEntry<V>>> orderedEntries(BaseLruCache<K, V> engine) {
+        if (engine instanceof ConcurrentLruCache) return ((ConcurrentLruCache<K, V>) engine).orderedEntries();
+        else return ((SynchronizedLruCache<K, V>) engine).orderedEntries();
+    }
+
+    /**
+     * Returns engine which should be used for key, moving key to new engine
+     * first if migration is in progress
+     */
+    private BaseLruCache<K, V> engine(State<K, V> current, K key) {
+        if (current.previous != null) {
+            //operations started before migration may still use previous engine
+            current.awaitReady();
+
+            transfer(current, key);
+        }
+
+        return current.engine;
+    }
+
+    /**
+     * Moves entry of key from previous engine to current one. Entry which was
+     * moved or removed in the meantime is left alone.
+     */
+    private void transfer(State<K, V> migration, K key) {
+        BaseLruCache<K, V> previous = migration.previous;
+        BaseLruCache<K, V> engine = migration.engine;
+
+        synchronized (transferLocks[Hashing.spread(key.hashCode()) & stripeMask]) {
+            LruCacheEntry<V> entry;
+
+            //engine monitors are needed by SynchronizedLruCache primitives
+            synchronized (previous) {
+                entry = previous.getEntry(key);
+
+                if (entry == null || !previous.removeEntry(key, entry)) return;
+            }
+
+            if (BaseLruCache.isValid(entry)) {
+                synchronized (engine) {
+                    engine.putEntryIfAbsent(key, entry);
+                }
+            }
+        }
+    }
+
+    private int stripe() {
+        return (int) Thread.currentThread().getId() & stripeMask;
+    }
+
+    private State<K, V> enter() {
+        int stripe = stripe();
+
+        for (;;) {
+            State<K, V> current = state;
+
+            current.enter(stripe);
+
+            //migration could start between read and increment
+            if (state == current) return current;
+
+            current.exit(stripe);
+        }
+    }
+
+    private long sampleStart() {
+        int index = stripe() * INT_PADDING;
+
+        if (++sampleCounters[index] % SAMPLE_INTERVAL != 0) return 0;
+
+        return System.nanoTime();
+    }
+
+    private void exit(State<K, V> current, long start) {
+        int concurrency = start != 0 ? current.inFlight() : 0;
+
+        current.exit(stripe());
+
+        if (start != 0) recordSample(current, concurrency, System.nanoTime() - start);
+    }
+
+    /**
+     * Records sample of operation which ran on current engine and migrates
+     * entries if decision is made
+     *
+     * @param concurrency number of operations in flight
+     * @param cost duration of operation in nanoseconds
+     */
+    void recordSample(int concurrency, long cost) {
+        recordSample(state, concurrency, cost);
+    }
+
+    private void recordSample(State<K, V> current, int concurrency, long cost) {
+        Boolean toConcurrent = null;
+
+        synchronized (this) {
+            samples++;
+            concurrencySum += concurrency;
+            costSum += cost;
+
+            if (samples < DECISION_SAMPLES) return;
+
+            double averageConcurrency = concurrencySum / samples;
+            double averageCost = (double) costSum / samples;
+            boolean concurrent = current.engine instanceof ConcurrentLruCache;
+
+            samples = 0;
+            concurrencySum = 0;
+            costSum = 0;
+
+            if (concurrent) concurrentCost = averageCost;
+            else synchronizedCost = averageCost;
+
+            if (current.previous != null || System.currentTimeMillis() - lastMigrationTime < MIN_MIGRATION_INTERVAL) return;
+
+            if (concurrent && averageConcurrency <= CONTENTION_LOW) {
+                toConcurrent = Boolean.FALSE;
+            } else if (!concurrent && averageConcurrency >= CONTENTION_HIGH && (concurrentCost == 0 || synchronizedCost > concurrentCost)) {
+                toConcurrent = Boolean.TRUE;
+            }
+        }
+
+        if (toConcurrent != null) migrate(toConcurrent);
+    }
+
+    /**
+     * Engine currently in use together with counters of operations in
+     * progress on it
+     */
+    private static final class State<K, V> {
+        final BaseLruCache<K, V> engine;
+        //engine entries are migrated from (null if no migration is in progress)
+        final BaseLruCache<K, V> previous;
+        //set when no operation uses previous engine through old state anymore
+        private volatile boolean ready;
+        //set when migration waits for operations in progress to end
+        private volatile boolean quiescing;
+
+        private final AtomicLongArray inFlight;
+
+        State(BaseLruCache<K, V> engine, BaseLruCache<K, V> previous, int stripes) {
+            this.engine = engine;
+            this.previous = previous;
+            inFlight = new AtomicLongArray(stripes * LONG_PADDING);
+        }
+
+        void enter(int stripe) {
+            inFlight.incrementAndGet(stripe * LONG_PADDING);
+        }
+
+        void exit(int stripe) {
+            inFlight.decrementAndGet(stripe * LONG_PADDING);
+
+            //quiescing is read after decrement, so waiting thread either sees it or gets notified
+            if (quiescing) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        int inFlight() {
+            long count = 0;
+
+            for (int i = 0; i < inFlight.length(); i += LONG_PADDING) {
+                count += inFlight.get(i);
+            }
+
+            return (int) count;
+        }
+
+        /**
+         * Blocks until no operation is in progress on this state
+         */
+        void awaitQuiescence() {
+            boolean interrupted = false;
+
+            quiescing = true;
+
+            synchronized (this) {
+                while (inFlight() != 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        //migration has to finish, interrupt is restored afterwards
+                        interrupted = true;
+                    }
+                }
+            }
+
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+
+        synchronized void markReady() {
+            ready = true;
+            notifyAll();
+        }
+
+        /**
+         * Blocks until operations started on previous state end
+         */
+        void awaitReady() {
+            if (ready) return;
+
+            boolean interrupted = false;
+
+            synchronized (this) {
+                while (!ready) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.LinkedHashMap;
+
+/**
+ * ARC (adaptive replacement cache) policy. Resident keys are split between
+ * T1 (seen once recently) and T2 (seen at least twice), evicted keys are
+ * remembered in ghost lists B1 and B2. Hits in ghost lists adapt target size
+ * of T1, so policy balances recency and frequency for current workload.
+ *
+ * @param <K> class used as key of cache
+ * @author Damian Momot
+ */
+public class ArcEvictionPolicy<K> implements EvictionPolicy<K> {
+    private final int capacity;
+    private final LinkedHashMap<K, Boolean> t1 = new LinkedHashMap<K, Boolean>();
+    private final LinkedHashMap<K, Boolean> t2 = new LinkedHashMap<K, Boolean>();
+    private final LinkedHashMap<K, Boolean> b1 = new LinkedHashMap<K, Boolean>();
+    private final LinkedHashMap<K, Boolean> b2 = new LinkedHashMap<K, Boolean>();
+
+    //target size of T1
+    private int p;
+    private boolean lastInsertHitB2;
+
+    /**
+     * Creates ARC policy
+     *
+     * @param capacity capacity of cache using this policy
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public ArcEvictionPolicy(int capacity) {
+        PolicyLists.checkCapacity(capacity);
+
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        if (t1.remove(key) != null) t2.put(key, Boolean.TRUE);
+        else if (t2.containsKey(key)) PolicyLists.moveToTail(t2, key);
+    }
+
+    @Override
+    public void recordInsert(K key) {
+        lastInsertHitB2 = false;
+
+        if (b1.remove(key) != null) {
+            p = Math.min(capacity, p + Math.max(1, b2.size() / (b1.size() + 1)));
+            t2.put(key, Boolean.TRUE);
+        } else if (b2.remove(key) != null) {
+            p = Math.max(0, p - Math.max(1, b1.size() / (b2.size() + 1)));
+            t2.put(key, Boolean.TRUE);
+            lastInsertHitB2 = true;
+        } else {
+            t1.put(key, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void recordRemove(K key) {
+        if (t1.remove(key) == null) t2.remove(key);
+    }
+
+    @Override
+    public K selectVictim() {
+        K key;
+
+        if (!t1.isEmpty() && (t1.size() > p || (lastInsertHitB2 && t1.size() == p) || t2.isEmpty())) {
+            key = PolicyLists.removeEldest(t1);
+            b1.put(key, Boolean.TRUE);
+        } else {
+            key = PolicyLists.removeEldest(t2);
+            b2.put(key, Boolean.TRUE);
+        }
+
+        //|T1| + |B1| <= c and whole directory <= 2c
+        PolicyLists.trim(b1, Math.max(0, capacity - t1.size()));
+        PolicyLists.trim(b2, Math.max(0, 2 * capacity - t1.size() - t2.size() - b1.size()));
+
+        return key;
+    }
+
+    @Override
+    public void clear() {
+        t1.clear();
+        t2.clear();
+        b1.clear();
+        b2.clear();
+        p = 0;
+    }
+}
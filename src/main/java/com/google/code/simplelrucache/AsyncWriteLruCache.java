@@ -0,0 +1,186 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * LruCache wrapper which applies put(K, V) and remove(K) asynchronously.
+ * Callers only add write to bounded queue, single drain thread applies
+ * queued writes in batches. Repeated writes of the same key are coalesced -
+ * only the last one is applied. It takes cache lock and eviction off the
+ * caller thread, which helps write heavy users of SynchronizedLruCache.
+ * <p>
+ * Pending writes are visible to get(K) and contains(K) of this wrapper, but
+ * not to getSize(). Other operations on key (putIfAbsent, replace,
+ * computeIfAbsent...) apply its pending write first and run synchronously.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class AsyncWriteLruCache<K, V> extends ForwardingLruCache<K, V> {
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    /**
+     * Pending put, or remove if value is null
+     *
+     * @param <V>
+     */
+    private static final class Write<V> {
+        final V value;
+        final long ttl;
+
+        Write(V value, long ttl) {
+            this.value = value;
+            this.ttl = ttl;
+        }
+    }
+
+    private final WriteBuffer<K, Write<V>> writes;
+
+    /**
+     * Creates AsyncWriteLruCache and starts its drain thread
+     *
+     * @param cache cache which receives writes
+     * @param queueCapacity max number of queued keys
+     * @param backpressurePolicy what to do when queue is full
+     * @throws IllegalArgumentException if cache or backpressurePolicy is null or queueCapacity is not positive
+     */
+    public AsyncWriteLruCache(LruCache<K, V> cache, int queueCapacity, BackpressurePolicy backpressurePolicy) {
+        super(cache);
+
+        writes = new WriteBuffer<K, Write<V>>(queueCapacity, backpressurePolicy, "AsyncWriteLruCache-drain") {
+            @Override
+            protected void apply(K key, Write<V> write) {
+                if (write.value != null) AsyncWriteLruCache.this.cache.put(key, write.value, write.ttl);
+                else AsyncWriteLruCache.this.cache.remove(key);
+            }
+        };
+        writes.start();
+    }
+
+    /**
+     * Creates AsyncWriteLruCache with DEFAULT_QUEUE_CAPACITY which blocks
+     * callers when queue is full
+     *
+     * @param cache cache which receives writes
+     * @throws IllegalArgumentException if cache is null
+     */
+    public AsyncWriteLruCache(LruCache<K, V> cache) {
+        this(cache, DEFAULT_QUEUE_CAPACITY, BackpressurePolicy.BLOCK);
+    }
+
+    /**
+     * Applies pending writes and stops drain thread. Later writes are applied
+     * synchronously by calling thread.
+     *
+     * @throws InterruptedException if interrupted while waiting for drain thread
+     */
+    public void close() throws InterruptedException {
+        writes.close();
+    }
+
+    /**
+     * Applies all pending writes on caller thread
+     */
+    public void flush() {
+        writes.flush();
+    }
+
+    /**
+     * Returns number of writes waiting to be applied
+     *
+     * @return
+     */
+    public int getPendingWrites() {
+        return writes.getPendingCount();
+    }
+
+    @Override
+    public void clear() {
+        writes.clear();
+        cache.clear();
+    }
+
+    @Override
+    public boolean contains(K key) {
+        Write<V> write = writes.getPending(key);
+
+        return write != null ? write.value != null : cache.contains(key);
+    }
+
+    @Override
+    public V get(K key) {
+        Write<V> write = writes.getPending(key);
+
+        return write != null ? write.value : cache.get(key);
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable, long ttl) throws Exception {
+        writes.flush(key);
+
+        return cache.get(key, callable, ttl);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable, long ttl) throws Exception {
+        writes.flush(key);
+
+        return cache.computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V computeIfPresent(K key, ValueUpdater<K, V> updater) throws Exception {
+        writes.flush(key);
+
+        return cache.computeIfPresent(key, updater);
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
+        if (value == null) return;
+
+        writes.submit(key, new Write<V>(value, ttl));
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value, long ttl) {
+        writes.flush(key);
+
+        return cache.putIfAbsent(key, value, ttl);
+    }
+
+    @Override
+    public void remove(K key) {
+        writes.submit(key, new Write<V>(null, 0));
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        writes.flush(key);
+
+        return cache.remove(key, value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        writes.flush(key);
+
+        return cache.replace(key, oldValue, newValue);
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ * Decides what happens with asynchronous write when write queue is full
+ *
+ * @author Damian Momot
+ */
+public enum BackpressurePolicy {
+	/** Caller waits until queue has free space */
+	BLOCK,
+	/** Write is dropped, writes of other callers coalesced into it are applied on caller thread */
+	DISCARD,
+	/** Write is applied synchronously on caller thread */
+	CALLER_RUNS
+}
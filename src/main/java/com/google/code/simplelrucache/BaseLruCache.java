@@ -15,6 +15,10 @@
  */
 package com.google.code.simplelrucache;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.Callable;
 
 /**
@@ -23,7 +27,22 @@ import java.util.concurrent.Callable;
  * @author Damian Momot
  */
 abstract class BaseLruCache<K, V> implements LruCache<K, V> {
+    private static final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
     private final long ttl;
+    private volatile Expiry<? super K, ? super V> expiry;
+    private volatile double ttlJitter;
+    private volatile double earlyRefresh;
+    private volatile long timeToIdle;
+    private volatile ValueCodec<V> valueCodec;
+    private volatile HotValueSet<V> hotValues;
+    private volatile HotKeyTracker<? super K> hotKeyTracker;
+    private volatile CacheEventListener eventListener;
 
     /**
      * Constructs BaseLruCache
@@ -55,7 +74,102 @@ abstract class BaseLruCache<K, V> implements LruCache<K, V> {
      * @return
      */
     protected LruCacheEntry<V> createEntry(V value, long ttl) {
-        return new StrongReferenceCacheEntry<V>(value, ttl);
+        ValueCodec<V> valueCodec = this.valueCodec;
+
+        if (valueCodec != null) return new CompressedCacheEntry<V>(value, ttl, valueCodec, hotValues);
+        else return new StrongReferenceCacheEntry<V>(value, ttl);
+    }
+
+    /**
+     * Checks whether entry is valid, without decoding its value if possible
+     *
+     * @param entry
+     * @return
+     */
+    static boolean isValid(LruCacheEntry<?> entry) {
+        if (entry instanceof ExpiringCacheEntry) return ((ExpiringCacheEntry<?>) entry).isValid();
+        else return entry.getValue() != null;
+    }
+
+    /**
+     * Checks whether entry is valid and its value equals value
+     *
+     * @param entry entry or null
+     * @param value
+     * @return
+     */
+    static <V> boolean holdsValue(LruCacheEntry<V> entry, V value) {
+        if (entry == null) return false;
+
+        V currentValue = entry.getValue();
+
+        return currentValue != null && currentValue.equals(value);
+    }
+
+    /**
+     * Returns weight of entry used by weight based eviction - size of
+     * encoded value for entries created with ValueCodec, 1 otherwise
+     *
+     * @param entry
+     * @return
+     */
+    static int weigh(LruCacheEntry<?> entry) {
+        if (entry instanceof CompressedCacheEntry) return ((CompressedCacheEntry<?>) entry).getWeight();
+        else return 1;
+    }
+
+    /**
+     * Creates entry which unconditionally replaces current entry of key
+     *
+     * @param key
+     * @param value
+     * @param ttl requested ttl
+     * @return entry or null if it would expire immediately
+     */
+    LruCacheEntry<V> newPutEntry(K key, V value, long ttl) {
+        //current entry is needed only by Expiry
+        return newEntry(key, value, ttl, expiry != null ? getEntry(key) : null);
+    }
+
+    /**
+     * Creates entry for key, lifetime is computed by Expiry if it's set
+     *
+     * @param key
+     * @param value
+     * @param ttl requested ttl
+     * @param currentEntry entry which is being replaced or null
+     * @return entry or null if it would expire immediately
+     */
+    LruCacheEntry<V> newEntry(K key, V value, long ttl, LruCacheEntry<V> currentEntry) {
+        Expiry<? super K, ? super V> expiry = this.expiry;
+
+        if (expiry != null) {
+            if (currentEntry != null && isValid(currentEntry)) {
+                long currentDuration = ttl;
+
+                if (currentEntry instanceof ExpiringCacheEntry) {
+                    currentDuration = ((ExpiringCacheEntry<V>) currentEntry).getExpirationTime() - System.currentTimeMillis();
+                }
+
+                ttl = expiry.expireAfterUpdate(key, value, ttl, currentDuration);
+            } else {
+                ttl = expiry.expireAfterCreate(key, value, ttl);
+            }
+
+            if (ttl <= 0) return null;
+        }
+
+        double ttlJitter = this.ttlJitter;
+
+        //entries created together shouldn't expire at the same moment
+        if (ttlJitter > 0) ttl = Math.max(1, ttl - (long) (ttl * ttlJitter * random.get().nextDouble()));
+
+        LruCacheEntry<V> entry = createEntry(value, ttl);
+        long timeToIdle = this.timeToIdle;
+
+        if (timeToIdle > 0 && entry instanceof ExpiringCacheEntry) ((ExpiringCacheEntry<V>) entry).touch(System.currentTimeMillis(), timeToIdle);
+
+        return entry;
     }
 
     @Override
@@ -70,15 +184,121 @@ abstract class BaseLruCache<K, V> implements LruCache<K, V> {
 
     @Override
     public V get(K key, Callable<V> callable, long ttl) throws Exception {
-        V value = get(key);
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable, long ttl) throws Exception {
+        LruCacheEntry<V> cacheEntry = getValidEntry(key);
+        V value = cacheEntry != null ? cacheEntry.getValue() : null;
 
-        //if element doesn't exist create it using callable
-        if (value == null) {
-            value = callable.call();
-            put(key, value, ttl);
+        if (value != null) {
+            if (!isRefreshDue(cacheEntry)) return value;
+        } else {
+            cacheEntry = null;
         }
 
-        return value;
+        //if element doesn't exist (or should be refreshed early) create it using callable
+        long start = System.nanoTime();
+        V newValue = load(key, callable, start);
+
+        if (newValue == null) return value;
+
+        LruCacheEntry<V> entry = newEntry(key, newValue, ttl, cacheEntry);
+
+        //value which expires immediately still replaces refreshed one
+        if (entry == null) {
+            if (cacheEntry != null) removeEntry(key, cacheEntry);
+
+            return newValue;
+        }
+
+        if (entry instanceof ExpiringCacheEntry) ((ExpiringCacheEntry<V>) entry).setLoadTime(System.nanoTime() - start);
+
+        //don't overwrite value stored by other thread in the meantime
+        V current = storeEntry(key, cacheEntry, entry);
+
+        return current != null ? current : newValue;
+    }
+
+    /**
+     * Calls callable and reports load to event listener
+     *
+     * @param key
+     * @param callable
+     * @param start System.nanoTime() before load
+     * @return
+     * @throws Exception
+     */
+    private V load(K key, Callable<V> callable, long start) throws Exception {
+        CacheEventListener eventListener = this.eventListener;
+
+        if (eventListener == null) return callable.call();
+
+        try {
+            V value = callable.call();
+
+            eventListener.onLoad(key, System.nanoTime() - start, value != null ? CacheEventListener.LoadOutcome.LOADED : CacheEventListener.LoadOutcome.NULL);
+
+            return value;
+        } catch (Exception e) {
+            eventListener.onLoad(key, System.nanoTime() - start, CacheEventListener.LoadOutcome.FAILED);
+            throw e;
+        }
+    }
+
+    /**
+     * Checks whether valid entry should be recomputed before it expires.
+     * Probability grows as expiration time comes closer and with time it took
+     * to load the value (XFetch).
+     *
+     * @param cacheEntry
+     * @return
+     */
+    private boolean isRefreshDue(LruCacheEntry<V> cacheEntry) {
+        double earlyRefresh = this.earlyRefresh;
+
+        if (earlyRefresh <= 0 || !(cacheEntry instanceof ExpiringCacheEntry)) return false;
+
+        ExpiringCacheEntry<V> entry = (ExpiringCacheEntry<V>) cacheEntry;
+        long loadTime = entry.getLoadTime();
+
+        if (loadTime <= 0) return false;
+
+        //-log(random) is exponentially distributed with mean 1
+        double gap = loadTime / 1000000.0 * earlyRefresh * -Math.log(1.0 - random.get().nextDouble());
+
+        return System.currentTimeMillis() + gap >= entry.getExpirationTime();
+    }
+
+    @Override
+    public V computeIfPresent(K key, ValueUpdater<K, V> updater) throws Exception {
+        for (;;) {
+            LruCacheEntry<V> cacheEntry = getEntry(key);
+
+            if (cacheEntry == null) return null;
+
+            V value = cacheEntry.getValue();
+
+            if (value == null) {
+                removeEntry(key, cacheEntry);
+                return null;
+            }
+
+            V newValue = updater.update(key, value);
+            LruCacheEntry<V> newEntry = newValue != null ? newEntry(key, newValue, ttl, cacheEntry) : null;
+
+            if (newEntry == null) {
+                if (removeEntry(key, cacheEntry)) return null;
+            } else {
+                if (replaceEntry(key, cacheEntry, newEntry)) return newValue;
+            }
+        }
     }
 
     @Override
@@ -102,18 +322,189 @@ abstract class BaseLruCache<K, V> implements LruCache<K, V> {
      * @return
      */
     protected V getValue(K key) {
-        V value = null;
+        LruCacheEntry<V> cacheEntry = getValidEntry(key);
+
+        return cacheEntry != null ? cacheEntry.getValue() : null;
+    }
+
+    /**
+     * Returns entry mapped by key if it's valid. Automatically removes entry
+     * if it's not valid.
+     *
+     * @param key
+     * @return valid entry or null
+     */
+    protected LruCacheEntry<V> getValidEntry(K key) {
+        HotKeyTracker<? super K> hotKeyTracker = this.hotKeyTracker;
+
+        if (hotKeyTracker != null) hotKeyTracker.record(key);
 
         LruCacheEntry<V> cacheEntry = getEntry(key);
 
-        if (cacheEntry != null) {
-            value = cacheEntry.getValue();
+        if (cacheEntry == null) return null;
 
-            //autoremove entry from cache if it's not valid
-            if (value == null) remove(key);
+        //autoremove entry from cache if it's not valid (and wasn't replaced in the meantime)
+        if (!isValid(cacheEntry)) {
+            removeEntry(key, cacheEntry);
+            return null;
         }
 
-        return value;
+        if (expiry != null) afterRead(key, cacheEntry);
+
+        long timeToIdle = this.timeToIdle;
+
+        //engines reorder entry on read, so idle entries are found at LRU end
+        if (timeToIdle > 0 && cacheEntry instanceof ExpiringCacheEntry) ((ExpiringCacheEntry<V>) cacheEntry).touch(System.currentTimeMillis(), timeToIdle);
+
+        return cacheEntry;
+    }
+
+    /**
+     * Lets Expiry change lifetime of entry which was just read
+     *
+     * @param key
+     * @param cacheEntry
+     */
+    private void afterRead(K key, LruCacheEntry<V> cacheEntry) {
+        Expiry<? super K, ? super V> expiry = this.expiry;
+
+        if (expiry == null || !(cacheEntry instanceof ExpiringCacheEntry)) return;
+
+        V value = cacheEntry.getValue();
+
+        if (value == null) return;
+
+        ExpiringCacheEntry<V> entry = (ExpiringCacheEntry<V>) cacheEntry;
+        long now = System.currentTimeMillis();
+        long currentDuration = entry.getExpirationTime() - now;
+        long duration = expiry.expireAfterRead(key, value, currentDuration);
+
+        if (duration != currentDuration) entry.setTtl(now, duration);
+    }
+
+    /**
+     * Copies up to limit valid values into ordered map
+     *
+     * @param entries
+     * @param limit
+     * @return map ordered as entries
+     */
+    protected Map<K, V> getValidValues(Iterator<Map.Entry<K, LruCacheEntry<V>>> entries, int limit) {
+        Map<K, V> values = new LinkedHashMap<K, V>();
+        Iterator<Map.Entry<K, V>> iterator = new ValidEntryIterator<K, V>(entries);
+
+        while (values.size() < limit && iterator.hasNext()) {
+            Map.Entry<K, V> entry = iterator.next();
+
+            values.put(entry.getKey(), entry.getValue());
+        }
+
+        return values;
+    }
+
+    /**
+     * Sets Expiry used to compute lifetime of entries from their keys and
+     * values. Ttl passed to put or get (or default one) is only a hint given
+     * to Expiry.
+     *
+     * @param expiry Expiry or null to use requested ttls
+     */
+    public void setExpiry(Expiry<? super K, ? super V> expiry) {
+        this.expiry = expiry;
+    }
+
+    /**
+     * Sets random reduction of entry lifetimes, so entries created at the
+     * same time don't expire at the same moment. Each ttl is shortened by
+     * random amount up to ttlJitter * ttl.
+     *
+     * @param ttlJitter fraction of ttl from 0 (disabled) to 1
+     * @throws IllegalArgumentException if ttlJitter is out of range
+     */
+    public void setTtlJitter(double ttlJitter) {
+        if (!(ttlJitter >= 0 && ttlJitter < 1)) throw new IllegalArgumentException("ttlJitter must be in [0, 1)");
+
+        this.ttlJitter = ttlJitter;
+    }
+
+    /**
+     * Enables probabilistic early refresh (XFetch) in get(K, Callable) and
+     * computeIfAbsent. Valid entry is reloaded before its expiration with
+     * probability which grows as expiration comes closer, scaled by time it
+     * took to load it and by beta. Values greater than 1 favour earlier
+     * refreshes.
+     *
+     * @param beta 0 disables early refresh, 1 is usual value
+     * @throws IllegalArgumentException if beta is negative
+     */
+    public void setEarlyRefresh(double beta) {
+        if (!(beta >= 0)) throw new IllegalArgumentException("beta can't be negative");
+
+        earlyRefresh = beta;
+    }
+
+    /**
+     * Enables expire-after-access. Entry which isn't read for timeToIdle
+     * milliseconds expires, each successful get extends its lifetime. Ttl
+     * still limits maximum lifetime of entry - use Long.MAX_VALUE ttl for
+     * time to idle alone.
+     *
+     * @param timeToIdle time to idle in milliseconds, 0 disables it
+     * @throws IllegalArgumentException if timeToIdle is negative
+     */
+    public void setTimeToIdle(long timeToIdle) {
+        if (timeToIdle < 0) throw new IllegalArgumentException("timeToIdle can't be negative");
+
+        this.timeToIdle = timeToIdle;
+    }
+
+    /**
+     * Enables store-by-value mode. New values are stored encoded (e.g.
+     * compressed) by codec and decoded on each read. Up to hotSetSize most
+     * recently decoded values are kept, so hot entries aren't decoded on
+     * every read. Entries which are already stored aren't affected.
+     * <p>
+     * Mode is not used by caches which override createEntry (e.g. ones with
+     * soft referenced values).
+     *
+     * @param valueCodec codec or null to store values as they are
+     * @param hotSetSize number of decoded values kept, 0 to decode on every read
+     * @throws IllegalArgumentException if hotSetSize is negative
+     */
+    public void setValueCodec(ValueCodec<V> valueCodec, int hotSetSize) {
+        if (hotSetSize < 0) throw new IllegalArgumentException("hotSetSize can't be negative");
+
+        hotValues = hotSetSize > 0 ? new HotValueSet<V>(hotSetSize) : null;
+        this.valueCodec = valueCodec;
+    }
+
+    /**
+     * Returns listener of cache events
+     *
+     * @return listener or null
+     */
+    protected CacheEventListener getEventListener() {
+        return eventListener;
+    }
+
+    /**
+     * Sets listener of cache events. Loads are reported by all caches,
+     * evictions, expiration sweeps and lock waits by engines which track them.
+     *
+     * @param eventListener listener or null to disable events
+     */
+    public void setEventListener(CacheEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    /**
+     * Sets tracker which records reads (get and computeIfAbsent) to report
+     * hottest keys
+     *
+     * @param hotKeyTracker tracker or null to disable tracking
+     */
+    public void setHotKeyTracker(HotKeyTracker<? super K> hotKeyTracker) {
+        this.hotKeyTracker = hotKeyTracker;
     }
 
     @Override
@@ -128,7 +519,13 @@ abstract class BaseLruCache<K, V> implements LruCache<K, V> {
 
     @Override
     public void put(K key, V value, long ttl) {
-        if (value != null) putEntry(key, createEntry(value, ttl));
+        if (value == null) return;
+
+        LruCacheEntry<V> entry = newPutEntry(key, value, ttl);
+
+        //value which expires immediately still replaces current one
+        if (entry != null) putEntry(key, entry);
+        else remove(key);
     }
 
     /**
@@ -138,4 +535,101 @@ abstract class BaseLruCache<K, V> implements LruCache<K, V> {
      * @param entry
      */
     abstract protected void putEntry(K key, LruCacheEntry<V> entry);
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putIfAbsent(key, value, ttl);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value, long ttl) {
+        LruCacheEntry<V> entry = value != null ? newEntry(key, value, ttl, null) : null;
+
+        if (entry == null) return get(key);
+
+        return storeEntry(key, null, entry);
+    }
+
+    /**
+     * Atomically stores entry in place of expectedEntry or, if key is mapped
+     * to other entry, only if that entry is not valid
+     *
+     * @param key
+     * @param expectedEntry entry which may be replaced or null
+     * @param entry
+     * @return current valid value or null if entry was stored
+     */
+    protected V storeEntry(K key, LruCacheEntry<V> expectedEntry, LruCacheEntry<V> entry) {
+        if (expectedEntry != null && replaceEntry(key, expectedEntry, entry)) return null;
+
+        for (;;) {
+            LruCacheEntry<V> cacheEntry = putEntryIfAbsent(key, entry);
+
+            if (cacheEntry == null) return null;
+
+            V currentValue = cacheEntry.getValue();
+
+            if (currentValue != null) return currentValue;
+
+            //current entry is not valid - try to take its place
+            if (replaceEntry(key, cacheEntry, entry)) return null;
+        }
+    }
+
+    /**
+     * Atomically puts entry into cache if key is not mapped
+     *
+     * @param key
+     * @param entry
+     * @return entry currently mapped by key or null if entry was stored
+     */
+    abstract protected LruCacheEntry<V> putEntryIfAbsent(K key, LruCacheEntry<V> entry);
+
+    @Override
+    public boolean remove(K key, V value) {
+        for (;;) {
+            LruCacheEntry<V> cacheEntry = getEntry(key);
+
+            if (!holdsValue(cacheEntry, value)) return false;
+            if (removeEntry(key, cacheEntry)) return true;
+        }
+    }
+
+    /**
+     * Atomically removes entry only if key is still mapped to it
+     *
+     * @param key
+     * @param entry
+     * @return true if entry was removed
+     */
+    abstract protected boolean removeEntry(K key, LruCacheEntry<V> entry);
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (newValue == null) return remove(key, oldValue);
+
+        for (;;) {
+            LruCacheEntry<V> cacheEntry = getEntry(key);
+
+            if (!holdsValue(cacheEntry, oldValue)) return false;
+
+            LruCacheEntry<V> newEntry = newEntry(key, newValue, ttl, cacheEntry);
+
+            if (newEntry == null) {
+                if (removeEntry(key, cacheEntry)) return true;
+            } else {
+                if (replaceEntry(key, cacheEntry, newEntry)) return true;
+            }
+        }
+    }
+
+    /**
+     * Atomically replaces entry only if key is still mapped to oldEntry
+     *
+     * @param key
+     * @param oldEntry
+     * @param newEntry
+     * @return true if entry was replaced
+     */
+    abstract protected boolean replaceEntry(K key, LruCacheEntry<V> oldEntry, LruCacheEntry<V> newEntry);
 }
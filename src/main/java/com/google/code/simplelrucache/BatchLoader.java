@@ -0,0 +1,37 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Loads values of many keys with single backend call
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public interface BatchLoader<K, V> {
+    /**
+     * Loads values of keys
+     *
+     * @param keys keys to load, never empty
+     * @return loaded values, keys without value can be missing
+     * @throws Exception
+     */
+    Map<K, V> loadAll(Collection<K> keys) throws Exception;
+}
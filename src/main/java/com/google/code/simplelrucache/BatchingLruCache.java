@@ -0,0 +1,186 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LruCache wrapper which coalesces misses of get(K, Callable) and
+ * computeIfAbsent into batch loads. Missing keys requested within window
+ * milliseconds, or until maxBatchSize keys are collected, are loaded by
+ * single BatchLoader call and each caller gets value of its key. Loaded
+ * values are stored in cache with ttl requested for their keys.
+ * <p>
+ * Callables passed to get and computeIfAbsent are not called - keys are
+ * loaded by BatchLoader, key which BatchLoader didn't return has null value.
+ * No extra threads are used: first caller which misses waits for window to
+ * pass and runs batch load for all callers.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class BatchingLruCache<K, V> extends ForwardingLruCache<K, V> {
+    /**
+     * Keys collected for single load
+     */
+    private final class Batch {
+        //guarded by BatchingLruCache.this
+        final Map<K, Long> keys = new LinkedHashMap<K, Long>();
+
+        private final CountDownLatch loaded = new CountDownLatch(1);
+        private volatile Map<K, V> values;
+        private volatile Exception error;
+
+        void load() {
+            try {
+                values = loader.loadAll(Collections.unmodifiableSet(keys.keySet()));
+
+                if (values == null) values = Collections.emptyMap();
+
+                for (Map.Entry<K, Long> key : keys.entrySet()) {
+                    V value = values.get(key.getKey());
+
+                    if (value != null) cache.put(key.getKey(), value, key.getValue());
+                }
+            } catch (Exception e) {
+                error = e;
+            } catch (Error e) {
+                error = new RuntimeException(e);
+                throw e;
+            } finally {
+                loaded.countDown();
+            }
+        }
+
+        V get(K key) throws Exception {
+            loaded.await();
+
+            if (error != null) throw error;
+
+            return values.get(key);
+        }
+    }
+
+    private final BatchLoader<K, V> loader;
+    private final int maxBatchSize;
+    private final long window;
+    private final AtomicLong batchLoads = new AtomicLong();
+
+    //batch collecting keys, guarded by this
+    private Batch current;
+
+    /**
+     * Creates BatchingLruCache
+     *
+     * @param cache cache storing loaded values
+     * @param loader loader of batches
+     * @param maxBatchSize max number of keys loaded together
+     * @param window time in milliseconds for which batch collects keys
+     * @throws IllegalArgumentException if cache or loader is null, maxBatchSize is not positive or window is negative
+     */
+    public BatchingLruCache(LruCache<K, V> cache, BatchLoader<K, V> loader, int maxBatchSize, long window) {
+        super(cache);
+
+        if (loader == null) throw new IllegalArgumentException("loader can't be null");
+        if (maxBatchSize <= 0) throw new IllegalArgumentException("maxBatchSize must be positive");
+        if (window < 0) throw new IllegalArgumentException("window can't be negative");
+
+        this.loader = loader;
+        this.maxBatchSize = maxBatchSize;
+        this.window = window;
+    }
+
+    /**
+     * Returns number of BatchLoader calls
+     *
+     * @return
+     */
+    public long getBatchLoads() {
+        return batchLoads.get();
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable, long ttl) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    /**
+     * Loads missing key by BatchLoader, callable is not used
+     */
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable, long ttl) throws Exception {
+        V value = cache.get(key);
+
+        return value != null ? value : load(key, ttl);
+    }
+
+    private V load(K key, long ttl) throws Exception {
+        Batch batch;
+        boolean leader;
+
+        synchronized (this) {
+            leader = current == null;
+
+            if (leader) current = new Batch();
+
+            batch = current;
+
+            if (!batch.keys.containsKey(key)) batch.keys.put(key, ttl);
+
+            //full batch stops collecting and wakes its leader
+            if (batch.keys.size() >= maxBatchSize) {
+                current = null;
+                notifyAll();
+            }
+        }
+
+        if (leader) {
+            awaitWindow(batch);
+            batchLoads.incrementAndGet();
+            batch.load();
+        }
+
+        return batch.get(key);
+    }
+
+    /**
+     * Waits until window passes or batch is full, then closes batch
+     *
+     * @param batch
+     */
+    private synchronized void awaitWindow(Batch batch) {
+        long deadline = System.currentTimeMillis() + window;
+        boolean interrupted = false;
+
+        for (long remaining = window; current == batch && remaining > 0; remaining = deadline - System.currentTimeMillis()) {
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                //other callers wait for this batch, it has to be loaded anyway
+                interrupted = true;
+            }
+        }
+
+        if (current == batch) current = null;
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
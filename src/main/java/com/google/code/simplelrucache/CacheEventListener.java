@@ -0,0 +1,93 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ * Receives events of cache internals - loads, evictions, expiration sweeps
+ * and waits for eviction lock. Caches report nothing and don't measure
+ * anything until listener is set.
+ * <p>
+ * Listener is called on thread which caused event, often with cache lock
+ * held, so it has to be fast and must not use the cache. Durations are in
+ * nanoseconds.
+ *
+ * @author Damian Momot
+ * @see LoggingCacheEventListener
+ */
+public interface CacheEventListener {
+	/**
+	 * Result of load
+	 */
+	enum LoadOutcome {
+		/** Callable returned value */
+		LOADED,
+		/** Callable returned null */
+		NULL,
+		/** Callable threw exception */
+		FAILED
+	}
+
+	/**
+	 * Reason of eviction
+	 */
+	enum EvictionCause {
+		/** Capacity was exceeded */
+		CAPACITY,
+		/** Maximum weight was exceeded */
+		WEIGHT,
+		/** Entry was expired */
+		EXPIRED
+	}
+
+	/**
+	 * Called after callable passed to get(K, Callable) or computeIfAbsent
+	 * completes
+	 *
+	 * @param key
+	 *            loaded key
+	 * @param duration
+	 *            time taken by callable
+	 * @param outcome
+	 */
+	void onLoad(Object key, long duration, LoadOutcome outcome);
+
+	/**
+	 * Called after batch of entries was evicted
+	 *
+	 * @param cause
+	 * @param count
+	 *            number of evicted entries
+	 */
+	void onEviction(EvictionCause cause, int count);
+
+	/**
+	 * Called after maintenance removed expired entries
+	 *
+	 * @param count
+	 *            number of removed entries
+	 * @param duration
+	 *            time taken by sweep
+	 */
+	void onExpirationSweep(int count, long duration);
+
+	/**
+	 * Called when thread had to wait for eviction lock
+	 *
+	 * @param duration
+	 *            time spent waiting
+	 */
+	void onLockWait(long duration);
+}
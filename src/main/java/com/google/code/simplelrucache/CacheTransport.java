@@ -0,0 +1,40 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ * Connects PartitionedLruCache to caches of other nodes.
+ * <p>
+ * Remote implementations can't ship callables and updaters - they should run
+ * them on calling side and store result with putIfAbsent or replace.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public interface CacheTransport<K, V> {
+	/**
+	 * Returns cache of node. Called for every remote operation, so
+	 * implementations should reuse connections.
+	 *
+	 * @param node
+	 *            node name
+	 * @return cache stored on node
+	 * @throws IllegalStateException
+	 *             if node can't be reached
+	 */
+	LruCache<K, V> connect(String node);
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Propagates cache modifications to backing store
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ * @see WriteThroughLruCache
+ * @see WriteBehindLruCache
+ */
+public interface CacheWriter<K, V> {
+    /**
+     * Stores value of key
+     *
+     * @param key
+     * @param value
+     * @throws Exception
+     */
+    void write(K key, V value) throws Exception;
+
+    /**
+     * Stores values of many keys with single backend call
+     *
+     * @param values values to store, never empty
+     * @throws Exception
+     */
+    void writeAll(Map<K, V> values) throws Exception;
+
+    /**
+     * Deletes key
+     *
+     * @param key
+     * @throws Exception
+     */
+    void delete(K key) throws Exception;
+
+    /**
+     * Deletes many keys with single backend call
+     *
+     * @param keys keys to delete, never empty
+     * @throws Exception
+     */
+    void deleteAll(Collection<K> keys) throws Exception;
+}
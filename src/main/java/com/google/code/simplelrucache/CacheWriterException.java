@@ -0,0 +1,36 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ * Thrown when CacheWriter fails during write-through operation which can't
+ * throw checked exception. Cache isn't modified in such case.
+ *
+ * @author Damian Momot
+ */
+public class CacheWriterException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates exception
+     *
+     * @param message
+     * @param cause exception thrown by CacheWriter
+     */
+    public CacheWriterException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -19,7 +19,8 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
- * Capacity based LRU version of LinkedHashMap
+ * Capacity based LRU version of LinkedHashMap. Total weight of values can be
+ * limited too, it's tracked for put, remove and clear.
  *
  * @param <K> map key class
  * @param <V> map value class
@@ -29,6 +30,9 @@ class CapacityLruLinkedHashMap<K, V> extends LinkedHashMap<K, V> {
 	private static final long serialVersionUID = 1L;
 
 	private final int capacity;
+    private long maximumWeight = Long.MAX_VALUE;
+    private long weight;
+    private CacheEventListener eventListener;
 
     /**
      * Creates LRU LinkedHashMap
@@ -46,9 +50,99 @@ class CapacityLruLinkedHashMap<K, V> extends LinkedHashMap<K, V> {
         this.capacity = capacity;
     }
 
+    @Override
+    public void clear() {
+        super.clear();
+        weight = 0;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        weight += weigh(value);
+
+        V oldValue = super.put(key, value);
+
+        //removeEldestEntry isn't called when value is replaced
+        if (oldValue != null) {
+            weight -= weigh(oldValue);
+            trim();
+        }
+
+        return oldValue;
+    }
+
+    @Override
+    public V remove(Object key) {
+        V value = super.remove(key);
+
+        if (value != null) weight -= weigh(value);
+
+        return value;
+    }
+
     @Override
     protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-        return size() > capacity;
+        if (weight > maximumWeight) {
+            //more than one entry may have to be removed
+            trim();
+            return false;
+        }
+
+        //least recently used entry is also the one idle for the longest time
+        boolean overCapacity = size() > capacity;
+
+        if (overCapacity || isExpired(eldest.getValue())) {
+            weight -= weigh(eldest.getValue());
+
+            if (eventListener != null) eventListener.onEviction(overCapacity ? CacheEventListener.EvictionCause.CAPACITY : CacheEventListener.EvictionCause.EXPIRED, 1);
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes least recently used values until capacity and maximum weight
+     * are not exceeded
+     */
+    private void trim() {
+        int overCapacity = 0;
+        int overWeight = 0;
+
+        while ((weight > maximumWeight || size() > capacity) && !isEmpty()) {
+            if (size() > capacity) ++overCapacity;
+            else ++overWeight;
+
+            //remove(Object) updates weight, iterator removal calls it only on some JDKs
+            remove(keySet().iterator().next());
+        }
+
+        if (eventListener != null) {
+            if (overCapacity > 0) eventListener.onEviction(CacheEventListener.EvictionCause.CAPACITY, overCapacity);
+            if (overWeight > 0) eventListener.onEviction(CacheEventListener.EvictionCause.WEIGHT, overWeight);
+        }
+    }
+
+    /**
+     * Returns weight of value used by weight based eviction
+     *
+     * @param value
+     * @return
+     */
+    protected int weigh(V value) {
+        return 1;
+    }
+
+    /**
+     * Checks whether value is already expired, expired eldest value is
+     * removed on insertion even if capacity isn't exceeded
+     *
+     * @param value
+     * @return
+     */
+    protected boolean isExpired(V value) {
+        return false;
     }
 
     /**
@@ -59,4 +153,36 @@ class CapacityLruLinkedHashMap<K, V> extends LinkedHashMap<K, V> {
     int getCapacity() {
         return this.capacity;
     }
+
+    /**
+     * Returns total weight of values
+     *
+     * @return
+     */
+    long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Sets listener notified about evictions
+     *
+     * @param eventListener listener or null
+     */
+    void setEventListener(CacheEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    /**
+     * Sets maximum total weight of values, values are evicted when either
+     * capacity or maximum weight is exceeded
+     *
+     * @param maximumWeight
+     * @throws IllegalArgumentException if maximumWeight is not positive
+     */
+    void setMaximumWeight(long maximumWeight) {
+        if (maximumWeight <= 0) throw new IllegalArgumentException("maximumWeight must be positive");
+
+        this.maximumWeight = maximumWeight;
+        trim();
+    }
 }
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ * Threadsafe implementation of LruCache based on ClockLruMap. It approximates
+ * LRU with CLOCK algorithm - cache hit only sets reference bit, so reads don't
+ * relink any shared structure.
+ *
+ * This implementation should be used for read mostly caches with big number
+ * of threads.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class ClockLruCache<K, V> extends BaseLruCache<K, V> {
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private ClockLruMap<K, LruCacheEntry<V>> cacheMap;
+
+    /**
+     * Creates new ClockLruCache
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @param concurrencyLevel
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public ClockLruCache(int capacity, long ttl, int concurrencyLevel) {
+        super(ttl);
+
+        cacheMap = new ClockLruMap<K, LruCacheEntry<V>>(capacity, concurrencyLevel);
+    }
+
+    /**
+     * Creates new ClockLruCache with DEFAULT_CONCURRENCY_LEVEL
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public ClockLruCache(int capacity, long ttl) {
+        this(capacity, ttl, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    @Override
+    public void clear() {
+        cacheMap.clear();
+    }
+
+    @Override
+    public long getCapacity() {
+        return cacheMap.getCapacity();
+    }
+
+    @Override
+    protected LruCacheEntry<V> getEntry(K key) {
+        return cacheMap.get(key);
+    }
+
+    @Override
+    public long getSize() {
+        return cacheMap.size();
+    }
+
+    @Override
+    protected void putEntry(K key, LruCacheEntry<V> entry) {
+        cacheMap.put(key, entry);
+    }
+
+    @Override
+    protected LruCacheEntry<V> putEntryIfAbsent(K key, LruCacheEntry<V> entry) {
+        return cacheMap.putIfAbsent(key, entry);
+    }
+
+    @Override
+    protected boolean removeEntry(K key, LruCacheEntry<V> entry) {
+        return cacheMap.remove(key, entry);
+    }
+
+    @Override
+    protected boolean replaceEntry(K key, LruCacheEntry<V> oldEntry, LruCacheEntry<V> newEntry) {
+        return cacheMap.replace(key, oldEntry, newEntry);
+    }
+
+    @Override
+    public void remove(K key) {
+        cacheMap.remove(key);
+    }
+}
@@ -0,0 +1,263 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Capacity based map with CLOCK (second chance) eviction.
+ *
+ * Keys and values are kept in fixed slot arrays arranged as ring. Reads are
+ * lock free and only set reference bit of slot (if it's not set already).
+ * Writes are synchronized, when map is full clock hand sweeps the ring,
+ * clearing reference bits, until it finds slot which wasn't referenced since
+ * last sweep and reuses it.
+ *
+ * @param <K> map key class
+ * @param <V> map value class
+ * @author Damian Momot
+ */
+class ClockLruMap<K, V> {
+    private final int capacity;
+    private final ConcurrentHashMap<K, Integer> index;
+
+    //writers store key before value, readers load value before key
+    private final AtomicReferenceArray<K> keys;
+    private final AtomicReferenceArray<V> values;
+    private final AtomicIntegerArray referenced;
+
+    //guarded by this
+    private final int[] freeSlots;
+    private int freeCount;
+    private int hand;
+
+    /**
+     * Creates CLOCK map
+     *
+     * @param capacity
+     * @param concurrencyLevel
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    ClockLruMap(int capacity, int concurrencyLevel) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+
+        this.capacity = capacity;
+        index = new ConcurrentHashMap<K, Integer>(capacity, 0.75f, concurrencyLevel);
+        keys = new AtomicReferenceArray<K>(capacity);
+        values = new AtomicReferenceArray<V>(capacity);
+        referenced = new AtomicIntegerArray(capacity);
+        freeSlots = new int[capacity];
+
+        resetFreeSlots();
+    }
+
+    /**
+     * Returns value mapped by key and marks its slot as referenced
+     *
+     * @param key
+     * @return value or null if key is not mapped
+     */
+    V get(K key) {
+        Integer slot = index.get(key);
+
+        if (slot == null) return null;
+
+        int i = slot;
+        V value = values.get(i);
+
+        //slot could be reused by other key in the meantime
+        if (value == null || !key.equals(keys.get(i))) return null;
+
+        if (referenced.get(i) == 0) referenced.lazySet(i, 1);
+
+        return value;
+    }
+
+    /**
+     * Maps key to value, evicting other key if map is full
+     *
+     * @param key
+     * @param value
+     * @return previous value or null
+     */
+    synchronized V put(K key, V value) {
+        Integer slot = index.get(key);
+
+        if (slot != null) {
+            int i = slot;
+            V oldValue = values.get(i);
+
+            values.set(i, value);
+            referenced.set(i, 1);
+
+            return oldValue;
+        }
+
+        int i = freeCount > 0 ? freeSlots[--freeCount] : evict();
+
+        keys.set(i, key);
+        values.set(i, value);
+        referenced.set(i, 0);
+        index.put(key, i);
+
+        return null;
+    }
+
+    /**
+     * Maps key to value if it's not mapped already
+     *
+     * @param key
+     * @param value
+     * @return current value or null if value was stored
+     */
+    synchronized V putIfAbsent(K key, V value) {
+        Integer slot = index.get(key);
+
+        if (slot != null) {
+            referenced.set(slot, 1);
+            return values.get(slot);
+        }
+
+        put(key, value);
+
+        return null;
+    }
+
+    /**
+     * Replaces value only if key is mapped to oldValue
+     *
+     * @param key
+     * @param oldValue
+     * @param newValue
+     * @return true if value was replaced
+     */
+    synchronized boolean replace(K key, V oldValue, V newValue) {
+        Integer slot = index.get(key);
+
+        if (slot == null || !values.get(slot).equals(oldValue)) return false;
+
+        values.set(slot, newValue);
+        referenced.set(slot, 1);
+
+        return true;
+    }
+
+    /**
+     * Removes mapping only if key is mapped to value
+     *
+     * @param key
+     * @param value
+     * @return true if mapping was removed
+     */
+    synchronized boolean remove(K key, V value) {
+        Integer slot = index.get(key);
+
+        if (slot == null || !values.get(slot).equals(value)) return false;
+
+        remove(key);
+
+        return true;
+    }
+
+    /**
+     * Removes mapping for key
+     *
+     * @param key
+     * @return removed value or null
+     */
+    synchronized V remove(K key) {
+        Integer slot = index.remove(key);
+
+        if (slot == null) return null;
+
+        int i = slot;
+        V oldValue = values.get(i);
+
+        values.set(i, null);
+        keys.set(i, null);
+        referenced.set(i, 0);
+        freeSlots[freeCount++] = i;
+
+        return oldValue;
+    }
+
+    /**
+     * Removes all mappings
+     */
+    synchronized void clear() {
+        index.clear();
+
+        for (int i = 0; i < capacity; ++i) {
+            values.set(i, null);
+            keys.set(i, null);
+            referenced.set(i, 0);
+        }
+
+        resetFreeSlots();
+        hand = 0;
+    }
+
+    /**
+     * Returns number of mappings
+     *
+     * @return
+     */
+    int size() {
+        return index.size();
+    }
+
+    /**
+     * Returns capacity of map
+     *
+     * @return
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sweeps ring until it finds slot without reference bit and frees it. All
+     * slots are occupied when this is called.
+     *
+     * @return freed slot
+     */
+    //guarded by this
+    private int evict() {
+        for (;;) {
+            int i = hand;
+            hand = (hand + 1) % capacity;
+
+            if (referenced.get(i) == 0) {
+                index.remove(keys.get(i));
+                return i;
+            }
+
+            referenced.lazySet(i, 0);
+        }
+    }
+
+    //guarded by this
+    private void resetFreeSlots() {
+        //reversed, so slots are taken in ring order
+        for (int i = 0; i < capacity; ++i) {
+            freeSlots[i] = capacity - 1 - i;
+        }
+
+        freeCount = capacity;
+    }
+}
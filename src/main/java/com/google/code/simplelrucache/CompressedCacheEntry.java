@@ -0,0 +1,79 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ * Cache entry which stores value encoded by ValueCodec. Value is decoded on
+ * every read unless entry is kept in HotValueSet.
+ *
+ * @author Damian Momot
+ */
+class CompressedCacheEntry<V> extends ExpiringCacheEntry<V> {
+    private final byte[] data;
+    private final ValueCodec<V> codec;
+    private final HotValueSet<V> hotValues;
+
+    //decoded value, set only while entry is in hotValues
+    volatile V decoded;
+
+    /**
+     * Creates CompressedCacheEntry with desired ttl
+     *
+     * @param value
+     * @param ttl time to live in milliseconds
+     * @param codec
+     * @param hotValues set keeping recently decoded values or null
+     * @throws IllegalArgumentException if ttl is not positive
+     */
+    CompressedCacheEntry(V value, long ttl, ValueCodec<V> codec, HotValueSet<V> hotValues) {
+        super(ttl);
+
+        this.data = codec.encode(value);
+        this.codec = codec;
+        this.hotValues = hotValues;
+    }
+
+    @Override
+    protected V getReferent() {
+        V value = decoded;
+
+        if (value != null) return value;
+
+        value = codec.decode(data);
+
+        if (hotValues != null) {
+            decoded = value;
+            hotValues.add(this);
+        }
+
+        return value;
+    }
+
+    @Override
+    boolean isValid() {
+        //encoded value is always available, there is no need to decode it
+        return !isExpired();
+    }
+
+    /**
+     * Returns size of encoded value
+     *
+     * @return
+     */
+    int getWeight() {
+        return data.length;
+    }
+}
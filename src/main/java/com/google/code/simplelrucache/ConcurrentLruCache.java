@@ -15,24 +15,38 @@
  */
 package com.google.code.simplelrucache;
 
-import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
-import com.googlecode.concurrentlinkedhashmap.Weighers;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Threadsafe highly concurrent implementation of LruCache based on
- * ConcurrentLinkedHashMap.
+ * ConcurrentLruMap.
  *
  * This implementation should be used with big number of threads.
  *
+ * Iteration is weakly consistent - it reflects some of modifications made
+ * after iterator was created and never throws ConcurrentModificationException.
+ *
  * @param <K> key type
  * @param <V> value type
  * @author Damian Momot
  */
-public class ConcurrentLruCache<K, V> extends BaseLruCache<K, V> {
+public class ConcurrentLruCache<K, V> extends BaseLruCache<K, V> implements OrderedLruCache<K, V> {
     public static final int DEFAULT_INITIAL_CAPACITY = 16;
     public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    public static final int PRELOAD_BATCH_SIZE = 1024;
 
-    private ConcurrentLinkedHashMap<K, LruCacheEntry<V>> cacheMap;
+    //keys are mapped with storeKey, subclasses can hold them in wrappers
+    private ConcurrentLruMap<Object, LruCacheEntry<V>> cacheMap;
 
     /**
      * Creates new concurrent LRU cache
@@ -41,19 +55,39 @@ public class ConcurrentLruCache<K, V> extends BaseLruCache<K, V> {
      * @param ttl time to live in milliseconds
      * @param initialCapacity initial cache capacity
      * @param concurrencyLevel
-     * @throws IllegalArgumentException if capacity is not positive
+     * @throws IllegalArgumentException if capacity or concurrencyLevel is not positive
      */
     public ConcurrentLruCache(int capacity, long ttl, int initialCapacity, int concurrencyLevel) {
         super(ttl);
 
-        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        cacheMap = new ConcurrentLruMap<Object, LruCacheEntry<V>>(capacity, initialCapacity, concurrencyLevel) {
+            @Override
+            protected boolean isExpired(LruCacheEntry<V> entry) {
+                return !isValid(entry);
+            }
+
+            @Override
+            protected boolean isLive(Object key) {
+                return toKey(key) != null;
+            }
+
+            @Override
+            protected int weigh(LruCacheEntry<V> entry) {
+                return BaseLruCache.weigh(entry);
+            }
+
+            @Override
+            protected void onRemoval(Object key, LruCacheEntry<V> entry) {
+                K liveKey = toKey(key);
 
-        cacheMap = new ConcurrentLinkedHashMap.Builder<K, LruCacheEntry<V>>()
-            .maximumWeightedCapacity(capacity)
-            .weigher(Weighers.singleton())
-            .initialCapacity(initialCapacity)
-            .concurrencyLevel(concurrencyLevel)
-            .build();
+                if (liveKey != null) ConcurrentLruCache.this.onRemoval(liveKey, entry);
+            }
+
+            @Override
+            protected void maintain() {
+                ConcurrentLruCache.this.maintain();
+            }
+        };
     }
 
     /**
@@ -85,14 +119,28 @@ public class ConcurrentLruCache<K, V> extends BaseLruCache<K, V> {
         cacheMap.clear();
     }
 
+    /**
+     * Applies buffered reads and writes and removes expired entries found at
+     * least recently used end. Maintenance normally runs as a side effect of
+     * cache operations, this method can be used to run it periodically.
+     */
+    public void cleanUp() {
+        cacheMap.cleanUp();
+    }
+
+    @Override
+    public Map<K, V> coldest(int limit) {
+        return getValidValues(liveEntries(cacheMap.orderedEntries(limit, true).iterator()), limit);
+    }
+
     @Override
     public long getCapacity() {
-        return cacheMap.capacity();
+        return cacheMap.getCapacity();
     }
 
     @Override
     protected LruCacheEntry<V> getEntry(K key) {
-        return cacheMap.get(key);
+        return cacheMap.get(lookupKey(key));
     }
 
     @Override
@@ -100,13 +148,332 @@ public class ConcurrentLruCache<K, V> extends BaseLruCache<K, V> {
         return cacheMap.size();
     }
 
+    /**
+     * Returns total weight of entries - sum of encoded value sizes in
+     * store-by-value mode, number of entries otherwise
+     *
+     * @return
+     */
+    public long getWeight() {
+        return cacheMap.weight();
+    }
+
+    @Override
+    public Map<K, V> hottest(int limit) {
+        return getValidValues(liveEntries(cacheMap.orderedEntries(limit, false).iterator()), limit);
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new ValidEntryIterator<K, V>(entryIterator());
+    }
+
+    /**
+     * Returns weakly consistent iterator over all entries, including expired
+     * ones
+     *
+     * @return
+     */
+    Iterator<Map.Entry<K, LruCacheEntry<V>>> entryIterator() {
+        return liveEntries(cacheMap.iterator());
+    }
+
+    /**
+     * Converts stored keys of entries back to keys, skipping entries which
+     * keys aren't available anymore
+     *
+     * @param entries
+     * @return
+     */
+    private Iterator<Map.Entry<K, LruCacheEntry<V>>> liveEntries(final Iterator<Map.Entry<Object, LruCacheEntry<V>>> entries) {
+        return new Iterator<Map.Entry<K, LruCacheEntry<V>>>() {
+            private Map.Entry<K, LruCacheEntry<V>> next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<K, LruCacheEntry<V>> next() {
+                if (next == null) throw new NoSuchElementException();
+
+                Map.Entry<K, LruCacheEntry<V>> current = next;
+                next = advance();
+
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            private Map.Entry<K, LruCacheEntry<V>> advance() {
+                while (entries.hasNext()) {
+                    Map.Entry<Object, LruCacheEntry<V>> entry = entries.next();
+                    K key = toKey(entry.getKey());
+
+                    //entries of unwrapped keys are used as they are
+                    if (key == entry.getKey()) return (Map.Entry) entry;
+                    if (key != null) return new AbstractMap.SimpleImmutableEntry<K, LruCacheEntry<V>>(key, entry.getValue());
+                }
+
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Returns key used to look entry of key up in map. Subclasses which store
+     * keys in wrappers return lookup object equal to stored wrapper.
+     *
+     * @param key
+     * @return
+     */
+    Object lookupKey(K key) {
+        return key;
+    }
+
+    /**
+     * Returns key stored in map for new entry of key
+     *
+     * @param key
+     * @return
+     */
+    Object storeKey(K key) {
+        return key;
+    }
+
+    /**
+     * Converts key stored in map back to key
+     *
+     * @param storedKey
+     * @return key or null if it's not available anymore
+     */
+    @SuppressWarnings("unchecked")
+    K toKey(Object storedKey) {
+        return (K) storedKey;
+    }
+
+    /**
+     * Called at the end of each maintenance run, with eviction lock held.
+     * Subclasses can remove entries here with removeInMaintenance.
+     */
+    void maintain() {
+    }
+
+    /**
+     * Removes entry of stored key. Can be called only from maintain.
+     *
+     * @param storedKey
+     */
+    void removeInMaintenance(Object storedKey) {
+        cacheMap.removeInMaintenance(storedKey);
+    }
+
+    /**
+     * Called once for every entry which leaves cache - when it's removed,
+     * replaced, evicted, expired or cleared. Can be called with eviction lock
+     * held, so it must not block or modify cache.
+     *
+     * @param key
+     * @param entry
+     */
+    protected void onRemoval(K key, LruCacheEntry<V> entry) {
+    }
+
+    /**
+     * Returns copy of all entries in LRU order, least recently used first
+     *
+     * @return
+     */
+    List<Map.Entry<K, LruCacheEntry<V>>> orderedEntries() {
+        List<Map.Entry<K, LruCacheEntry<V>>> entries = new ArrayList<Map.Entry<K, LruCacheEntry<V>>>();
+        Iterator<Map.Entry<K, LruCacheEntry<V>>> iterator = liveEntries(cacheMap.orderedEntries(Integer.MAX_VALUE, true).iterator());
+
+        while (iterator.hasNext()) {
+            entries.add(iterator.next());
+        }
+
+        return entries;
+    }
+
+    /**
+     * Fills cache with entries using several threads. Each thread takes
+     * batches of PRELOAD_BATCH_SIZE entries from iterator and inserts them
+     * with single eviction lock acquisition. Default TTL is used and existing
+     * keys keep their LRU position.
+     *
+     * @param entries entries to put into cache, null values are skipped
+     * @param parallelism number of loading threads
+     * @throws InterruptedException if interrupted while waiting for loading threads
+     * @throws IllegalArgumentException if parallelism is not positive
+     */
+    public void preload(Iterator<Map.Entry<K, V>> entries, int parallelism) throws InterruptedException {
+        preload(entries, parallelism, getTtl(), false);
+    }
+
+    /**
+     * Fills cache with entries using several threads. Each thread takes
+     * batches of PRELOAD_BATCH_SIZE entries from iterator and inserts them
+     * with single eviction lock acquisition.
+     *
+     * Capacity is respected, if there are more entries than capacity some of
+     * them are evicted (which ones depends on thread scheduling).
+     *
+     * @param entries entries to put into cache, null values are skipped
+     * @param parallelism number of loading threads
+     * @param ttl time to live in milliseconds
+     * @param reorder whether updating existing key makes it most recently used
+     * @throws InterruptedException if interrupted while waiting for loading threads
+     * @throws IllegalArgumentException if parallelism is not positive
+     */
+    public void preload(final Iterator<Map.Entry<K, V>> entries, int parallelism, final long ttl, final boolean reorder) throws InterruptedException {
+        if (parallelism <= 0) throw new IllegalArgumentException("parallelism must be positive");
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        CompletionService<Void> completionService = new ExecutorCompletionService<Void>(executor);
+
+        try {
+            for (int i = 0; i < parallelism; ++i) {
+                completionService.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        List<Map.Entry<Object, LruCacheEntry<V>>> batch;
+
+                        //interrupted by shutdownNow when preload is interrupted or other thread failed
+                        while (!Thread.currentThread().isInterrupted() && !(batch = nextPreloadBatch(entries, ttl)).isEmpty()) {
+                            cacheMap.putAll(batch, reorder);
+                        }
+                    }
+                }, null);
+            }
+
+            //in order of completion, so failure of any thread stops others at once
+            for (int i = 0; i < parallelism; ++i) {
+                completionService.take().get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Takes next batch of entries from shared iterator
+     *
+     * @param entries
+     * @param ttl
+     * @return batch, empty if iterator is exhausted
+     */
+    private List<Map.Entry<Object, LruCacheEntry<V>>> nextPreloadBatch(Iterator<Map.Entry<K, V>> entries, long ttl) {
+        List<Map.Entry<K, V>> values = new ArrayList<Map.Entry<K, V>>(PRELOAD_BATCH_SIZE);
+
+        synchronized (entries) {
+            while (values.size() < PRELOAD_BATCH_SIZE && entries.hasNext()) {
+                Map.Entry<K, V> entry = entries.next();
+
+                if (entry.getValue() != null) values.add(entry);
+            }
+        }
+
+        //entries are created outside of iterator lock
+        List<Map.Entry<Object, LruCacheEntry<V>>> batch = new ArrayList<Map.Entry<Object, LruCacheEntry<V>>>(values.size());
+
+        for (Map.Entry<K, V> entry : values) {
+            LruCacheEntry<V> cacheEntry = newEntry(entry.getKey(), entry.getValue(), ttl, null);
+
+            if (cacheEntry != null) batch.add(new AbstractMap.SimpleImmutableEntry<Object, LruCacheEntry<V>>(storeKey(entry.getKey()), cacheEntry));
+        }
+
+        return batch;
+    }
+
+    @Override
+    public void setEventListener(CacheEventListener eventListener) {
+        super.setEventListener(eventListener);
+        cacheMap.setEventListener(eventListener);
+    }
+
+    /**
+     * Limits total weight of entries. In store-by-value mode weight of entry
+     * is size of its encoded value, so cache can be bounded by memory used by
+     * values. Entries are evicted when either capacity or maximum weight is
+     * exceeded.
+     *
+     * @param maximumWeight
+     * @throws IllegalArgumentException if maximumWeight is not positive
+     */
+    public void setMaximumWeight(long maximumWeight) {
+        cacheMap.setMaximumWeight(maximumWeight);
+    }
+
     @Override
     protected void putEntry(K key, LruCacheEntry<V> entry) {
-        cacheMap.put(key, entry);
+        cacheMap.put(storeKey(key), entry);
+    }
+
+    @Override
+    protected LruCacheEntry<V> putEntryIfAbsent(K key, LruCacheEntry<V> entry) {
+        return cacheMap.putIfAbsent(storeKey(key), entry);
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        for (;;) {
+            ConcurrentLruMap.Node<Object, LruCacheEntry<V>> node = cacheMap.getNode(lookupKey(key));
+
+            if (node == null) return false;
+
+            //value is compared and removed on node found by single lookup
+            LruCacheEntry<V> cacheEntry = node.value;
+
+            if (!holdsValue(cacheEntry, value)) return false;
+            if (cacheMap.remove(node, cacheEntry)) return true;
+        }
+    }
+
+    @Override
+    protected boolean removeEntry(K key, LruCacheEntry<V> entry) {
+        return cacheMap.remove(lookupKey(key), entry);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (newValue == null) return remove(key, oldValue);
+
+        for (;;) {
+            ConcurrentLruMap.Node<Object, LruCacheEntry<V>> node = cacheMap.getNode(lookupKey(key));
+
+            if (node == null) return false;
+
+            LruCacheEntry<V> cacheEntry = node.value;
+
+            if (!holdsValue(cacheEntry, oldValue)) return false;
+
+            LruCacheEntry<V> newEntry = newEntry(key, newValue, getTtl(), cacheEntry);
+
+            if (newEntry == null) {
+                if (cacheMap.remove(node, cacheEntry)) return true;
+            } else {
+                if (cacheMap.replace(node, cacheEntry, newEntry)) return true;
+            }
+        }
+    }
+
+    @Override
+    protected boolean replaceEntry(K key, LruCacheEntry<V> oldEntry, LruCacheEntry<V> newEntry) {
+        return cacheMap.replace(lookupKey(key), oldEntry, newEntry);
     }
 
     @Override
     public void remove(K key) {
-        cacheMap.remove(key);
+        cacheMap.remove(lookupKey(key));
     }
 }
@@ -0,0 +1,924 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Capacity based concurrent LRU map.
+ *
+ * Entries are indexed by ConcurrentHashMap. LRU order is kept in doubly
+ * linked list guarded by single eviction lock. Reads are recorded in striped
+ * lossy read buffers and writes in bounded write buffer, both are replayed
+ * against the list by whichever thread manages to acquire the lock, so
+ * callers never block on the list in the common case.
+ *
+ * @param <K> map key class
+ * @param <V> map value class
+ * @author Damian Momot
+ */
+class ConcurrentLruMap<K, V> {
+    /** Number of reads which can be buffered per stripe (power of 2) */
+    static final int READ_BUFFER_SIZE = 32;
+    /** Number of pending reads in stripe which triggers drain */
+    static final int READ_BUFFER_DRAIN_THRESHOLD = 16;
+    /** Max number of pending writes, writer drains by itself when full */
+    static final int WRITE_BUFFER_SIZE = 1024;
+    /** Max number of expired entries removed per maintenance run */
+    static final int MAX_EXPIRED_PER_DRAIN = 16;
+
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+    private final int capacity;
+
+    private volatile long maximumWeight = Long.MAX_VALUE;
+    private volatile CacheEventListener eventListener;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    //LRU list, head.next is least recently used (guarded by evictionLock)
+    private final Node<K, V> head = new Node<K, V>(null, null);
+    //total weight of linked nodes (guarded by evictionLock)
+    private long weight;
+
+    private final int readBufferMask;
+    private final AtomicLong[] readBufferWriteCounts;
+    private final AtomicLongArray readBufferDrainCounts;
+    //stripe i occupies slots [i * READ_BUFFER_SIZE, (i + 1) * READ_BUFFER_SIZE)
+    private final AtomicReferenceArray<Node<K, V>> readBuffers;
+
+    //lock free queue bounded by writeBufferSize, offer and poll don't contend on lock
+    private final ConcurrentLinkedQueue<Runnable> writeBuffer = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicInteger writeBufferSize = new AtomicInteger();
+
+    /**
+     * Creates concurrent LRU map
+     *
+     * @param capacity
+     * @param initialCapacity
+     * @param concurrencyLevel
+     * @throws IllegalArgumentException if capacity or concurrencyLevel is not positive
+     */
+    ConcurrentLruMap(int capacity, int initialCapacity, int concurrencyLevel) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        if (concurrencyLevel <= 0) throw new IllegalArgumentException("concurrencyLevel must be positive");
+
+        this.capacity = capacity;
+        data = new ConcurrentHashMap<K, Node<K, V>>(Math.min(initialCapacity, capacity), 0.75f, concurrencyLevel);
+
+        head.prev = head;
+        head.next = head;
+
+        //more stripes than cores only makes every drain longer
+        int maxStripes = Math.min(concurrencyLevel, Runtime.getRuntime().availableProcessors());
+        int stripes = 1;
+        while (stripes < maxStripes) stripes <<= 1;
+
+        readBufferMask = stripes - 1;
+        readBufferWriteCounts = new AtomicLong[stripes];
+        readBufferDrainCounts = new AtomicLongArray(stripes);
+        readBuffers = new AtomicReferenceArray<Node<K, V>>(stripes * READ_BUFFER_SIZE);
+
+        for (int i = 0; i < stripes; ++i) {
+            readBufferWriteCounts[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Returns value mapped by key and records access
+     *
+     * @param key
+     * @return value or null if key is not mapped
+     */
+    V get(K key) {
+        Node<K, V> node = data.get(key);
+
+        if (node == null) return null;
+
+        afterRead(node);
+
+        return node.value;
+    }
+
+    /**
+     * Returns node mapped by key without recording access. Value of node can
+     * be checked and then replaced or removed by replace(Node, V, V) and
+     * remove(Node, V) without looking key up again.
+     *
+     * @param key
+     * @return node or null if key is not mapped
+     */
+    Node<K, V> getNode(K key) {
+        return data.get(key);
+    }
+
+    /**
+     * Maps key to value
+     *
+     * @param key
+     * @param value
+     * @return previous value or null
+     */
+    V put(K key, V value) {
+        Node<K, V> node = new Node<K, V>(key, value);
+
+        for (;;) {
+            Node<K, V> prior = data.putIfAbsent(key, node);
+
+            if (prior == null) {
+                afterWrite(new AddTask(node));
+                return null;
+            }
+
+            V oldValue = prior.update(value);
+
+            if (oldValue != null) {
+                onRemoval(key, oldValue);
+                afterUpdate(prior);
+                return oldValue;
+            }
+
+            //prior node was concurrently removed/evicted - take its place
+            if (data.replace(key, prior, node)) {
+                afterWrite(new AddTask(node));
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Maps all keys to values. New nodes are linked into LRU list in batch
+     * order with single lock acquisition.
+     *
+     * @param entries
+     * @param reorder whether updated existing keys become most recently used
+     */
+    void putAll(List<Map.Entry<K, V>> entries, boolean reorder) {
+        List<Node<K, V>> added = new ArrayList<Node<K, V>>(entries.size());
+
+        for (Map.Entry<K, V> entry : entries) {
+            Node<K, V> node = new Node<K, V>(entry.getKey(), entry.getValue());
+
+            for (;;) {
+                Node<K, V> prior = data.putIfAbsent(node.key, node);
+
+                if (prior == null) {
+                    added.add(node);
+                    break;
+                }
+
+                V oldValue = prior.update(node.value);
+
+                if (oldValue != null) {
+                    onRemoval(node.key, oldValue);
+
+                    if (isWeighted()) afterWrite(new UpdateTask(prior, reorder));
+                    else if (reorder) afterRead(prior);
+                    break;
+                }
+
+                if (data.replace(node.key, prior, node)) {
+                    added.add(node);
+                    break;
+                }
+            }
+        }
+
+        lockEviction();
+
+        try {
+            drainBuffers();
+
+            for (Node<K, V> node : added) {
+                if (node.isAlive()) linkAtTail(node);
+            }
+
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Maps key to value if it's not mapped already
+     *
+     * @param key
+     * @param value
+     * @return current value or null if value was stored
+     */
+    V putIfAbsent(K key, V value) {
+        Node<K, V> node = new Node<K, V>(key, value);
+
+        for (;;) {
+            Node<K, V> prior = data.putIfAbsent(key, node);
+
+            if (prior == null) {
+                afterWrite(new AddTask(node));
+                return null;
+            }
+
+            if (prior.isAlive()) {
+                afterRead(prior);
+                return prior.value;
+            }
+
+            if (data.replace(key, prior, node)) {
+                afterWrite(new AddTask(node));
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Replaces value only if key is mapped to oldValue
+     *
+     * @param key
+     * @param oldValue
+     * @param newValue
+     * @return true if value was replaced
+     */
+    boolean replace(K key, V oldValue, V newValue) {
+        Node<K, V> node = data.get(key);
+
+        return node != null && replace(node, oldValue, newValue);
+    }
+
+    /**
+     * Replaces value of node returned by getNode only if it's still alive and
+     * holds oldValue
+     *
+     * @param node
+     * @param oldValue
+     * @param newValue
+     * @return true if value was replaced
+     */
+    boolean replace(Node<K, V> node, V oldValue, V newValue) {
+        V replaced = node.replace(oldValue, newValue);
+
+        if (replaced == null) return false;
+
+        onRemoval(node.key, replaced);
+        afterUpdate(node);
+
+        return true;
+    }
+
+    /**
+     * Removes mapping only if key is mapped to value
+     *
+     * @param key
+     * @param value
+     * @return true if mapping was removed
+     */
+    boolean remove(K key, V value) {
+        Node<K, V> node = data.get(key);
+
+        return node != null && remove(node, value);
+    }
+
+    /**
+     * Removes node returned by getNode only if it's still alive and holds
+     * value
+     *
+     * @param node
+     * @param value
+     * @return true if mapping was removed
+     */
+    boolean remove(Node<K, V> node, V value) {
+        if (!node.retire(value)) return false;
+
+        data.remove(node.key, node);
+        onRemoval(node.key, node.value);
+        afterWrite(new RemoveTask(node));
+
+        return true;
+    }
+
+    /**
+     * Removes mapping for key
+     *
+     * @param key
+     * @return removed value or null
+     */
+    V remove(K key) {
+        Node<K, V> node = data.remove(key);
+
+        if (node == null) return null;
+
+        V value = node.retire();
+
+        if (value != null) onRemoval(node.key, value);
+
+        afterWrite(new RemoveTask(node));
+
+        return value;
+    }
+
+    /**
+     * Removes all mappings
+     */
+    void clear() {
+        lockEviction();
+
+        try {
+            drainBuffers();
+
+            while (head.next != head) {
+                Node<K, V> node = head.next;
+                V value = node.retire();
+
+                data.remove(node.key, node);
+                unlink(node);
+
+                if (value != null) onRemoval(node.key, value);
+            }
+
+            //nodes which are not linked yet
+            for (Node<K, V> node : data.values()) {
+                if (data.remove(node.key, node)) {
+                    V value = node.retire();
+
+                    if (value != null) onRemoval(node.key, value);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns up to limit entries in LRU order. Pending buffers are drained
+     * first, so order reflects all recorded accesses. Expired entries and
+     * entries of keys which aren't live are skipped and walking continues
+     * until limit entries are collected, lock is held only for that walk.
+     *
+     * @param limit
+     * @param ascending true for least recently used first, false for most recently used first
+     * @return
+     */
+    List<Map.Entry<K, V>> orderedEntries(int limit, boolean ascending) {
+        List<Map.Entry<K, V>> entries = new ArrayList<Map.Entry<K, V>>(Math.min(limit, size()));
+
+        lockEviction();
+
+        try {
+            drainBuffers();
+
+            Node<K, V> node = ascending ? head.next : head.prev;
+
+            while (node != head && entries.size() < limit) {
+                V value = node.value;
+
+                if (value != null && !isExpired(value) && isLive(node.key)) entries.add(new AbstractMap.SimpleImmutableEntry<K, V>(node.key, value));
+
+                node = ascending ? node.next : node.prev;
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+
+        return entries;
+    }
+
+    /**
+     * Applies pending reads and writes and removes expired least recently used
+     * entries
+     */
+    void cleanUp() {
+        lockEviction();
+
+        try {
+            drainBuffers();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns weakly consistent iterator over mappings (in no particular
+     * order). It never throws ConcurrentModificationException and doesn't
+     * lock map.
+     *
+     * @return
+     */
+    Iterator<Map.Entry<K, V>> iterator() {
+        final Iterator<Node<K, V>> nodes = data.values().iterator();
+
+        return new Iterator<Map.Entry<K, V>>() {
+            @Override
+            public boolean hasNext() {
+                return nodes.hasNext();
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                Node<K, V> node = nodes.next();
+
+                return new AbstractMap.SimpleImmutableEntry<K, V>(node.key, node.value);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Returns number of mappings
+     *
+     * @return
+     */
+    int size() {
+        return data.size();
+    }
+
+    /**
+     * Returns capacity of map
+     *
+     * @return
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    private void afterRead(Node<K, V> node) {
+        int stripe = (int) Thread.currentThread().getId() & readBufferMask;
+        AtomicLong writeCount = readBufferWriteCounts[stripe];
+
+        long write = writeCount.get();
+        long pending = write - readBufferDrainCounts.get(stripe);
+
+        //buffer is lossy - if it's full or CAS fails access is simply not recorded
+        if (pending < READ_BUFFER_SIZE && writeCount.compareAndSet(write, write + 1)) {
+            readBuffers.lazySet(stripe * READ_BUFFER_SIZE + ((int) write & READ_BUFFER_MASK), node);
+        }
+
+        if (pending >= READ_BUFFER_DRAIN_THRESHOLD) tryToDrain();
+    }
+
+    private boolean isWeighted() {
+        return maximumWeight != Long.MAX_VALUE;
+    }
+
+    private void afterUpdate(Node<K, V> node) {
+        //weight of new value has to be accounted for
+        if (isWeighted()) afterWrite(new UpdateTask(node, true));
+        else afterRead(node);
+    }
+
+    private void afterWrite(Runnable task) {
+        if (writeBufferSize.incrementAndGet() <= WRITE_BUFFER_SIZE) {
+            writeBuffer.offer(task);
+            tryToDrain();
+        } else {
+            writeBufferSize.decrementAndGet();
+            //buffer is full - apply write with lock held so writers can't outrun eviction
+            lockEviction();
+
+            try {
+                drainBuffers();
+                task.run();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void lockEviction() {
+        CacheEventListener eventListener = this.eventListener;
+
+        if (eventListener == null) {
+            evictionLock.lock();
+        } else if (!evictionLock.tryLock()) {
+            long start = System.nanoTime();
+
+            evictionLock.lock();
+            eventListener.onLockWait(System.nanoTime() - start);
+        }
+    }
+
+    private void tryToDrain() {
+        do {
+            if (!evictionLock.tryLock()) return;
+
+            try {
+                drainBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        } while (!writeBuffer.isEmpty());
+    }
+
+    //guarded by evictionLock
+    private void drainBuffers() {
+        for (int stripe = 0; stripe <= readBufferMask; ++stripe) {
+            drainReadBuffer(stripe);
+        }
+
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            writeBufferSize.decrementAndGet();
+            task.run();
+        }
+
+        expire();
+        maintain();
+    }
+
+    //guarded by evictionLock
+    private void drainReadBuffer(int stripe) {
+        int offset = stripe * READ_BUFFER_SIZE;
+        long drain = readBufferDrainCounts.get(stripe);
+        long write = readBufferWriteCounts[stripe].get();
+
+        for (; drain < write; ++drain) {
+            int index = offset + ((int) drain & READ_BUFFER_MASK);
+            Node<K, V> node = readBuffers.get(index);
+
+            //slot was claimed but not published yet
+            if (node == null) break;
+
+            readBuffers.lazySet(index, null);
+            if (node.isLinked()) moveToTail(node);
+        }
+
+        readBufferDrainCounts.lazySet(stripe, drain);
+    }
+
+    //guarded by evictionLock
+    private void expire() {
+        CacheEventListener eventListener = this.eventListener;
+        long start = eventListener != null ? System.nanoTime() : 0;
+        int expired = 0;
+
+        //least recently used nodes are the ones idle for the longest time
+        while (expired < MAX_EXPIRED_PER_DRAIN && head.next != head) {
+            Node<K, V> node = head.next;
+            V value = node.value;
+
+            if (value == null || !isExpired(value)) break;
+
+            //node could be updated or removed in the meantime
+            if (!node.retire(value)) break;
+
+            data.remove(node.key, node);
+            unlink(node);
+            onRemoval(node.key, value);
+            ++expired;
+        }
+
+        if (eventListener != null && expired > 0) eventListener.onExpirationSweep(expired, System.nanoTime() - start);
+    }
+
+    /**
+     * Checks whether key can still be used. Mappings of keys which aren't
+     * live are skipped by orderedEntries until maintain removes them.
+     *
+     * @param key
+     * @return
+     */
+    protected boolean isLive(K key) {
+        return true;
+    }
+
+    /**
+     * Called at the end of each maintenance run, with eviction lock held.
+     * Subclasses can remove mappings here with removeInMaintenance.
+     */
+    protected void maintain() {
+    }
+
+    /**
+     * Removes mapping of key. Can be called only from maintain.
+     *
+     * @param key
+     */
+    //guarded by evictionLock
+    protected void removeInMaintenance(K key) {
+        Node<K, V> node = data.remove(key);
+
+        if (node == null) return;
+
+        V value = node.retire();
+
+        if (value != null) onRemoval(node.key, value);
+
+        //node is not linked if its AddTask is still pending, the task skips dead nodes
+        if (node.isLinked()) unlink(node);
+    }
+
+    /**
+     * Called once for every value which leaves map - when it's removed,
+     * replaced, evicted, expired or cleared. Can be called with eviction lock
+     * held, so it must not block or call back into map.
+     *
+     * @param key
+     * @param value
+     */
+    protected void onRemoval(K key, V value) {
+    }
+
+    /**
+     * Returns weight of value used by weight based eviction
+     *
+     * @param value
+     * @return
+     */
+    protected int weigh(V value) {
+        return 1;
+    }
+
+    /**
+     * Sets listener notified about evictions, expiration sweeps and waits
+     * for eviction lock
+     *
+     * @param eventListener listener or null
+     */
+    void setEventListener(CacheEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    /**
+     * Sets maximum total weight of values. Values are evicted when either
+     * capacity or maximum weight is exceeded.
+     *
+     * @param maximumWeight
+     * @throws IllegalArgumentException if maximumWeight is not positive
+     */
+    void setMaximumWeight(long maximumWeight) {
+        if (maximumWeight <= 0) throw new IllegalArgumentException("maximumWeight must be positive");
+
+        this.maximumWeight = maximumWeight;
+
+        lockEviction();
+
+        try {
+            drainBuffers();
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns total weight of values, pending writes are applied first
+     *
+     * @return
+     */
+    long weight() {
+        lockEviction();
+
+        try {
+            drainBuffers();
+
+            return weight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether value is already expired, expired values at LRU end of
+     * list are removed during maintenance
+     *
+     * @param value
+     * @return
+     */
+    protected boolean isExpired(V value) {
+        return false;
+    }
+
+    //guarded by evictionLock
+    private void evict() {
+        int linked = data.size();
+        int overCapacity = 0;
+        int overWeight = 0;
+
+        while ((linked > capacity || weight > maximumWeight) && head.next != head) {
+            Node<K, V> node = head.next;
+
+            if (linked > capacity) ++overCapacity;
+            else ++overWeight;
+
+            V value = node.retire();
+
+            data.remove(node.key, node);
+            unlink(node);
+            --linked;
+
+            if (value != null) onRemoval(node.key, value);
+        }
+
+        CacheEventListener eventListener = this.eventListener;
+
+        if (eventListener != null) {
+            if (overCapacity > 0) eventListener.onEviction(CacheEventListener.EvictionCause.CAPACITY, overCapacity);
+            if (overWeight > 0) eventListener.onEviction(CacheEventListener.EvictionCause.WEIGHT, overWeight);
+        }
+    }
+
+    //guarded by evictionLock
+    private void linkAtTail(Node<K, V> node) {
+        node.weight = weigh(node.value);
+        weight += node.weight;
+
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+    }
+
+    //guarded by evictionLock
+    private void unlink(Node<K, V> node) {
+        weight -= node.weight;
+
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    //guarded by evictionLock
+    private void moveToTail(Node<K, V> node) {
+        if (head.prev == node) return;
+
+        unlink(node);
+        linkAtTail(node);
+    }
+
+    /**
+     * Links new node into LRU list and evicts if capacity is exceeded
+     */
+    private final class AddTask implements Runnable {
+        private final Node<K, V> node;
+
+        AddTask(Node<K, V> node) {
+            this.node = node;
+        }
+
+        @Override
+        public void run() {
+            //node could be removed before its task was applied
+            if (node.isAlive()) {
+                linkAtTail(node);
+                evict();
+            }
+        }
+    }
+
+    /**
+     * Accounts new weight of updated node and moves it to tail if requested
+     */
+    private final class UpdateTask implements Runnable {
+        private final Node<K, V> node;
+        private final boolean reorder;
+
+        UpdateTask(Node<K, V> node, boolean reorder) {
+            this.node = node;
+            this.reorder = reorder;
+        }
+
+        @Override
+        public void run() {
+            if (!node.isLinked()) return;
+
+            int newWeight = weigh(node.value);
+
+            weight += newWeight - node.weight;
+            node.weight = newWeight;
+
+            if (reorder) moveToTail(node);
+
+            evict();
+        }
+    }
+
+    /**
+     * Unlinks removed node from LRU list
+     */
+    private final class RemoveTask implements Runnable {
+        private final Node<K, V> node;
+
+        RemoveTask(Node<K, V> node) {
+            this.node = node;
+        }
+
+        @Override
+        public void run() {
+            if (node.isLinked()) unlink(node);
+        }
+    }
+
+    /**
+     * Map entry which is also LRU list node.
+     *
+     * Once retired node can't be updated and has to be replaced in map.
+     */
+    static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        private volatile boolean alive = true;
+
+        //guarded by evictionLock
+        Node<K, V> prev;
+        Node<K, V> next;
+        int weight;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        boolean isAlive() {
+            return alive;
+        }
+
+        /**
+         * Replaces value if node is alive
+         *
+         * @param newValue
+         * @return previous value or null if node is retired
+         */
+        synchronized V update(V newValue) {
+            if (!alive) return null;
+
+            V oldValue = value;
+            value = newValue;
+
+            return oldValue;
+        }
+
+        /**
+         * Replaces value if node is alive and its value equals expectedValue
+         *
+         * @param expectedValue
+         * @param newValue
+         * @return replaced value or null if value wasn't replaced
+         */
+        synchronized V replace(V expectedValue, V newValue) {
+            if (!alive || !value.equals(expectedValue)) return null;
+
+            V oldValue = value;
+            value = newValue;
+
+            return oldValue;
+        }
+
+        /**
+         * Marks node as retired if it's alive and its value equals
+         * expectedValue
+         *
+         * @param expectedValue
+         * @return true if node was retired by this call
+         */
+        synchronized boolean retire(V expectedValue) {
+            if (!alive || !value.equals(expectedValue)) return false;
+
+            alive = false;
+
+            return true;
+        }
+
+        /**
+         * Marks node as retired
+         *
+         * @return value of node or null if it was already retired
+         */
+        synchronized V retire() {
+            if (!alive) return null;
+
+            alive = false;
+
+            return value;
+        }
+
+        boolean isLinked() {
+            return prev != null;
+        }
+    }
+}
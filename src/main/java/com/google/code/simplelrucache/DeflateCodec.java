@@ -0,0 +1,103 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ValueCodec which compresses output of other codec with DEFLATE
+ *
+ * @param <V> class uses as values
+ * @author Damian Momot
+ */
+public class DeflateCodec<V> implements ValueCodec<V> {
+    private static final int BUFFER_SIZE = 4096;
+
+    private final ValueCodec<V> codec;
+    private final int level;
+
+    /**
+     * Creates DeflateCodec
+     *
+     * @param codec codec which output is compressed
+     * @param level compression level from 0 to 9
+     * @throws IllegalArgumentException if level is out of range
+     */
+    public DeflateCodec(ValueCodec<V> codec, int level) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) throw new IllegalArgumentException("level must be in [0, 9]");
+
+        this.codec = codec;
+        this.level = level;
+    }
+
+    /**
+     * Creates DeflateCodec with Deflater.BEST_SPEED level
+     *
+     * @param codec codec which output is compressed
+     */
+    public DeflateCodec(ValueCodec<V> codec) {
+        this(codec, Deflater.BEST_SPEED);
+    }
+
+    @Override
+    public byte[] encode(V value) {
+        byte[] data = codec.encode(value);
+        Deflater deflater = new Deflater(level);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2 + 16);
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+
+        return output.toByteArray();
+    }
+
+    @Override
+    public V decode(byte[] data) {
+        Inflater inflater = new Inflater();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 4);
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try {
+            inflater.setInput(data);
+
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+
+                if (length == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) throw new IllegalStateException("truncated data");
+
+                output.write(buffer, 0, length);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("value can't be decompressed", e);
+        } finally {
+            inflater.end();
+        }
+
+        return codec.decode(output.toByteArray());
+    }
+}
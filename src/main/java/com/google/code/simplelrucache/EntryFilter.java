@@ -0,0 +1,35 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ * Selects cache entries
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ * @see TaggedConcurrentLruCache#invalidateIf(EntryFilter)
+ */
+public interface EntryFilter<K, V> {
+    /**
+     * Returns whether entry is selected
+     *
+     * @param key key of entry
+     * @param value current valid value
+     * @return
+     */
+    boolean matches(K key, V value);
+}
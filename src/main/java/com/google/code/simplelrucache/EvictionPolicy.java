@@ -0,0 +1,62 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ * Eviction policy interface. Policy tracks keys stored in cache and decides
+ * which one should be evicted when cache exceeds its capacity.
+ * <p>
+ * Implementations don't have to be threadsafe - cache calls them while
+ * holding its own lock. Single policy instance can't be shared by caches.
+ *
+ * @param <K> class used as key of cache
+ * @author Damian Momot
+ */
+public interface EvictionPolicy<K> {
+    /**
+     * Called when existing key is read or updated
+     *
+     * @param key
+     */
+    void recordAccess(K key);
+
+    /**
+     * Called when new key is stored in cache
+     *
+     * @param key
+     */
+    void recordInsert(K key);
+
+    /**
+     * Called when key is removed from cache other than by eviction
+     *
+     * @param key
+     */
+    void recordRemove(K key);
+
+    /**
+     * Selects key which should be evicted and stops tracking it. Called only
+     * when cache holds at least one entry.
+     *
+     * @return key to evict
+     */
+    K selectVictim();
+
+    /**
+     * Forgets all tracked keys
+     */
+    void clear();
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ * Base of LruCacheEntry implementations with expiration time which can be
+ * changed after creation. Entry expires at its expiration time or, if it's
+ * touched, when it's not touched for time to idle - whichever comes first.
+ *
+ * @author Damian Momot
+ */
+abstract class ExpiringCacheEntry<V> implements LruCacheEntry<V> {
+    private volatile long expirationTime;
+    private volatile long idleExpirationTime = Long.MAX_VALUE;
+    //nanoseconds it took to compute value, 0 if unknown
+    private volatile long loadTime;
+
+    /**
+     * Creates ExpiringCacheEntry with desired ttl
+     *
+     * @param ttl time to live in milliseconds
+     * @throws IllegalArgumentException if ttl is not positive
+     */
+    ExpiringCacheEntry(long ttl) {
+        if (ttl <= 0) throw new IllegalArgumentException("ttl must be positive");
+
+        setTtl(System.currentTimeMillis(), ttl);
+    }
+
+    /**
+     * Returns value if entry is valid, null otherwise.
+     *
+     * Entry is invalid if it's expired or its value is not available anymore
+     *
+     * @return value if entry is valid
+     */
+    @Override
+    public V getValue() {
+        if (isExpired()) return null;
+        else return getReferent();
+    }
+
+    /**
+     * Checks whether entry is valid without necessarily retrieving its value
+     *
+     * @return
+     */
+    boolean isValid() {
+        return !isExpired() && getReferent() != null;
+    }
+
+    boolean isExpired() {
+        return System.currentTimeMillis() > getExpirationTime();
+    }
+
+    /**
+     * Returns stored value regardless of expiration time
+     *
+     * @return value or null if it's not available anymore
+     */
+    abstract protected V getReferent();
+
+    long getExpirationTime() {
+        return Math.min(expirationTime, idleExpirationTime);
+    }
+
+    long getLoadTime() {
+        return loadTime;
+    }
+
+    void setLoadTime(long loadTime) {
+        this.loadTime = loadTime;
+    }
+
+    /**
+     * Changes expiration time to now + ttl. Non-positive ttl expires entry.
+     *
+     * @param now current time in milliseconds
+     * @param ttl time to live in milliseconds
+     */
+    void setTtl(long now, long ttl) {
+        expirationTime = deadline(now, ttl);
+    }
+
+    /**
+     * Marks entry as used, so it stays valid for next timeToIdle
+     * milliseconds. It's single volatile write.
+     *
+     * @param now current time in milliseconds
+     * @param timeToIdle time to idle in milliseconds
+     */
+    void touch(long now, long timeToIdle) {
+        idleExpirationTime = deadline(now, timeToIdle);
+    }
+
+    static long deadline(long now, long ttl) {
+        if (ttl <= 0) return now - 1;
+        //avoid overflow for very long ttls
+        else if (ttl > Long.MAX_VALUE - now) return Long.MAX_VALUE;
+        else return now + ttl;
+    }
+}
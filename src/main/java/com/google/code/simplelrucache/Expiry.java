@@ -0,0 +1,62 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ * Computes lifetime of cache entries from their keys and values. It allows
+ * ttl to be decided after value is loaded (e.g. from HTTP max-age or token
+ * expiration time).
+ * <p>
+ * All durations are in milliseconds. Non-positive duration means that entry
+ * expires immediately.
+ *
+ * @param <K> class used as key of cache
+ * @param <V> class uses as values
+ * @author Damian Momot
+ * @see BaseLruCache#setExpiry(Expiry)
+ */
+public interface Expiry<K, V> {
+    /**
+     * Returns lifetime of new entry
+     *
+     * @param key key of entry
+     * @param value value of entry
+     * @param ttl ttl requested by caller (cache default if not given)
+     * @return time to live in milliseconds
+     */
+    long expireAfterCreate(K key, V value, long ttl);
+
+    /**
+     * Returns lifetime of entry which value is being replaced
+     *
+     * @param key key of entry
+     * @param value new value of entry
+     * @param ttl ttl requested by caller (cache default if not given)
+     * @param currentDuration remaining lifetime of current value
+     * @return time to live in milliseconds
+     */
+    long expireAfterUpdate(K key, V value, long ttl, long currentDuration);
+
+    /**
+     * Returns remaining lifetime of entry which was just read
+     *
+     * @param key key of entry
+     * @param value value of entry
+     * @param currentDuration remaining lifetime of entry
+     * @return time to live in milliseconds, currentDuration to keep it
+     */
+    long expireAfterRead(K key, V value, long currentDuration);
+}
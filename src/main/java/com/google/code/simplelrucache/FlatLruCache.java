@@ -0,0 +1,448 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Threadsafe LruCache which doesn't allocate any objects per entry. Keys and
+ * values are kept in Object[] arrays indexed by slot, their hashes,
+ * expiration times and LRU list links in parallel primitive arrays, and hash
+ * index is open addressing int[] table of slots. All arrays are allocated
+ * upfront for full capacity, so garbage collector sees constant number of
+ * objects besides keys and values, regardless of cache size.
+ * <p>
+ * All operations are synchronized, like in SynchronizedLruCache. Features
+ * which need per entry objects (Expiry, time to idle, store-by-value) are
+ * not supported.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class FlatLruCache<K, V> implements OrderedLruCache<K, V> {
+    private static final int EMPTY = -1;
+
+    private final int capacity;
+    private final long ttl;
+
+    private final Object[] keys;
+    private final Object[] values;
+    private final int[] hashes;
+    private final long[] expirationTimes;
+    //LRU list, slot capacity is head, next[head] is least recently used
+    private final int[] prev;
+    private final int[] next;
+    //slots of keys, linear probing, EMPTY marks free position
+    private final int[] index;
+    private final int indexMask;
+
+    private int size;
+    //free slots are chained by next links
+    private int freeSlot;
+
+    /**
+     * Creates new FlatLruCache
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @throws IllegalArgumentException if capacity or ttl is not positive
+     */
+    public FlatLruCache(int capacity, long ttl) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        if (ttl <= 0) throw new IllegalArgumentException("ttl must be positive");
+        if (capacity > 1 << 29) throw new IllegalArgumentException("capacity is too big");
+
+        this.capacity = capacity;
+        this.ttl = ttl;
+
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        expirationTimes = new long[capacity];
+        prev = new int[capacity + 1];
+        next = new int[capacity + 1];
+
+        //load factor at most 0.5
+        int indexSize = 2;
+        while (indexSize < capacity * 2) indexSize <<= 1;
+
+        index = new int[indexSize];
+        indexMask = indexSize - 1;
+
+        reset();
+    }
+
+    private void reset() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        Arrays.fill(index, EMPTY);
+
+        prev[capacity] = capacity;
+        next[capacity] = capacity;
+
+        for (int slot = 0; slot < capacity; ++slot) {
+            next[slot] = slot + 1 < capacity ? slot + 1 : EMPTY;
+        }
+
+        freeSlot = 0;
+        size = 0;
+    }
+
+    private static int hash(Object key) {
+        return Hashing.spread(key.hashCode());
+    }
+
+    /**
+     * Finds index position of key
+     *
+     * @param key
+     * @param hash
+     * @return position or EMPTY if key is not present
+     */
+    private int find(Object key, int hash) {
+        for (int position = hash & indexMask; ; position = (position + 1) & indexMask) {
+            int slot = index[position];
+
+            if (slot == EMPTY) return EMPTY;
+            if (hashes[slot] == hash && keys[slot].equals(key)) return position;
+        }
+    }
+
+    private boolean isValid(int slot) {
+        return expirationTimes[slot] > System.currentTimeMillis();
+    }
+
+    /**
+     * Removes index position, later entries of its probe sequence are shifted
+     * back, so index has no tombstones
+     *
+     * @param position
+     */
+    private void removeFromIndex(int position) {
+        int gap = position;
+
+        for (int i = (gap + 1) & indexMask; index[i] != EMPTY; i = (i + 1) & indexMask) {
+            int ideal = hashes[index[i]] & indexMask;
+
+            //entry can move back only if gap is not before its ideal position
+            if (((i - ideal) & indexMask) >= ((i - gap) & indexMask)) {
+                index[gap] = index[i];
+                gap = i;
+            }
+        }
+
+        index[gap] = EMPTY;
+    }
+
+    private void unlink(int slot) {
+        next[prev[slot]] = next[slot];
+        prev[next[slot]] = prev[slot];
+    }
+
+    private void linkAtTail(int slot) {
+        prev[slot] = prev[capacity];
+        next[slot] = capacity;
+        next[prev[capacity]] = slot;
+        prev[capacity] = slot;
+    }
+
+    private void moveToTail(int slot) {
+        unlink(slot);
+        linkAtTail(slot);
+    }
+
+    /**
+     * Removes entry at index position
+     *
+     * @param position
+     */
+    private void removeAt(int position) {
+        int slot = index[position];
+
+        removeFromIndex(position);
+        unlink(slot);
+
+        keys[slot] = null;
+        values[slot] = null;
+        next[slot] = freeSlot;
+        freeSlot = slot;
+        --size;
+    }
+
+    /**
+     * Returns index position of valid entry of key, removes invalid entry
+     *
+     * @param key
+     * @param hash
+     * @return position or EMPTY
+     */
+    private int findValid(Object key, int hash) {
+        int position = find(key, hash);
+
+        if (position == EMPTY || isValid(index[position])) return position;
+
+        removeAt(position);
+
+        return EMPTY;
+    }
+
+    private void store(K key, int hash, V value, long ttl) {
+        long expirationTime = ExpiringCacheEntry.deadline(System.currentTimeMillis(), ttl);
+        int position = find(key, hash);
+
+        if (position != EMPTY) {
+            int slot = index[position];
+
+            values[slot] = value;
+            expirationTimes[slot] = expirationTime;
+            moveToTail(slot);
+
+            return;
+        }
+
+        //evict least recently used entry
+        if (freeSlot == EMPTY) removeAt(find(keys[next[capacity]], hashes[next[capacity]]));
+
+        int slot = freeSlot;
+        freeSlot = next[slot];
+
+        keys[slot] = key;
+        values[slot] = value;
+        hashes[slot] = hash;
+        expirationTimes[slot] = expirationTime;
+        linkAtTail(slot);
+        ++size;
+
+        for (position = hash & indexMask; index[position] != EMPTY; position = (position + 1) & indexMask);
+
+        index[position] = slot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int position) {
+        return (V) values[index[position]];
+    }
+
+    @Override
+    synchronized public void clear() {
+        reset();
+    }
+
+    @Override
+    synchronized public boolean contains(K key) {
+        return findValid(key, hash(key)) != EMPTY;
+    }
+
+    @Override
+    synchronized public V get(K key) {
+        int position = findValid(key, hash(key));
+
+        if (position == EMPTY) return null;
+
+        moveToTail(index[position]);
+
+        return valueAt(position);
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable, long ttl) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    /**
+     * Callable is called without lock, concurrent callers can load the same
+     * key - first stored value wins.
+     */
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable, long ttl) throws Exception {
+        V value = get(key);
+
+        if (value != null) return value;
+
+        value = callable.call();
+
+        if (value == null) return null;
+
+        V current = putIfAbsent(key, value, ttl);
+
+        return current != null ? current : value;
+    }
+
+    @Override
+    synchronized public V computeIfPresent(K key, ValueUpdater<K, V> updater) throws Exception {
+        int hash = hash(key);
+        int position = findValid(key, hash);
+
+        if (position == EMPTY) return null;
+
+        V value = updater.update(key, valueAt(position));
+
+        if (value == null) removeAt(position);
+        else store(key, hash, value, ttl);
+
+        return value;
+    }
+
+    @Override
+    public long getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    synchronized public long getSize() {
+        return size;
+    }
+
+    @Override
+    public long getTtl() {
+        return ttl;
+    }
+
+    @Override
+    synchronized public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        put(key, value, ttl);
+    }
+
+    @Override
+    synchronized public void put(K key, V value, long ttl) {
+        if (value == null) return;
+
+        int hash = hash(key);
+
+        //value which expires immediately still replaces current one
+        if (ttl > 0) store(key, hash, value, ttl);
+        else remove(key);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putIfAbsent(key, value, ttl);
+    }
+
+    @Override
+    synchronized public V putIfAbsent(K key, V value, long ttl) {
+        int hash = hash(key);
+        int position = findValid(key, hash);
+
+        if (position != EMPTY) {
+            moveToTail(index[position]);
+
+            return valueAt(position);
+        }
+
+        if (value != null && ttl > 0) store(key, hash, value, ttl);
+
+        return null;
+    }
+
+    @Override
+    synchronized public void remove(K key) {
+        int position = find(key, hash(key));
+
+        if (position != EMPTY) removeAt(position);
+    }
+
+    @Override
+    synchronized public boolean remove(K key, V value) {
+        int position = findValid(key, hash(key));
+
+        if (position == EMPTY || !valueAt(position).equals(value)) return false;
+
+        removeAt(position);
+
+        return true;
+    }
+
+    @Override
+    synchronized public boolean replace(K key, V oldValue, V newValue) {
+        if (newValue == null) return remove(key, oldValue);
+
+        int hash = hash(key);
+        int position = findValid(key, hash);
+
+        if (position == EMPTY || !valueAt(position).equals(oldValue)) return false;
+
+        store(key, hash, newValue, ttl);
+
+        return true;
+    }
+
+    @Override
+    public Map<K, V> coldest(int limit) {
+        return copyOf(snapshot(limit, true));
+    }
+
+    @Override
+    public Map<K, V> hottest(int limit) {
+        return copyOf(snapshot(limit, false));
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return snapshot(Integer.MAX_VALUE, true).iterator();
+    }
+
+    private Map<K, V> copyOf(List<Map.Entry<K, V>> entries) {
+        Map<K, V> values = new LinkedHashMap<K, V>();
+
+        for (Map.Entry<K, V> entry : entries) {
+            values.put(entry.getKey(), entry.getValue());
+        }
+
+        return values;
+    }
+
+    /**
+     * Copies valid entries in LRU order
+     *
+     * @param limit
+     * @param ascending true for least recently used first
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    synchronized private List<Map.Entry<K, V>> snapshot(int limit, boolean ascending) {
+        List<Map.Entry<K, V>> entries = new ArrayList<Map.Entry<K, V>>(Math.min(limit, size));
+
+        for (int slot = ascending ? next[capacity] : prev[capacity]; slot != capacity && entries.size() < limit; slot = ascending ? next[slot] : prev[slot]) {
+            if (isValid(slot)) entries.add(new AbstractMap.SimpleImmutableEntry<K, V>((K) keys[slot], (V) values[slot]));
+        }
+
+        return entries;
+    }
+}
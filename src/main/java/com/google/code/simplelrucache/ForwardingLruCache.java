@@ -0,0 +1,137 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * LruCache which forwards all calls to another cache. Base class for caches
+ * which add behaviour on top of existing implementation.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+abstract class ForwardingLruCache<K, V> implements LruCache<K, V> {
+    protected final LruCache<K, V> cache;
+
+    /**
+     * Creates ForwardingLruCache
+     *
+     * @param cache cache which receives calls
+     * @throws IllegalArgumentException if cache is null
+     */
+    protected ForwardingLruCache(LruCache<K, V> cache) {
+        if (cache == null) throw new IllegalArgumentException("cache can't be null");
+
+        this.cache = cache;
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return cache.contains(key);
+    }
+
+    @Override
+    public V get(K key) {
+        return cache.get(key);
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable) throws Exception {
+        return get(key, callable, getTtl());
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable, long ttl) throws Exception {
+        return cache.get(key, callable, ttl);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable) throws Exception {
+        return computeIfAbsent(key, callable, getTtl());
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable, long ttl) throws Exception {
+        return cache.computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V computeIfPresent(K key, ValueUpdater<K, V> updater) throws Exception {
+        return cache.computeIfPresent(key, updater);
+    }
+
+    @Override
+    public long getCapacity() {
+        return cache.getCapacity();
+    }
+
+    @Override
+    public long getSize() {
+        return cache.getSize();
+    }
+
+    @Override
+    public long getTtl() {
+        return cache.getTtl();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cache.isEmpty();
+    }
+
+    @Override
+    public void put(K key, V value) {
+        put(key, value, getTtl());
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
+        cache.put(key, value, ttl);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putIfAbsent(key, value, getTtl());
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value, long ttl) {
+        return cache.putIfAbsent(key, value, ttl);
+    }
+
+    @Override
+    public void remove(K key) {
+        cache.remove(key);
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        return cache.remove(key, value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        return cache.replace(key, oldValue, newValue);
+    }
+}
@@ -0,0 +1,318 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds most frequently read keys of cache. Attached to cache with
+ * BaseLruCache.setHotKeyTracker it samples reads: one of sampleRate reads is
+ * counted in count-min sketch and keys with highest estimates are kept as
+ * heavy hitters. Memory use is constant and not sampled reads cost single
+ * random number. Sampled reads of keys already kept as heavy hitters don't
+ * lock, lock is taken only when new key displaces coldest one.
+ * <p>
+ * Counts decay - they are halved each time number of sampled reads reaches
+ * AGING_FACTOR times sketch width, so report follows current traffic.
+ * Counts are approximate: sketch can overestimate and concurrent reads can be
+ * lost during aging.
+ *
+ * @param <K> key type
+ * @author Damian Momot
+ */
+public class HotKeyTracker<K> {
+    public static final int DEFAULT_SAMPLE_RATE = 16;
+    public static final int DEPTH = 4;
+    public static final int AGING_FACTOR = 10;
+
+    private static final int MIN_WIDTH = 1024;
+    //keys read once are never candidates, so they don't take heavy hitters lock
+    private static final int MIN_THRESHOLD = 2;
+    private static final int[] SEEDS = {0x97cb3127, 0x4cf5ad43, 0x7feb352d, 0x846ca68b};
+
+    private static final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    /**
+     * Key with its estimated read count
+     *
+     * @param <K> key type
+     */
+    public static final class HotKey<K> {
+        private final K key;
+        private final long count;
+        private final double rate;
+
+        HotKey(K key, long count, double rate) {
+            this.key = key;
+            this.count = count;
+            this.rate = rate;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * Returns estimated number of reads in current window
+         *
+         * @return
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns estimated reads per second
+         *
+         * @return
+         */
+        public double getRate() {
+            return rate;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + count;
+        }
+    }
+
+    /**
+     * Immutable report of tracker state
+     *
+     * @param <K> key type
+     */
+    public static final class Snapshot<K> {
+        private final List<HotKey<K>> hotKeys;
+        private final long readCount;
+        private final long window;
+
+        Snapshot(List<HotKey<K>> hotKeys, long readCount, long window) {
+            this.hotKeys = hotKeys;
+            this.readCount = readCount;
+            this.window = window;
+        }
+
+        /**
+         * Returns hottest keys, hottest first
+         *
+         * @return
+         */
+        public List<HotKey<K>> getHotKeys() {
+            return hotKeys;
+        }
+
+        /**
+         * Returns estimated number of all reads in current window
+         *
+         * @return
+         */
+        public long getReadCount() {
+            return readCount;
+        }
+
+        /**
+         * Returns length of current window in milliseconds
+         *
+         * @return
+         */
+        public long getWindow() {
+            return window;
+        }
+    }
+
+    private final int topK;
+    private final int sampleRate;
+    private final int mask;
+    private final AtomicIntegerArray sketch;
+    private final AtomicLong samples = new AtomicLong();
+    //sampled reads in current window, halved with counts
+    private final AtomicLong windowSamples = new AtomicLong();
+    private final long agingThreshold;
+
+    //count which key needs to enter full heavy hitters, racy read is enough
+    private volatile int threshold = MIN_THRESHOLD;
+
+    //counts of candidates are updated in place, adding and removing candidates is guarded by heavyHitters
+    private final ConcurrentMap<K, Integer> heavyHitters = new ConcurrentHashMap<K, Integer>();
+    //guarded by heavyHitters
+    private long windowStart = System.currentTimeMillis();
+
+    /**
+     * Creates tracker
+     *
+     * @param topK number of reported keys
+     * @param sampleRate one of sampleRate reads is counted, 1 counts all reads
+     * @throws IllegalArgumentException if topK or sampleRate is not positive
+     */
+    public HotKeyTracker(int topK, int sampleRate) {
+        if (topK <= 0) throw new IllegalArgumentException("topK must be positive");
+        if (sampleRate <= 0) throw new IllegalArgumentException("sampleRate must be positive");
+
+        this.topK = topK;
+        this.sampleRate = sampleRate;
+
+        int width = MIN_WIDTH;
+        while (width < topK * 64) width <<= 1;
+
+        mask = width - 1;
+        sketch = new AtomicIntegerArray(DEPTH * width);
+        agingThreshold = (long) width * AGING_FACTOR;
+    }
+
+    /**
+     * Creates tracker with DEFAULT_SAMPLE_RATE
+     *
+     * @param topK number of reported keys
+     * @throws IllegalArgumentException if topK is not positive
+     */
+    public HotKeyTracker(int topK) {
+        this(topK, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * Records read of key
+     *
+     * @param key
+     */
+    public void record(K key) {
+        if (sampleRate > 1 && random.get().nextInt(sampleRate) != 0) return;
+
+        int hash = Hashing.spread(key.hashCode());
+        int estimate = Integer.MAX_VALUE;
+
+        for (int i = 0; i < DEPTH; ++i) {
+            int index = i * (mask + 1) + (Hashing.spread(hash ^ SEEDS[i]) & mask);
+
+            estimate = Math.min(estimate, sketch.incrementAndGet(index));
+        }
+
+        windowSamples.incrementAndGet();
+
+        //only new candidate takes lock
+        if (estimate >= threshold && heavyHitters.replace(key, estimate) == null) offer(key, estimate);
+        if (samples.incrementAndGet() % agingThreshold == 0) age();
+    }
+
+    private void offer(K key, int estimate) {
+        synchronized (heavyHitters) {
+            if (heavyHitters.put(key, estimate) != null) return;
+
+            //twice topK candidates are kept, so keys close to top don't flap
+            if (heavyHitters.size() <= topK * 2) return;
+
+            K coldest = null;
+            int coldestCount = Integer.MAX_VALUE;
+
+            for (Map.Entry<K, Integer> entry : heavyHitters.entrySet()) {
+                if (entry.getValue() < coldestCount) {
+                    coldest = entry.getKey();
+                    coldestCount = entry.getValue();
+                }
+            }
+
+            heavyHitters.remove(coldest);
+            threshold = coldestCount + 1;
+        }
+    }
+
+    /**
+     * Halves all counts and length of window
+     */
+    private void age() {
+        for (int i = 0; i < sketch.length(); ++i) {
+            sketch.set(i, sketch.get(i) >>> 1);
+        }
+
+        synchronized (heavyHitters) {
+            //counts updated concurrently come from already halved sketch
+            for (Map.Entry<K, Integer> entry : heavyHitters.entrySet()) {
+                int count = entry.getValue() >>> 1;
+
+                if (count == 0) heavyHitters.remove(entry.getKey(), entry.getValue());
+                else heavyHitters.replace(entry.getKey(), entry.getValue(), count);
+            }
+
+            long now = System.currentTimeMillis();
+
+            windowStart = now - (now - windowStart) / 2;
+            windowSamples.set(windowSamples.get() / 2);
+            threshold = Math.max(MIN_THRESHOLD, threshold >>> 1);
+        }
+    }
+
+    /**
+     * Returns hottest keys
+     *
+     * @return up to topK keys, hottest first
+     */
+    public List<HotKey<K>> getHotKeys() {
+        return snapshot().getHotKeys();
+    }
+
+    /**
+     * Returns report of hottest keys and read count
+     *
+     * @return
+     */
+    public Snapshot<K> snapshot() {
+        List<Map.Entry<K, Integer>> entries;
+        long window;
+        long sampled;
+
+        synchronized (heavyHitters) {
+            entries = new ArrayList<Map.Entry<K, Integer>>(heavyHitters.size());
+
+            for (Map.Entry<K, Integer> entry : heavyHitters.entrySet()) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<K, Integer>(entry));
+            }
+
+            window = Math.max(1, System.currentTimeMillis() - windowStart);
+            sampled = windowSamples.get();
+        }
+
+        Collections.sort(entries, new Comparator<Map.Entry<K, Integer>>() {
+            @Override
+            public int compare(Map.Entry<K, Integer> o1, Map.Entry<K, Integer> o2) {
+                return o2.getValue().compareTo(o1.getValue());
+            }
+        });
+
+        List<HotKey<K>> hotKeys = new ArrayList<HotKey<K>>(Math.min(topK, entries.size()));
+
+        for (Map.Entry<K, Integer> entry : entries.subList(0, Math.min(topK, entries.size()))) {
+            long count = (long) entry.getValue() * sampleRate;
+
+            hotKeys.add(new HotKey<K>(entry.getKey(), count, count * 1000.0 / window));
+        }
+
+        return new Snapshot<K>(Collections.unmodifiableList(hotKeys), sampled * sampleRate, window);
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Small FIFO set of CompressedCacheEntries which keep their decoded values.
+ * Entry pushed out of set drops its decoded value.
+ *
+ * @author Damian Momot
+ */
+class HotValueSet<V> {
+    private final AtomicReferenceArray<CompressedCacheEntry<V>> slots;
+    private final AtomicInteger index = new AtomicInteger();
+    private final int mask;
+
+    /**
+     * Creates HotValueSet
+     *
+     * @param size number of entries, rounded up to power of 2
+     * @throws IllegalArgumentException if size is not positive
+     */
+    HotValueSet(int size) {
+        if (size <= 0) throw new IllegalArgumentException("size must be positive");
+
+        int slotCount = 1;
+        while (slotCount < size) slotCount <<= 1;
+
+        slots = new AtomicReferenceArray<CompressedCacheEntry<V>>(slotCount);
+        mask = slotCount - 1;
+    }
+
+    void add(CompressedCacheEntry<V> entry) {
+        CompressedCacheEntry<V> evicted = slots.getAndSet(index.getAndIncrement() & mask, entry);
+
+        //entry added twice may lose its decoded value early, it's just decoded again
+        if (evicted != null && evicted != entry) evicted.decoded = null;
+    }
+}
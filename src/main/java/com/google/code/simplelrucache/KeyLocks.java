@@ -0,0 +1,55 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ * Fixed set of monitors shared by keys, so operations on the same key can be
+ * serialized without lock per key
+ *
+ * @author Damian Momot
+ */
+final class KeyLocks {
+    private static final int STRIPES = 64;
+
+    private final Object[] locks = new Object[STRIPES];
+
+    KeyLocks() {
+        for (int i = 0; i < STRIPES; ++i) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns monitor of key
+     *
+     * @param key
+     * @return
+     */
+    Object of(Object key) {
+        return locks[Hashing.spread(key.hashCode()) & (STRIPES - 1)];
+    }
+
+    /**
+     * Waits until monitors held when it was called are released
+     */
+    void barrier() {
+        for (Object lock : locks) {
+            synchronized (lock) {
+                //only acquired to wait for current owner
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CacheEventListener which logs events exceeding thresholds. Slow and
+ * failed loads and long lock waits are logged as warnings, big eviction
+ * batches and expiration sweeps as info. Events below thresholds cost
+ * single comparison.
+ *
+ * @author Damian Momot
+ */
+public class LoggingCacheEventListener implements CacheEventListener {
+    protected static final Logger logger = LoggerFactory.getLogger(LoggingCacheEventListener.class);
+
+    private final long loadThreshold;
+    private final long lockWaitThreshold;
+    private final int batchThreshold;
+
+    /**
+     * Creates LoggingCacheEventListener
+     *
+     * @param loadThreshold min load time in milliseconds which is logged
+     * @param lockWaitThreshold min lock wait in milliseconds which is logged
+     * @param batchThreshold min number of entries evicted or expired at once which is logged
+     * @throws IllegalArgumentException if any threshold is negative
+     */
+    public LoggingCacheEventListener(long loadThreshold, long lockWaitThreshold, int batchThreshold) {
+        if (loadThreshold < 0 || lockWaitThreshold < 0 || batchThreshold < 0) throw new IllegalArgumentException("thresholds can't be negative");
+
+        this.loadThreshold = loadThreshold * 1000000;
+        this.lockWaitThreshold = lockWaitThreshold * 1000000;
+        this.batchThreshold = batchThreshold;
+    }
+
+    @Override
+    public void onLoad(Object key, long duration, LoadOutcome outcome) {
+        if (duration >= loadThreshold || outcome == LoadOutcome.FAILED) {
+            logger.warn("Load of {} key took {} ms, outcome {}", new Object[] {key.getClass().getName(), duration / 1000000, outcome});
+        }
+    }
+
+    @Override
+    public void onEviction(EvictionCause cause, int count) {
+        if (count >= batchThreshold) logger.info("Evicted {} entries, cause {}", count, cause);
+    }
+
+    @Override
+    public void onExpirationSweep(int count, long duration) {
+        if (count >= batchThreshold) logger.info("Removed {} expired entries in {} us", count, duration / 1000);
+    }
+
+    @Override
+    public void onLockWait(long duration) {
+        if (duration >= lockWaitThreshold) logger.warn("Waited {} ms for eviction lock", duration / 1000000);
+    }
+}
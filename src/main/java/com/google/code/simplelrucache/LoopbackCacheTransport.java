@@ -0,0 +1,64 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-process CacheTransport - nodes are caches registered in the same JVM.
+ * Useful for tests and for partitioning single process cache between
+ * several independently locked caches.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class LoopbackCacheTransport<K, V> implements CacheTransport<K, V> {
+    private final ConcurrentMap<String, LruCache<K, V>> nodes = new ConcurrentHashMap<String, LruCache<K, V>>();
+
+    @Override
+    public LruCache<K, V> connect(String node) {
+        LruCache<K, V> cache = nodes.get(node);
+
+        if (cache == null) throw new IllegalStateException("unknown node: " + node);
+
+        return cache;
+    }
+
+    /**
+     * Registers cache of node, replacing previous one
+     *
+     * @param node
+     * @param cache
+     * @throws IllegalArgumentException if node or cache is null
+     */
+    public void register(String node, LruCache<K, V> cache) {
+        if (node == null) throw new IllegalArgumentException("node can't be null");
+        if (cache == null) throw new IllegalArgumentException("cache can't be null");
+
+        nodes.put(node, cache);
+    }
+
+    /**
+     * Unregisters node, further connections to it fail
+     *
+     * @param node
+     */
+    public void unregister(String node) {
+        nodes.remove(node);
+    }
+}
@@ -82,6 +82,54 @@ public interface LruCache<K, V> {
 	 */
 	V get(K key, Callable<V> callable, long ttl) throws Exception;
 
+	/**
+	 * Atomically creates element using callable if key doesn't have valid
+	 * entry. If other thread stores value in the meantime, that value is
+	 * returned and result of callable is discarded.
+	 * <p>
+	 * Default TTL is used
+	 *
+	 * @param key
+	 *            key to get
+	 * @param callable
+	 *            callable which will be used to create missing/invalid item
+	 * @return cached value or null if callable returned null
+	 * @throws Exception
+	 *             if callable throws exception
+	 */
+	V computeIfAbsent(K key, Callable<V> callable) throws Exception;
+
+	/**
+	 * Atomically creates element using callable if key doesn't have valid
+	 * entry. If other thread stores value in the meantime, that value is
+	 * returned and result of callable is discarded.
+	 *
+	 * @param key
+	 *            key to get
+	 * @param callable
+	 *            callable which will be used to create missing/invalid item
+	 * @param ttl
+	 *            time to live in milliseconds
+	 * @return cached value or null if callable returned null
+	 * @throws Exception
+	 *             if callable throws exception
+	 */
+	V computeIfAbsent(K key, Callable<V> callable, long ttl) throws Exception;
+
+	/**
+	 * Atomically replaces valid value of key with value returned by updater.
+	 * If updater returns null entry is removed. New value gets default TTL.
+	 *
+	 * @param key
+	 *            key to update
+	 * @param updater
+	 *            computes new value from current one
+	 * @return new value or null if key has no valid entry or it was removed
+	 * @throws Exception
+	 *             if updater throws exception
+	 */
+	V computeIfPresent(K key, ValueUpdater<K, V> updater) throws Exception;
+
 	/**
 	 * Returns cache capacity
 	 *
@@ -134,6 +182,32 @@ public interface LruCache<K, V> {
 	 */
 	void put(K key, V value, long ttl);
 
+	/**
+	 * Puts value under key into cache if key doesn't have valid entry.
+	 * Default TTL is used
+	 *
+	 * @param key
+	 *            key for cache entry
+	 * @param value
+	 *            value to cache
+	 * @return current valid value or null if value was stored
+	 */
+	V putIfAbsent(K key, V value);
+
+	/**
+	 * Puts value under key into cache with desired TTL if key doesn't have
+	 * valid entry
+	 *
+	 * @param key
+	 *            key for cache entry
+	 * @param value
+	 *            value to cache
+	 * @param ttl
+	 *            time to live in milliseconds
+	 * @return current valid value or null if value was stored
+	 */
+	V putIfAbsent(K key, V value, long ttl);
+
 	/**
 	 * Removes entry from cache. If entry does not exist this operation has no
 	 * effect
@@ -142,4 +216,29 @@ public interface LruCache<K, V> {
 	 *            key to remove
 	 */
 	void remove(K key);
+
+	/**
+	 * Removes entry from cache only if its current valid value equals value
+	 *
+	 * @param key
+	 *            key to remove
+	 * @param value
+	 *            expected value
+	 * @return true if entry was removed
+	 */
+	boolean remove(K key, V value);
+
+	/**
+	 * Replaces value of entry only if its current valid value equals
+	 * oldValue. New value gets default TTL.
+	 *
+	 * @param key
+	 *            key for cache entry
+	 * @param oldValue
+	 *            expected value
+	 * @param newValue
+	 *            value to cache
+	 * @return true if value was replaced
+	 */
+	boolean replace(K key, V oldValue, V newValue);
 }
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Classic LRU policy - least recently used key is evicted.
+ *
+ * @param <K> class used as key of cache
+ * @author Damian Momot
+ */
+public class LruEvictionPolicy<K> implements EvictionPolicy<K> {
+    private final LinkedHashMap<K, Boolean> keys = new LinkedHashMap<K, Boolean>(16, 0.75f, true);
+
+    @Override
+    public void recordAccess(K key) {
+        keys.get(key);
+    }
+
+    @Override
+    public void recordInsert(K key) {
+        keys.put(key, Boolean.TRUE);
+    }
+
+    @Override
+    public void recordRemove(K key) {
+        keys.remove(key);
+    }
+
+    @Override
+    public K selectVictim() {
+        return PolicyLists.removeEldest(keys);
+    }
+
+    @Override
+    public void clear() {
+        keys.clear();
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Set of per tenant LRU caches sharing single capacity budget. Each tenant
+ * has guaranteed minimum and maximum number of entries. Tenant can grow up to
+ * its maximum while budget isn't used by others - when total size exceeds
+ * capacity, least recently used entry of tenant which is most over its fair
+ * share is evicted. Fair share is tenant minimum plus equal part of capacity
+ * not reserved by minimums, so busy tenant can't push out entries of tenants
+ * which stay within their share, and tenant is never shrunk below its minimum
+ * by other tenants.
+ * <p>
+ * Every tenant is ConcurrentLruCache bounded by tenant maximum. Budget is
+ * checked after operations which can add entry, by single thread at a time,
+ * so total size can briefly exceed capacity under concurrent writes.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class MultiTenantLruCache<K, V> {
+    /**
+     * Tenant view of shared cache
+     */
+    private final class Tenant extends ForwardingLruCache<K, V> {
+        final String name;
+        final int minimum;
+
+        Tenant(String name, int minimum, int maximum) {
+            super(new ConcurrentLruCache<K, V>(maximum, ttl));
+
+            this.name = name;
+            this.minimum = minimum;
+        }
+
+        ConcurrentLruCache<K, V> partition() {
+            return (ConcurrentLruCache<K, V>) cache;
+        }
+
+        @Override
+        public V get(K key, Callable<V> callable, long ttl) throws Exception {
+            V value = cache.get(key, callable, ttl);
+            enforceBudget();
+
+            return value;
+        }
+
+        @Override
+        public V computeIfAbsent(K key, Callable<V> callable, long ttl) throws Exception {
+            V value = cache.computeIfAbsent(key, callable, ttl);
+            enforceBudget();
+
+            return value;
+        }
+
+        @Override
+        public void put(K key, V value, long ttl) {
+            cache.put(key, value, ttl);
+            enforceBudget();
+        }
+
+        @Override
+        public V putIfAbsent(K key, V value, long ttl) {
+            V current = cache.putIfAbsent(key, value, ttl);
+
+            if (current == null) enforceBudget();
+
+            return current;
+        }
+    }
+
+    private final long capacity;
+    private final long ttl;
+    private final ReentrantLock budgetLock = new ReentrantLock();
+
+    //copy on write, modified only under this lock
+    private volatile Map<String, Tenant> tenants = Collections.emptyMap();
+    private volatile long reserved;
+
+    /**
+     * Creates MultiTenantLruCache without tenants
+     *
+     * @param capacity total number of entries of all tenants
+     * @param ttl time to live in milliseconds
+     * @throws IllegalArgumentException if capacity or ttl is not positive
+     */
+    public MultiTenantLruCache(long capacity, long ttl) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        if (ttl <= 0) throw new IllegalArgumentException("ttl must be positive");
+
+        this.capacity = capacity;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Adds tenant
+     *
+     * @param name tenant name
+     * @param minimum number of entries which other tenants can't take, can be 0
+     * @param maximum max number of entries of tenant
+     * @return cache of tenant
+     * @throws IllegalArgumentException if name is null or already used, minimum is negative, maximum is lower than minimum or not positive or sum of minimums would exceed capacity
+     */
+    public synchronized LruCache<K, V> addTenant(String name, int minimum, int maximum) {
+        if (name == null) throw new IllegalArgumentException("name can't be null");
+        if (tenants.containsKey(name)) throw new IllegalArgumentException("tenant " + name + " already exists");
+        if (minimum < 0) throw new IllegalArgumentException("minimum can't be negative");
+        if (maximum <= 0 || maximum < minimum) throw new IllegalArgumentException("maximum must be positive and not lower than minimum");
+        if (reserved + minimum > capacity) throw new IllegalArgumentException("sum of minimums can't exceed capacity");
+
+        Tenant tenant = new Tenant(name, minimum, maximum);
+        Map<String, Tenant> newTenants = new LinkedHashMap<String, Tenant>(tenants);
+
+        newTenants.put(name, tenant);
+        reserved += minimum;
+        tenants = Collections.unmodifiableMap(newTenants);
+
+        return tenant;
+    }
+
+    /**
+     * Removes tenant and releases its entries and minimum
+     *
+     * @param name
+     * @return true if tenant existed
+     */
+    public synchronized boolean removeTenant(String name) {
+        Tenant tenant = tenants.get(name);
+
+        if (tenant == null) return false;
+
+        Map<String, Tenant> newTenants = new LinkedHashMap<String, Tenant>(tenants);
+
+        newTenants.remove(name);
+        reserved -= tenant.minimum;
+        tenants = Collections.unmodifiableMap(newTenants);
+        tenant.clear();
+
+        return true;
+    }
+
+    /**
+     * Returns cache of tenant
+     *
+     * @param name
+     * @return cache or null if tenant doesn't exist
+     */
+    public LruCache<K, V> getTenant(String name) {
+        return tenants.get(name);
+    }
+
+    /**
+     * Returns names of tenants
+     *
+     * @return
+     */
+    public Set<String> getTenantNames() {
+        return tenants.keySet();
+    }
+
+    /**
+     * Returns current fair share of tenant - its minimum plus equal part of
+     * capacity not reserved by minimums
+     *
+     * @param name
+     * @return share or 0 if tenant doesn't exist
+     */
+    public long getFairShare(String name) {
+        Map<String, Tenant> tenants = this.tenants;
+        Tenant tenant = tenants.get(name);
+
+        return tenant != null ? fairShare(tenant, tenants.size()) : 0;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns number of entries of all tenants
+     *
+     * @return
+     */
+    public long getSize() {
+        long size = 0;
+
+        for (Tenant tenant : tenants.values()) {
+            size += tenant.getSize();
+        }
+
+        return size;
+    }
+
+    private long fairShare(Tenant tenant, int tenantCount) {
+        return tenant.minimum + (capacity - reserved) / tenantCount;
+    }
+
+    /**
+     * Evicts entries while total size exceeds capacity. Thread which finds
+     * budget being enforced by other thread doesn't wait - the other thread
+     * rechecks size after every eviction.
+     */
+    private void enforceBudget() {
+        if (getSize() <= capacity || !budgetLock.tryLock()) return;
+
+        try {
+            while (getSize() > capacity) {
+                Tenant victim = selectVictim();
+
+                if (victim == null || !evictColdest(victim)) return;
+            }
+        } finally {
+            budgetLock.unlock();
+        }
+    }
+
+    /**
+     * Returns tenant which is most over its fair share, tenants at or below
+     * minimum are never selected
+     *
+     * @return victim or null if no tenant can be shrunk
+     */
+    private Tenant selectVictim() {
+        Map<String, Tenant> tenants = this.tenants;
+        Tenant victim = null;
+        long maxExcess = Long.MIN_VALUE;
+
+        for (Tenant tenant : tenants.values()) {
+            long size = tenant.getSize();
+
+            if (size <= tenant.minimum) continue;
+
+            long excess = size - fairShare(tenant, tenants.size());
+
+            if (excess > maxExcess) {
+                maxExcess = excess;
+                victim = tenant;
+            }
+        }
+
+        return victim;
+    }
+
+    private boolean evictColdest(Tenant tenant) {
+        ConcurrentLruCache<K, V> partition = tenant.partition();
+        Map<K, V> coldest = partition.coldest(1);
+
+        if (coldest.isEmpty()) {
+            //only expired entries are left
+            long size = partition.getSize();
+            partition.cleanUp();
+
+            return partition.getSize() < size;
+        }
+
+        Map.Entry<K, V> entry = coldest.entrySet().iterator().next();
+
+        //value could be replaced in the meantime, then next coldest entry is chosen in next round
+        partition.remove(entry.getKey(), entry.getValue());
+
+        return true;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * LruCache wrapper which also caches absent keys. When callable passed to
+ * get(K, Callable) returns null, key is remembered as absent in separate
+ * small cache with its own capacity and (usually shorter) TTL, and callable
+ * isn't called again for that key until the marker expires.
+ * <p>
+ * Absent keys are reported as cache misses by get(K) and contains(K). They
+ * are not counted by getSize(). Putting value under absent key clears the
+ * marker.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class NegativeCachingLruCache<K, V> extends ForwardingLruCache<K, V> {
+    private final LruCache<K, Boolean> absentKeys;
+    //serializes setting absent marker with puts clearing it
+    private final KeyLocks locks = new KeyLocks();
+
+    /**
+     * Creates NegativeCachingLruCache
+     *
+     * @param cache cache for present values
+     * @param negativeCapacity max number of remembered absent keys
+     * @param negativeTtl time to live of absent key marker in milliseconds
+     * @throws IllegalArgumentException if cache is null, negativeCapacity or negativeTtl is not positive
+     */
+    public NegativeCachingLruCache(LruCache<K, V> cache, int negativeCapacity, long negativeTtl) {
+        super(cache);
+
+        absentKeys = new SynchronizedLruCache<K, Boolean>(negativeCapacity, negativeTtl);
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+        absentKeys.clear();
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable, long ttl) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable, long ttl) throws Exception {
+        V value = cache.get(key);
+
+        if (value == null && !absentKeys.contains(key)) {
+            value = cache.computeIfAbsent(key, callable, ttl);
+
+            if (value == null) {
+                synchronized (locks.of(key)) {
+                    //value could be put after load returned null
+                    if (!cache.contains(key)) absentKeys.put(key, Boolean.TRUE);
+                }
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Checks whether key is remembered as absent
+     *
+     * @param key key to check
+     * @return true if last load of key returned null and marker didn't expire
+     */
+    public boolean isAbsent(K key) {
+        return absentKeys.contains(key);
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
+        if (value == null) return;
+
+        synchronized (locks.of(key)) {
+            cache.put(key, value, ttl);
+            absentKeys.remove(key);
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value, long ttl) {
+        if (value == null) return cache.putIfAbsent(key, value, ttl);
+
+        synchronized (locks.of(key)) {
+            V current = cache.putIfAbsent(key, value, ttl);
+
+            if (current == null) absentKeys.remove(key);
+
+            return current;
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        cache.remove(key);
+        absentKeys.remove(key);
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.Map;
+
+/**
+ * LruCache which exposes its LRU order and allows iteration over its valid
+ * entries.
+ * <p>
+ * Views are copies - they don't change with cache and modifying them has no
+ * effect on cache. Implementations don't hold their lock while caller walks
+ * the result.
+ *
+ * @param <K>
+ *            class used as key of cache
+ * @param <V>
+ *            class uses as values
+ * @author Damian Momot
+ */
+public interface OrderedLruCache<K, V> extends LruCache<K, V>, Iterable<Map.Entry<K, V>> {
+	/**
+	 * Returns most recently used valid entries
+	 *
+	 * @param limit
+	 *            max number of returned entries
+	 * @return ordered map, most recently used entry first
+	 */
+	Map<K, V> hottest(int limit);
+
+	/**
+	 * Returns least recently used valid entries
+	 *
+	 * @param limit
+	 *            max number of returned entries
+	 * @return ordered map, least recently used entry first
+	 */
+	Map<K, V> coldest(int limit);
+}
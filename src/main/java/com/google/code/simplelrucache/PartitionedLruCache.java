@@ -0,0 +1,331 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+/**
+ * LruCache partitioned between several nodes. Every key is owned by single
+ * node chosen by consistent hashing, so capacity of partitioned cache is sum
+ * of node capacities. Operations on keys owned by local node go directly to
+ * local cache, other ones go through CacheTransport.
+ * <p>
+ * Each node of ring is represented by virtualNodes points, so keys are spread
+ * evenly and adding or removing node moves only keys owned by that node. Moved
+ * keys are not transferred - they are simply missing on new owner.
+ * <p>
+ * TTL passed to operations is sent to owner, default TTL is TTL of local
+ * cache.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class PartitionedLruCache<K, V> implements LruCache<K, V> {
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    /**
+     * Immutable consistent hash ring
+     */
+    private static final class Ring {
+        private final Set<String> nodes;
+        private final int[] points;
+        private final String[] owners;
+
+        Ring(Set<String> nodes, int virtualNodes) {
+            TreeMap<Integer, String> ring = new TreeMap<Integer, String>();
+
+            for (String node : nodes) {
+                for (int i = 0; i < virtualNodes; ++i) {
+                    ring.put(Hashing.spread((node + '#' + i).hashCode()), node);
+                }
+            }
+
+            this.nodes = Collections.unmodifiableSet(nodes);
+            points = new int[ring.size()];
+            owners = new String[ring.size()];
+
+            int i = 0;
+            for (Map.Entry<Integer, String> point : ring.entrySet()) {
+                points[i] = point.getKey();
+                owners[i] = point.getValue();
+                ++i;
+            }
+        }
+
+        String owner(Object key) {
+            int hash = Hashing.spread(key.hashCode());
+            int low = 0;
+            int high = points.length;
+
+            //first point not lower than hash, wrapping to start of ring
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (points[middle] < hash) low = middle + 1;
+                else high = middle;
+            }
+
+            return owners[low == points.length ? 0 : low];
+        }
+    }
+
+    private final String localNode;
+    private final LruCache<K, V> localCache;
+    private final CacheTransport<K, V> transport;
+    private final int virtualNodes;
+
+    private volatile Ring ring;
+
+    /**
+     * Creates partitioned cache
+     *
+     * @param localNode name of this node
+     * @param localCache cache holding keys owned by this node
+     * @param transport transport used to reach other nodes
+     * @param nodes names of other nodes
+     * @param virtualNodes number of ring points per node
+     * @throws IllegalArgumentException if any argument is null or virtualNodes is not positive
+     */
+    public PartitionedLruCache(String localNode, LruCache<K, V> localCache, CacheTransport<K, V> transport, Collection<String> nodes, int virtualNodes) {
+        if (localNode == null) throw new IllegalArgumentException("localNode can't be null");
+        if (localCache == null) throw new IllegalArgumentException("localCache can't be null");
+        if (transport == null) throw new IllegalArgumentException("transport can't be null");
+        if (nodes == null) throw new IllegalArgumentException("nodes can't be null");
+        if (virtualNodes <= 0) throw new IllegalArgumentException("virtualNodes must be positive");
+
+        this.localNode = localNode;
+        this.localCache = localCache;
+        this.transport = transport;
+        this.virtualNodes = virtualNodes;
+
+        Set<String> members = new LinkedHashSet<String>();
+        members.add(localNode);
+        members.addAll(nodes);
+
+        ring = new Ring(members, virtualNodes);
+    }
+
+    /**
+     * Creates partitioned cache with DEFAULT_VIRTUAL_NODES
+     *
+     * @param localNode name of this node
+     * @param localCache cache holding keys owned by this node
+     * @param transport transport used to reach other nodes
+     * @param nodes names of other nodes
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public PartitionedLruCache(String localNode, LruCache<K, V> localCache, CacheTransport<K, V> transport, Collection<String> nodes) {
+        this(localNode, localCache, transport, nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Adds node to ring. Keys which move to it are missing until cached again.
+     *
+     * @param node
+     * @throws IllegalArgumentException if node is null
+     */
+    public synchronized void addNode(String node) {
+        if (node == null) throw new IllegalArgumentException("node can't be null");
+
+        Set<String> members = new LinkedHashSet<String>(ring.nodes);
+
+        if (members.add(node)) ring = new Ring(members, virtualNodes);
+    }
+
+    /**
+     * Removes node from ring, its keys are spread between remaining nodes.
+     * Local node can't be removed.
+     *
+     * @param node
+     * @throws IllegalArgumentException if node is local node
+     */
+    public synchronized void removeNode(String node) {
+        if (localNode.equals(node)) throw new IllegalArgumentException("local node can't be removed");
+
+        Set<String> members = new LinkedHashSet<String>(ring.nodes);
+
+        if (members.remove(node)) ring = new Ring(members, virtualNodes);
+    }
+
+    /**
+     * Returns names of nodes in ring
+     *
+     * @return
+     */
+    public Set<String> getNodes() {
+        return ring.nodes;
+    }
+
+    /**
+     * Returns name of node owning key
+     *
+     * @param key
+     * @return
+     */
+    public String getOwner(K key) {
+        return ring.owner(key);
+    }
+
+    private LruCache<K, V> cacheOf(K key) {
+        return nodeCache(ring.owner(key));
+    }
+
+    private LruCache<K, V> nodeCache(String node) {
+        return localNode.equals(node) ? localCache : transport.connect(node);
+    }
+
+    private List<LruCache<K, V>> nodeCaches() {
+        Set<String> nodes = ring.nodes;
+        List<LruCache<K, V>> caches = new ArrayList<LruCache<K, V>>(nodes.size());
+
+        for (String node : nodes) {
+            caches.add(nodeCache(node));
+        }
+
+        return caches;
+    }
+
+    /**
+     * Clears caches of all nodes
+     */
+    @Override
+    public void clear() {
+        for (LruCache<K, V> cache : nodeCaches()) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return cacheOf(key).contains(key);
+    }
+
+    @Override
+    public V get(K key) {
+        return cacheOf(key).get(key);
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable) throws Exception {
+        return get(key, callable, getTtl());
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable, long ttl) throws Exception {
+        return cacheOf(key).get(key, callable, ttl);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable) throws Exception {
+        return computeIfAbsent(key, callable, getTtl());
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable, long ttl) throws Exception {
+        return cacheOf(key).computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V computeIfPresent(K key, ValueUpdater<K, V> updater) throws Exception {
+        return cacheOf(key).computeIfPresent(key, updater);
+    }
+
+    /**
+     * Returns sum of capacities of all nodes
+     */
+    @Override
+    public long getCapacity() {
+        long capacity = 0;
+
+        for (LruCache<K, V> cache : nodeCaches()) {
+            capacity += cache.getCapacity();
+        }
+
+        return capacity;
+    }
+
+    /**
+     * Returns sum of sizes of all nodes
+     */
+    @Override
+    public long getSize() {
+        long size = 0;
+
+        for (LruCache<K, V> cache : nodeCaches()) {
+            size += cache.getSize();
+        }
+
+        return size;
+    }
+
+    @Override
+    public long getTtl() {
+        return localCache.getTtl();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (LruCache<K, V> cache : nodeCaches()) {
+            if (!cache.isEmpty()) return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        put(key, value, getTtl());
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
+        cacheOf(key).put(key, value, ttl);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putIfAbsent(key, value, getTtl());
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value, long ttl) {
+        return cacheOf(key).putIfAbsent(key, value, ttl);
+    }
+
+    @Override
+    public void remove(K key) {
+        cacheOf(key).remove(key);
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        return cacheOf(key).remove(key, value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        return cacheOf(key).replace(key, oldValue, newValue);
+    }
+}
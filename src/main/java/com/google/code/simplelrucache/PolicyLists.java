@@ -0,0 +1,81 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Helpers for LinkedHashMap based key lists used by eviction policies.
+ * Lists are insertion ordered - eldest key is the head, re-putting key moves
+ * it to the tail.
+ *
+ * @author Damian Momot
+ */
+final class PolicyLists {
+    private PolicyLists() {
+    }
+
+    /**
+     * Moves key to the tail of list (or adds it there)
+     *
+     * @param list
+     * @param key
+     */
+    static <K> void moveToTail(LinkedHashMap<K, Boolean> list, K key) {
+        list.remove(key);
+        list.put(key, Boolean.TRUE);
+    }
+
+    /**
+     * Removes and returns eldest key of list
+     *
+     * @param list
+     * @return eldest key or null if list is empty
+     */
+    static <K> K removeEldest(LinkedHashMap<K, Boolean> list) {
+        Iterator<K> iterator = list.keySet().iterator();
+
+        if (!iterator.hasNext()) return null;
+
+        K key = iterator.next();
+        iterator.remove();
+
+        return key;
+    }
+
+    /**
+     * Removes eldest keys until list is not bigger than maxSize
+     *
+     * @param list
+     * @param maxSize
+     */
+    static <K> void trim(LinkedHashMap<K, Boolean> list, int maxSize) {
+        while (list.size() > maxSize) {
+            removeEldest(list);
+        }
+    }
+
+    /**
+     * Checks policy capacity argument
+     *
+     * @param capacity
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    static void checkCapacity(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.HashMap;
+
+/**
+ * Threadsafe synchronized implementation of LruCache which delegates eviction
+ * decisions to pluggable EvictionPolicy. Threadsafety is provided by method
+ * synchronization, policy is always called with cache lock held.
+ *
+ * This cache implementation should be used when plain LRU gives poor hit
+ * ratio for workload (e.g. scans mixed with frequently used keys).
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class PolicyLruCache<K, V> extends BaseLruCache<K, V> {
+    public static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    private final int capacity;
+    private final EvictionPolicy<K> policy;
+    private HashMap<K, LruCacheEntry<V>> cacheMap;
+
+    /**
+     * Creates new PolicyLruCache
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @param policy eviction policy, used exclusively by this cache
+     * @param initialCapacity initial cache capacity
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public PolicyLruCache(int capacity, long ttl, EvictionPolicy<K> policy, int initialCapacity) {
+        super(ttl);
+
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        if (policy == null) throw new IllegalArgumentException("policy can't be null");
+
+        this.capacity = capacity;
+        this.policy = policy;
+        cacheMap = new HashMap<K, LruCacheEntry<V>>(initialCapacity);
+    }
+
+    /**
+     * Creates new PolicyLruCache with DEFAULT_INITIAL_CAPACITY
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @param policy eviction policy, used exclusively by this cache
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public PolicyLruCache(int capacity, long ttl, EvictionPolicy<K> policy) {
+        this(capacity, ttl, policy, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    @Override
+    synchronized public void clear() {
+        cacheMap.clear();
+        policy.clear();
+    }
+
+    @Override
+    synchronized public V computeIfPresent(K key, ValueUpdater<K, V> updater) throws Exception {
+        return super.computeIfPresent(key, updater);
+    }
+
+    @Override
+    synchronized public V get(K key) {
+        return super.get(key);
+    }
+
+    @Override
+    public long getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    protected LruCacheEntry<V> getEntry(K key) {
+        LruCacheEntry<V> entry = cacheMap.get(key);
+
+        if (entry != null) policy.recordAccess(key);
+
+        return entry;
+    }
+
+    @Override
+    synchronized public long getSize() {
+        return cacheMap.size();
+    }
+
+    @Override
+    synchronized protected LruCacheEntry<V> getValidEntry(K key) {
+        return super.getValidEntry(key);
+    }
+
+    @Override
+    synchronized public void put(K key, V value, long ttl) {
+        super.put(key, value, ttl);
+    }
+
+    @Override
+    protected void putEntry(K key, LruCacheEntry<V> entry) {
+        if (cacheMap.put(key, entry) != null) {
+            policy.recordAccess(key);
+        } else {
+            policy.recordInsert(key);
+
+            while (cacheMap.size() > capacity) {
+                cacheMap.remove(policy.selectVictim());
+            }
+        }
+    }
+
+    @Override
+    synchronized public V putIfAbsent(K key, V value, long ttl) {
+        return super.putIfAbsent(key, value, ttl);
+    }
+
+    @Override
+    protected LruCacheEntry<V> putEntryIfAbsent(K key, LruCacheEntry<V> entry) {
+        LruCacheEntry<V> cacheEntry = getEntry(key);
+
+        if (cacheEntry == null) putEntry(key, entry);
+
+        return cacheEntry;
+    }
+
+    @Override
+    synchronized public void remove(K key) {
+        if (cacheMap.remove(key) != null) policy.recordRemove(key);
+    }
+
+    @Override
+    synchronized public boolean remove(K key, V value) {
+        //entry can't change while lock is held, so it's removed without checking it again
+        if (!holdsValue(getEntry(key), value)) return false;
+
+        remove(key);
+
+        return true;
+    }
+
+    @Override
+    protected boolean removeEntry(K key, LruCacheEntry<V> entry) {
+        if (cacheMap.get(key) != entry) return false;
+
+        remove(key);
+
+        return true;
+    }
+
+    @Override
+    synchronized public boolean replace(K key, V oldValue, V newValue) {
+        if (newValue == null) return remove(key, oldValue);
+
+        LruCacheEntry<V> cacheEntry = getEntry(key);
+
+        if (!holdsValue(cacheEntry, oldValue)) return false;
+
+        LruCacheEntry<V> newEntry = newEntry(key, newValue, getTtl(), cacheEntry);
+
+        if (newEntry == null) {
+            remove(key);
+        } else {
+            putEntry(key, newEntry);
+        }
+
+        return true;
+    }
+
+    @Override
+    protected boolean replaceEntry(K key, LruCacheEntry<V> oldEntry, LruCacheEntry<V> newEntry) {
+        if (cacheMap.get(key) != oldEntry) return false;
+
+        putEntry(key, newEntry);
+
+        return true;
+    }
+
+    @Override
+    synchronized protected V storeEntry(K key, LruCacheEntry<V> expectedEntry, LruCacheEntry<V> entry) {
+        return super.storeEntry(key, expectedEntry, entry);
+    }
+}
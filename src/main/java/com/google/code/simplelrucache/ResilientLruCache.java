@@ -0,0 +1,392 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LruCache which survives slow or failing loaders. Values are kept
+ * gracePeriod milliseconds after they expire. Loads run on executor and
+ * caller waits at most loadTimeout for them. When load of expired key fails
+ * or times out, stale value is returned instead and load goes on in
+ * background - timed out load stores its result when it completes, failed
+ * one is retried once.
+ * <p>
+ * Concurrent loads of the same key share single loader call. Stale values
+ * are visible only to get(K, Callable) and computeIfAbsent, other operations
+ * see them as missing. Number of stale values served, failed and timed out
+ * loads is counted.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class ResilientLruCache<K, V> implements LruCache<K, V> {
+    /**
+     * Value with time until which it's fresh
+     *
+     * @param <V>
+     */
+    private static final class Stamped<V> {
+        final V value;
+        final long freshUntil;
+
+        Stamped(V value, long freshUntil) {
+            this.value = value;
+            this.freshUntil = freshUntil;
+        }
+
+        boolean isFresh() {
+            return freshUntil > System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Load shared by callers of the same key, it stores loaded value
+     */
+    private final class Load extends FutureTask<V> {
+        private final K key;
+
+        Load(final K key, final Callable<V> callable, final long ttl) {
+            super(new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    V value = callable.call();
+
+                    if (value != null) put(key, value, ttl);
+                    else remove(key);
+
+                    return value;
+                }
+            });
+
+            this.key = key;
+        }
+
+        @Override
+        protected void done() {
+            loads.remove(key, this);
+        }
+    }
+
+    private final LruCache<K, Stamped<V>> cache;
+    private final long ttl;
+    private final long gracePeriod;
+    private final long loadTimeout;
+    private final Executor executor;
+    private final ConcurrentMap<K, Load> loads = new ConcurrentHashMap<K, Load>();
+
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private final AtomicLong loadTimeouts = new AtomicLong();
+
+    /**
+     * Creates ResilientLruCache
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @param gracePeriod time in milliseconds for which expired value can be served
+     * @param loadTimeout max time in milliseconds caller waits for load
+     * @param executor executor running loads
+     * @throws IllegalArgumentException if capacity, ttl or loadTimeout is not positive, gracePeriod is negative or executor is null
+     */
+    public ResilientLruCache(int capacity, long ttl, long gracePeriod, long loadTimeout, Executor executor) {
+        if (ttl <= 0) throw new IllegalArgumentException("ttl must be positive");
+        if (gracePeriod < 0) throw new IllegalArgumentException("gracePeriod can't be negative");
+        if (loadTimeout <= 0) throw new IllegalArgumentException("loadTimeout must be positive");
+        if (executor == null) throw new IllegalArgumentException("executor can't be null");
+
+        this.ttl = ttl;
+        this.gracePeriod = gracePeriod;
+        this.loadTimeout = loadTimeout;
+        this.executor = executor;
+
+        cache = new ConcurrentLruCache<K, Stamped<V>>(capacity, retention(ttl));
+    }
+
+    /**
+     * Creates ResilientLruCache which runs loads on its own daemon threads
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @param gracePeriod time in milliseconds for which expired value can be served
+     * @param loadTimeout max time in milliseconds caller waits for load
+     * @throws IllegalArgumentException if capacity, ttl or loadTimeout is not positive or gracePeriod is negative
+     */
+    public ResilientLruCache(int capacity, long ttl, long gracePeriod, long loadTimeout) {
+        this(capacity, ttl, gracePeriod, loadTimeout, createExecutor());
+    }
+
+    private static ExecutorService createExecutor() {
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ResilientLruCache-loader");
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+    }
+
+    private long retention(long ttl) {
+        return ttl > Long.MAX_VALUE - gracePeriod ? Long.MAX_VALUE : ttl + gracePeriod;
+    }
+
+    private Stamped<V> stamp(V value, long ttl) {
+        return new Stamped<V>(value, ExpiringCacheEntry.deadline(System.currentTimeMillis(), ttl));
+    }
+
+    private Stamped<V> getFresh(K key) {
+        Stamped<V> stamped = cache.get(key);
+
+        return stamped != null && stamped.isFresh() ? stamped : null;
+    }
+
+    /**
+     * Starts load of key or joins one in progress
+     *
+     * @param key
+     * @param callable
+     * @param ttl
+     * @return
+     */
+    private Future<V> startLoad(K key, Callable<V> callable, long ttl) {
+        Load load = new Load(key, callable, ttl);
+        Load current;
+
+        //completed load can be registered until its done() runs
+        while ((current = loads.putIfAbsent(key, load)) != null) {
+            if (!current.isDone()) return current;
+
+            loads.remove(key, current);
+        }
+
+        try {
+            executor.execute(load);
+        } catch (RuntimeException e) {
+            loads.remove(key, load);
+            throw e;
+        }
+
+        return load;
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return getFresh(key) != null;
+    }
+
+    @Override
+    public V get(K key) {
+        Stamped<V> stamped = getFresh(key);
+
+        return stamped != null ? stamped.value : null;
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable, long ttl) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    /**
+     * Loads missing or expired value waiting at most loadTimeout. If load
+     * fails or times out stale value is returned when there is one, otherwise
+     * loader exception or TimeoutException is thrown.
+     */
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable, long ttl) throws Exception {
+        Stamped<V> stamped = cache.get(key);
+
+        if (stamped != null && stamped.isFresh()) return stamped.value;
+
+        Future<V> load = startLoad(key, callable, ttl);
+
+        try {
+            return load.get(loadTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            loadTimeouts.incrementAndGet();
+
+            //load goes on and stores value when it completes
+            if (stamped == null) throw e;
+        } catch (ExecutionException e) {
+            loadFailures.incrementAndGet();
+
+            if (stamped == null) {
+                if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+                if (e.getCause() instanceof Error) throw (Error) e.getCause();
+
+                throw e;
+            }
+
+            startLoad(key, callable, ttl);
+        }
+
+        staleHits.incrementAndGet();
+
+        return stamped.value;
+    }
+
+    @Override
+    public V computeIfPresent(K key, ValueUpdater<K, V> updater) throws Exception {
+        for (;;) {
+            Stamped<V> stamped = getFresh(key);
+
+            if (stamped == null) return null;
+
+            V value = updater.update(key, stamped.value);
+
+            if (value == null) {
+                if (cache.remove(key, stamped)) return null;
+            } else if (cache.replace(key, stamped, stamp(value, ttl))) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public long getCapacity() {
+        return cache.getCapacity();
+    }
+
+    /**
+     * Returns number of failed loads
+     *
+     * @return
+     */
+    public long getLoadFailures() {
+        return loadFailures.get();
+    }
+
+    /**
+     * Returns number of loads which caller stopped waiting for
+     *
+     * @return
+     */
+    public long getLoadTimeouts() {
+        return loadTimeouts.get();
+    }
+
+    /**
+     * Returns number of entries, including expired ones in grace period
+     */
+    @Override
+    public long getSize() {
+        return cache.getSize();
+    }
+
+    /**
+     * Returns number of stale values returned instead of failed or timed out
+     * loads
+     *
+     * @return
+     */
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+
+    @Override
+    public long getTtl() {
+        return ttl;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cache.isEmpty();
+    }
+
+    @Override
+    public void put(K key, V value) {
+        put(key, value, ttl);
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
+        if (value == null) return;
+
+        cache.put(key, stamp(value, ttl), retention(ttl));
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putIfAbsent(key, value, ttl);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value, long ttl) {
+        if (value == null) return get(key);
+
+        Stamped<V> newStamped = stamp(value, ttl);
+
+        for (;;) {
+            Stamped<V> stamped = cache.putIfAbsent(key, newStamped, retention(ttl));
+
+            if (stamped == null) return null;
+            if (stamped.isFresh()) return stamped.value;
+
+            //stale value doesn't count as present one, replace() would retain new value only for default ttl
+            cache.remove(key, stamped);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        cache.remove(key);
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        Stamped<V> stamped = getFresh(key);
+
+        return stamped != null && stamped.value.equals(value) && cache.remove(key, stamped);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (newValue == null) return remove(key, oldValue);
+
+        Stamped<V> stamped = getFresh(key);
+
+        return stamped != null && stamped.value.equals(oldValue) && cache.replace(key, stamped, stamp(newValue, ttl));
+    }
+}
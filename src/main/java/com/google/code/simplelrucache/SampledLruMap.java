@@ -0,0 +1,264 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Capacity based map with sampled LRU eviction.
+ *
+ * Entries don't form any global order - each one only remembers time of its
+ * last access. When map is full, sampleSize random entries are inspected and
+ * expired one (if any) or the least recently accessed one is evicted. Reads
+ * are lock free and only store access time, writes are synchronized.
+ *
+ * Memory per entry is its Node, ConcurrentHashMap node and slot in sampling
+ * list - compared to ConcurrentLruMap only LRU list links are saved, the
+ * gain is in not having to maintain order on reads.
+ *
+ * @param <K> map key class
+ * @param <V> map value class
+ * @author Damian Momot
+ */
+class SampledLruMap<K, V> {
+    private final int capacity;
+    private final int sampleSize;
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+
+    //dense list of entries used for sampling, grows with map (guarded by this)
+    private final List<Node<K, V>> nodes;
+    private final Random random = new Random();
+
+    /**
+     * Creates sampled LRU map
+     *
+     * @param capacity
+     * @param sampleSize number of entries inspected per eviction
+     * @param concurrencyLevel
+     * @throws IllegalArgumentException if capacity or sampleSize is not positive
+     */
+    SampledLruMap(int capacity, int sampleSize, int concurrencyLevel) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        if (sampleSize <= 0) throw new IllegalArgumentException("sampleSize must be positive");
+
+        this.capacity = capacity;
+        this.sampleSize = sampleSize;
+        data = new ConcurrentHashMap<K, Node<K, V>>(16, 0.75f, concurrencyLevel);
+        nodes = new ArrayList<Node<K, V>>(Math.min(capacity, 16));
+    }
+
+    /**
+     * Returns value mapped by key and stores access time
+     *
+     * @param key
+     * @return value or null if key is not mapped
+     */
+    V get(K key) {
+        Node<K, V> node = data.get(key);
+
+        if (node == null) return null;
+
+        node.accessTime = System.nanoTime();
+
+        return node.value;
+    }
+
+    /**
+     * Maps key to value, evicting sampled entry if map is full
+     *
+     * @param key
+     * @param value
+     * @return previous value or null
+     */
+    synchronized V put(K key, V value) {
+        Node<K, V> node = data.get(key);
+
+        if (node != null) {
+            V oldValue = node.value;
+
+            node.value = value;
+            node.accessTime = System.nanoTime();
+
+            return oldValue;
+        }
+
+        if (nodes.size() == capacity) removeNode(sampleVictim());
+
+        node = new Node<K, V>(key, value, nodes.size());
+        nodes.add(node);
+        data.put(key, node);
+
+        return null;
+    }
+
+    /**
+     * Maps key to value if it's not mapped already
+     *
+     * @param key
+     * @param value
+     * @return current value or null if value was stored
+     */
+    synchronized V putIfAbsent(K key, V value) {
+        Node<K, V> node = data.get(key);
+
+        if (node != null) {
+            node.accessTime = System.nanoTime();
+            return node.value;
+        }
+
+        put(key, value);
+
+        return null;
+    }
+
+    /**
+     * Replaces value only if key is mapped to oldValue
+     *
+     * @param key
+     * @param oldValue
+     * @param newValue
+     * @return true if value was replaced
+     */
+    synchronized boolean replace(K key, V oldValue, V newValue) {
+        Node<K, V> node = data.get(key);
+
+        if (node == null || !node.value.equals(oldValue)) return false;
+
+        node.value = newValue;
+        node.accessTime = System.nanoTime();
+
+        return true;
+    }
+
+    /**
+     * Removes mapping only if key is mapped to value
+     *
+     * @param key
+     * @param value
+     * @return true if mapping was removed
+     */
+    synchronized boolean remove(K key, V value) {
+        Node<K, V> node = data.get(key);
+
+        if (node == null || !node.value.equals(value)) return false;
+
+        removeNode(node);
+
+        return true;
+    }
+
+    /**
+     * Removes mapping for key
+     *
+     * @param key
+     * @return removed value or null
+     */
+    synchronized V remove(K key) {
+        Node<K, V> node = data.get(key);
+
+        if (node == null) return null;
+
+        removeNode(node);
+
+        return node.value;
+    }
+
+    /**
+     * Removes all mappings
+     */
+    synchronized void clear() {
+        data.clear();
+        nodes.clear();
+    }
+
+    /**
+     * Returns number of mappings
+     *
+     * @return
+     */
+    int size() {
+        return data.size();
+    }
+
+    /**
+     * Returns capacity of map
+     *
+     * @return
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Checks whether value is already expired, expired values are evicted
+     * before any other sampled ones
+     *
+     * @param value
+     * @return
+     */
+    protected boolean isExpired(V value) {
+        return false;
+    }
+
+    //guarded by this
+    private Node<K, V> sampleVictim() {
+        Node<K, V> victim = null;
+
+        for (int i = 0; i < sampleSize; ++i) {
+            Node<K, V> node = nodes.get(random.nextInt(nodes.size()));
+
+            if (isExpired(node.value)) return node;
+            if (victim == null || node.accessTime < victim.accessTime) victim = node;
+        }
+
+        return victim;
+    }
+
+    //guarded by this
+    private void removeNode(Node<K, V> node) {
+        data.remove(node.key);
+
+        //move last node into the hole
+        Node<K, V> last = nodes.remove(nodes.size() - 1);
+
+        if (last != node) {
+            nodes.set(node.slot, last);
+            last.slot = node.slot;
+        }
+    }
+
+    /**
+     * Map entry with its last access time
+     */
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        volatile long accessTime;
+
+        //guarded by map
+        int slot;
+
+        Node(K key, V value, int slot) {
+            this.key = key;
+            this.value = value;
+            this.slot = slot;
+            accessTime = System.nanoTime();
+        }
+    }
+}
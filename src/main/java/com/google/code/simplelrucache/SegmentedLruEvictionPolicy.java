@@ -0,0 +1,94 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Segmented LRU policy. New keys enter probationary segment and are promoted
+ * to protected segment when accessed again. Keys demoted from protected
+ * segment go back to probationary one, victims are taken from probationary
+ * segment first, so single scan can't flush frequently used keys.
+ *
+ * @param <K> class used as key of cache
+ * @author Damian Momot
+ */
+public class SegmentedLruEvictionPolicy<K> implements EvictionPolicy<K> {
+    public static final float DEFAULT_PROTECTED_RATIO = 0.8f;
+
+    private final int protectedCapacity;
+    private final LinkedHashMap<K, Boolean> probation = new LinkedHashMap<K, Boolean>();
+    private final LinkedHashMap<K, Boolean> protectedSegment = new LinkedHashMap<K, Boolean>();
+
+    /**
+     * Creates segmented LRU policy
+     *
+     * @param capacity capacity of cache using this policy
+     * @param protectedRatio part of capacity reserved for protected segment
+     * @throws IllegalArgumentException if capacity is not positive or ratio is not in (0, 1)
+     */
+    public SegmentedLruEvictionPolicy(int capacity, float protectedRatio) {
+        PolicyLists.checkCapacity(capacity);
+        if (protectedRatio <= 0 || protectedRatio >= 1) throw new IllegalArgumentException("protectedRatio must be in (0, 1)");
+
+        protectedCapacity = Math.max(1, (int) (capacity * protectedRatio));
+    }
+
+    /**
+     * Creates segmented LRU policy with DEFAULT_PROTECTED_RATIO
+     *
+     * @param capacity capacity of cache using this policy
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public SegmentedLruEvictionPolicy(int capacity) {
+        this(capacity, DEFAULT_PROTECTED_RATIO);
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        if (protectedSegment.containsKey(key)) {
+            PolicyLists.moveToTail(protectedSegment, key);
+        } else if (probation.remove(key) != null) {
+            protectedSegment.put(key, Boolean.TRUE);
+
+            if (protectedSegment.size() > protectedCapacity) {
+                probation.put(PolicyLists.removeEldest(protectedSegment), Boolean.TRUE);
+            }
+        }
+    }
+
+    @Override
+    public void recordInsert(K key) {
+        probation.put(key, Boolean.TRUE);
+    }
+
+    @Override
+    public void recordRemove(K key) {
+        if (probation.remove(key) == null) protectedSegment.remove(key);
+    }
+
+    @Override
+    public K selectVictim() {
+        if (!probation.isEmpty()) return PolicyLists.removeEldest(probation);
+        else return PolicyLists.removeEldest(protectedSegment);
+    }
+
+    @Override
+    public void clear() {
+        probation.clear();
+        protectedSegment.clear();
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * ValueCodec using Java serialization
+ *
+ * @param <V> class uses as values
+ * @author Damian Momot
+ */
+public class SerializableCodec<V extends Serializable> implements ValueCodec<V> {
+    @Override
+    public byte[] encode(V value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try {
+            ObjectOutputStream output = new ObjectOutputStream(bytes);
+
+            output.writeObject(value);
+            output.close();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("value can't be serialized", e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V decode(byte[] data) {
+        try {
+            ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(data));
+
+            try {
+                return (V) input.readObject();
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("value can't be deserialized", e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("value can't be deserialized", e);
+        }
+    }
+}
@@ -0,0 +1,733 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * LruCache stored in memory mapped file, so it can be shared by all
+ * processes of host - usually file is placed in /dev/shm. Keys and values are
+ * stored encoded by ValueCodecs, key equality is equality of encoded keys.
+ * <p>
+ * File holds fixed layout hash table divided into sets of WAYS slots. Key is
+ * stored in one of slots of its set and evicted by CLOCK (second chance)
+ * algorithm run within the set. Slot has room for maxEntrySize bytes of
+ * encoded key and value, bigger entries are not cached.
+ * <p>
+ * Reads are lock free - each slot has sequence counter which is odd while
+ * slot is written, reader retries when counter changed during read. Mapped
+ * memory accesses aren't ordered, so slot also holds checksum of its entry,
+ * reader copies entry and uses it only when checksum matches. Writers lock
+ * stripe of sets with lock shared by all caches of the file in JVM and with
+ * FileLock, which excludes writers of other processes. Slot left odd by
+ * process which died during write is cleared by next writer of its set.
+ * <p>
+ * Process which opens file first creates table, others attach to it and must
+ * use the same capacity and maxEntrySize. Expiration uses wall clock, so ttl
+ * is respected by all processes. Threads must not be interrupted while
+ * writing - interrupt closes file channel.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class SharedMemoryLruCache<K, V> implements LruCache<K, V>, Closeable {
+    public static final int WAYS = 8;
+    public static final int LOCK_STRIPES = 64;
+
+    private static final int MAGIC = 0x534c5243;
+    private static final int VERSION = 2;
+    private static final int MAX_READ_ATTEMPTS = 64;
+
+    //file header
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_SETS = 8;
+    private static final int HEADER_SLOT_SIZE = 12;
+    private static final int HEADER_SIZE = 64;
+
+    //slot layout, checksum covers everything from hash to end of value
+    private static final int SLOT_SEQUENCE = 0;
+    private static final int SLOT_USED = 4;
+    private static final int SLOT_REFERENCED = 8;
+    private static final int SLOT_CHECKSUM = 12;
+    private static final int SLOT_HASH = 16;
+    private static final int SLOT_KEY_LENGTH = 20;
+    private static final int SLOT_VALUE_LENGTH = 24;
+    private static final int SLOT_EXPIRATION_TIME = 32;
+    private static final int SLOT_DATA = 40;
+
+    //layout of entry copied from slot
+    private static final int ENTRY_HASH = 0;
+    private static final int ENTRY_KEY_LENGTH = SLOT_KEY_LENGTH - SLOT_HASH;
+    private static final int ENTRY_VALUE_LENGTH = SLOT_VALUE_LENGTH - SLOT_HASH;
+    private static final int ENTRY_EXPIRATION_TIME = SLOT_EXPIRATION_TIME - SLOT_HASH;
+    private static final int ENTRY_DATA = SLOT_DATA - SLOT_HASH;
+
+    //FileLock regions are placed after any possible table
+    private static final long LOCK_REGION = Long.MAX_VALUE / 2;
+
+    //locks of files, shared by open caches of the same file in this JVM
+    private static final Map<String, FileLocks> fileLocks = new HashMap<String, FileLocks>();
+
+    private static final class FileLocks {
+        final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES + 1];
+        //guarded by fileLocks
+        int users;
+
+        FileLocks() {
+            for (int i = 0; i < locks.length; ++i) {
+                locks[i] = new ReentrantLock();
+            }
+        }
+    }
+
+    private final ValueCodec<K> keyCodec;
+    private final ValueCodec<V> valueCodec;
+    private final long ttl;
+    private final int sets;
+    private final int slotSize;
+    private final int maxEntrySize;
+    private final int setHandsOffset;
+    private final int slotsOffset;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final String lockKey;
+    //stripe locks and init lock (last one)
+    private final ReentrantLock[] locks;
+    //guarded by this
+    private boolean closed;
+
+    /**
+     * Creates or attaches to shared cache
+     *
+     * @param path file of cache, e.g. in /dev/shm
+     * @param capacity max cache capacity, rounded up to multiple of WAYS
+     * @param maxEntrySize max size of encoded key and value
+     * @param ttl time to live in milliseconds
+     * @param keyCodec codec of keys, equal keys must have equal encoded form
+     * @param valueCodec codec of values
+     * @throws IOException if file can't be mapped
+     * @throws IllegalArgumentException if arguments are invalid or existing file has different layout
+     */
+    public SharedMemoryLruCache(File path, int capacity, int maxEntrySize, long ttl, ValueCodec<K> keyCodec, ValueCodec<V> valueCodec) throws IOException {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        if (maxEntrySize <= 0) throw new IllegalArgumentException("maxEntrySize must be positive");
+        if (ttl <= 0) throw new IllegalArgumentException("ttl must be positive");
+        if (keyCodec == null || valueCodec == null) throw new IllegalArgumentException("codecs can't be null");
+
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.ttl = ttl;
+        this.maxEntrySize = maxEntrySize;
+
+        sets = (capacity + WAYS - 1) / WAYS;
+        slotSize = (SLOT_DATA + maxEntrySize + 7) & ~7;
+        setHandsOffset = HEADER_SIZE;
+        slotsOffset = (setHandsOffset + sets * 4 + 63) & ~63;
+
+        long size = slotsOffset + (long) sets * WAYS * slotSize;
+
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("cache can't be bigger than 2GB");
+
+        lockKey = path.getCanonicalPath();
+        locks = acquireLocks(lockKey);
+
+        try {
+            file = new RandomAccessFile(path, "rw");
+        } catch (IOException e) {
+            releaseLocks(lockKey);
+            throw e;
+        }
+
+        try {
+            channel = file.getChannel();
+            buffer = initialize(size);
+        } catch (IOException e) {
+            file.close();
+            releaseLocks(lockKey);
+            throw e;
+        } catch (RuntimeException e) {
+            file.close();
+            releaseLocks(lockKey);
+            throw e;
+        }
+    }
+
+    private static ReentrantLock[] acquireLocks(String key) {
+        synchronized (fileLocks) {
+            FileLocks locks = fileLocks.get(key);
+
+            if (locks == null) {
+                locks = new FileLocks();
+                fileLocks.put(key, locks);
+            }
+
+            ++locks.users;
+
+            return locks.locks;
+        }
+    }
+
+    private static void releaseLocks(String key) {
+        synchronized (fileLocks) {
+            if (--fileLocks.get(key).users == 0) fileLocks.remove(key);
+        }
+    }
+
+    //number of files with open caches in this JVM
+    static int lockedFiles() {
+        synchronized (fileLocks) {
+            return fileLocks.size();
+        }
+    }
+
+    private MappedByteBuffer initialize(long size) throws IOException {
+        lock(LOCK_STRIPES);
+
+        try {
+            FileLock fileLock = channel.lock(LOCK_REGION + LOCK_STRIPES, 1, false);
+
+            try {
+                boolean created = file.length() == 0;
+
+                if (created) file.setLength(size);
+                else if (file.length() != size) throw new IllegalArgumentException("file has different size than cache, capacity or maxEntrySize differs");
+
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+                if (created) {
+                    mapped.putInt(HEADER_VERSION, VERSION);
+                    mapped.putInt(HEADER_SETS, sets);
+                    mapped.putInt(HEADER_SLOT_SIZE, slotSize);
+                    //magic is written last, file without it is not initialized
+                    mapped.putInt(HEADER_MAGIC, MAGIC);
+                } else if (mapped.getInt(HEADER_MAGIC) != MAGIC || mapped.getInt(HEADER_VERSION) != VERSION || mapped.getInt(HEADER_SETS) != sets || mapped.getInt(HEADER_SLOT_SIZE) != slotSize) {
+                    throw new IllegalArgumentException("file has different layout");
+                }
+
+                return mapped;
+            } finally {
+                fileLock.release();
+            }
+        } finally {
+            locks[LOCK_STRIPES].unlock();
+        }
+    }
+
+    /**
+     * Closes file, mapping stays valid until it's garbage collected. Cache
+     * can't be used after close.
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+
+        closed = true;
+
+        try {
+            file.close();
+        } finally {
+            releaseLocks(lockKey);
+        }
+    }
+
+    private void lock(int stripe) {
+        locks[stripe].lock();
+    }
+
+    private FileLock lockStripe(int stripe) {
+        lock(stripe);
+
+        try {
+            return channel.lock(LOCK_REGION + stripe, 1, false);
+        } catch (IOException e) {
+            locks[stripe].unlock();
+            throw new IllegalStateException("can't lock cache file", e);
+        } catch (RuntimeException e) {
+            locks[stripe].unlock();
+            throw e;
+        }
+    }
+
+    private void unlockStripe(int stripe, FileLock fileLock) {
+        try {
+            fileLock.release();
+        } catch (IOException e) {
+            throw new IllegalStateException("can't unlock cache file", e);
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    private static int hash(byte[] key) {
+        return Hashing.spread(Arrays.hashCode(key));
+    }
+
+    private int setOf(int hash) {
+        return (hash & Integer.MAX_VALUE) % sets;
+    }
+
+    private int stripeOf(int set) {
+        return set & (LOCK_STRIPES - 1);
+    }
+
+    private int slotOffset(int set, int way) {
+        return slotsOffset + (set * WAYS + way) * slotSize;
+    }
+
+    private byte[] read(int offset, int length) {
+        byte[] data = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+
+        view.position(offset);
+        view.get(data);
+
+        return data;
+    }
+
+    private static int checksum(byte[] entry) {
+        CRC32 crc = new CRC32();
+
+        crc.update(entry);
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Copies entry of slot - hash, lengths, expiration time, key and value
+     *
+     * @param offset offset of used slot
+     * @return copy of entry or null if it doesn't match checksum
+     */
+    private ByteBuffer readEntry(int offset) {
+        int keyLength = buffer.getInt(offset + SLOT_KEY_LENGTH);
+        int valueLength = buffer.getInt(offset + SLOT_VALUE_LENGTH);
+
+        //lengths can be garbage if slot is overwritten during read
+        if (keyLength < 0 || valueLength < 0 || keyLength > maxEntrySize - valueLength) return null;
+
+        int checksum = buffer.getInt(offset + SLOT_CHECKSUM);
+        byte[] entry = read(offset + SLOT_HASH, ENTRY_DATA + keyLength + valueLength);
+
+        return checksum(entry) == checksum ? ByteBuffer.wrap(entry) : null;
+    }
+
+    private static boolean holdsKey(ByteBuffer entry, int hash, byte[] key) {
+        if (entry.getInt(ENTRY_HASH) != hash || entry.getInt(ENTRY_KEY_LENGTH) != key.length) return false;
+
+        for (int i = 0; i < key.length; ++i) {
+            if (entry.get(ENTRY_DATA + i) != key[i]) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param entry copy of entry
+     * @param now
+     * @return encoded value or null if entry is expired
+     */
+    private static byte[] valueOf(ByteBuffer entry, long now) {
+        if (entry.getLong(ENTRY_EXPIRATION_TIME) <= now) return null;
+
+        int from = ENTRY_DATA + entry.getInt(ENTRY_KEY_LENGTH);
+
+        return Arrays.copyOfRange(entry.array(), from, from + entry.getInt(ENTRY_VALUE_LENGTH));
+    }
+
+    private boolean isCandidate(int offset, int hash, byte[] key) {
+        return buffer.getInt(offset + SLOT_USED) != 0 && buffer.getInt(offset + SLOT_HASH) == hash && buffer.getInt(offset + SLOT_KEY_LENGTH) == key.length;
+    }
+
+    private boolean isExpired(int offset, long now) {
+        return buffer.getLong(offset + SLOT_EXPIRATION_TIME) <= now;
+    }
+
+    //slot is being written, under stripe lock it means its writer died
+    private boolean isWritten(int offset) {
+        return (buffer.getInt(offset + SLOT_SEQUENCE) & 1) != 0;
+    }
+
+    /**
+     * Reads value of key without locking
+     *
+     * @param key encoded key
+     * @return encoded value or null if key has no valid entry
+     */
+    private byte[] readValue(byte[] key) {
+        int hash = hash(key);
+        int set = setOf(hash);
+
+        for (int way = 0; way < WAYS; ++way) {
+            int offset = slotOffset(set, way);
+
+            for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; ++attempt) {
+                int sequence = buffer.getInt(offset + SLOT_SEQUENCE);
+
+                //slot is being written
+                if ((sequence & 1) != 0) {
+                    Thread.yield();
+                    continue;
+                }
+
+                boolean candidate = isCandidate(offset, hash, key);
+                ByteBuffer entry = candidate ? readEntry(offset) : null;
+
+                //slot was overwritten during read
+                if (buffer.getInt(offset + SLOT_SEQUENCE) != sequence || candidate && entry == null) continue;
+
+                if (!candidate || !holdsKey(entry, hash, key)) break;
+
+                byte[] value = valueOf(entry, System.currentTimeMillis());
+
+                if (value != null) buffer.put(offset + SLOT_REFERENCED, (byte) 1);
+
+                return value;
+            }
+        }
+
+        return null;
+    }
+
+    //guarded by stripe lock, clears slots left by writers which died
+    private int findSlot(int set, int hash, byte[] key) {
+        int found = -1;
+
+        for (int way = 0; way < WAYS; ++way) {
+            int offset = slotOffset(set, way);
+
+            if (isWritten(offset)) {
+                clearSlot(offset);
+            } else if (found < 0 && isCandidate(offset, hash, key)) {
+                ByteBuffer entry = readEntry(offset);
+
+                if (entry == null) clearSlot(offset);
+                else if (holdsKey(entry, hash, key)) found = offset;
+            }
+        }
+
+        return found;
+    }
+
+    //guarded by stripe lock
+    private int victimSlot(int set) {
+        long now = System.currentTimeMillis();
+
+        for (int way = 0; way < WAYS; ++way) {
+            int offset = slotOffset(set, way);
+
+            if (buffer.getInt(offset + SLOT_USED) == 0 || isExpired(offset, now)) return offset;
+        }
+
+        //CLOCK within set, second sweep always finds not referenced slot
+        int handOffset = setHandsOffset + set * 4;
+        int hand = buffer.getInt(handOffset);
+
+        for (;;) {
+            int offset = slotOffset(set, hand);
+
+            hand = (hand + 1) % WAYS;
+
+            if (buffer.get(offset + SLOT_REFERENCED) == 0) {
+                buffer.putInt(handOffset, hand);
+                return offset;
+            }
+
+            buffer.put(offset + SLOT_REFERENCED, (byte) 0);
+        }
+    }
+
+    //guarded by stripe lock
+    private void writeSlot(int offset, int hash, byte[] key, byte[] value, long ttl) {
+        //forced odd, slot can be left odd by writer which died
+        int sequence = buffer.getInt(offset + SLOT_SEQUENCE) | 1;
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_DATA + key.length + value.length);
+
+        entry.putInt(ENTRY_HASH, hash);
+        entry.putInt(ENTRY_KEY_LENGTH, key.length);
+        entry.putInt(ENTRY_VALUE_LENGTH, value.length);
+        entry.putLong(ENTRY_EXPIRATION_TIME, ExpiringCacheEntry.deadline(System.currentTimeMillis(), ttl));
+        entry.position(ENTRY_DATA);
+        entry.put(key);
+        entry.put(value);
+
+        buffer.putInt(offset + SLOT_SEQUENCE, sequence);
+
+        buffer.putInt(offset + SLOT_USED, 1);
+        buffer.put(offset + SLOT_REFERENCED, (byte) 0);
+        buffer.putInt(offset + SLOT_CHECKSUM, checksum(entry.array()));
+
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + SLOT_HASH);
+        view.put(entry.array());
+
+        buffer.putInt(offset + SLOT_SEQUENCE, sequence + 1);
+    }
+
+    //guarded by stripe lock
+    private void clearSlot(int offset) {
+        int sequence = buffer.getInt(offset + SLOT_SEQUENCE) | 1;
+
+        buffer.putInt(offset + SLOT_SEQUENCE, sequence);
+        buffer.putInt(offset + SLOT_USED, 0);
+        buffer.put(offset + SLOT_REFERENCED, (byte) 0);
+        buffer.putInt(offset + SLOT_SEQUENCE, sequence + 1);
+    }
+
+    //guarded by stripe lock, offset of slot found by findSlot
+    private V validValue(int offset) {
+        if (offset < 0) return null;
+
+        byte[] value = valueOf(readEntry(offset), System.currentTimeMillis());
+
+        return value != null ? valueCodec.decode(value) : null;
+    }
+
+    /**
+     * Stores value of key, or removes key if value is null
+     *
+     * @param key
+     * @param value
+     * @param ttl
+     * @param expectedValue value which has to be current valid one, null for any value
+     * @return false if expectedValue didn't match
+     */
+    private boolean store(K key, V value, long ttl, V expectedValue) {
+        byte[] encodedKey = keyCodec.encode(key);
+        byte[] encodedValue = value != null ? valueCodec.encode(value) : null;
+        int hash = hash(encodedKey);
+        int set = setOf(hash);
+        int stripe = stripeOf(set);
+        FileLock fileLock = lockStripe(stripe);
+
+        try {
+            int offset = findSlot(set, hash, encodedKey);
+
+            if (expectedValue != null && !expectedValue.equals(validValue(offset))) return false;
+
+            writeOrClear(offset, set, hash, encodedKey, encodedValue, ttl);
+
+            return true;
+        } finally {
+            unlockStripe(stripe, fileLock);
+        }
+    }
+
+    //guarded by stripe lock
+    private void writeOrClear(int offset, int set, int hash, byte[] key, byte[] value, long ttl) {
+        //too big values and removals just drop current entry
+        if (value == null || key.length + value.length > maxEntrySize) {
+            if (offset >= 0) clearSlot(offset);
+        } else {
+            writeSlot(offset >= 0 ? offset : victimSlot(set), hash, key, value, ttl);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (int stripe = 0; stripe < LOCK_STRIPES; ++stripe) {
+            FileLock fileLock = lockStripe(stripe);
+
+            try {
+                for (int set = stripe; set < sets; set += LOCK_STRIPES) {
+                    for (int way = 0; way < WAYS; ++way) {
+                        int offset = slotOffset(set, way);
+
+                        if (buffer.getInt(offset + SLOT_USED) != 0 || isWritten(offset)) clearSlot(offset);
+                    }
+                }
+            } finally {
+                unlockStripe(stripe, fileLock);
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return readValue(keyCodec.encode(key)) != null;
+    }
+
+    @Override
+    public V get(K key) {
+        byte[] value = readValue(keyCodec.encode(key));
+
+        return value != null ? valueCodec.decode(value) : null;
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable, long ttl) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable) throws Exception {
+        return computeIfAbsent(key, callable, ttl);
+    }
+
+    /**
+     * Callable is called without lock, so other processes can load the same
+     * key concurrently - first stored value wins.
+     */
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable, long ttl) throws Exception {
+        V value = get(key);
+
+        if (value != null) return value;
+
+        value = callable.call();
+
+        if (value == null) return null;
+
+        V current = putIfAbsent(key, value, ttl);
+
+        return current != null ? current : value;
+    }
+
+    @Override
+    public V computeIfPresent(K key, ValueUpdater<K, V> updater) throws Exception {
+        for (;;) {
+            V value = get(key);
+
+            if (value == null) return null;
+
+            V newValue = updater.update(key, value);
+
+            if (newValue == null) {
+                if (remove(key, value)) return null;
+            } else if (replace(key, value, newValue)) {
+                return newValue;
+            }
+        }
+    }
+
+    @Override
+    public long getCapacity() {
+        return (long) sets * WAYS;
+    }
+
+    /**
+     * Counts used slots (including expired ones), walks whole table
+     */
+    @Override
+    public long getSize() {
+        long size = 0;
+
+        for (int set = 0; set < sets; ++set) {
+            for (int way = 0; way < WAYS; ++way) {
+                if (buffer.getInt(slotOffset(set, way) + SLOT_USED) != 0) ++size;
+            }
+        }
+
+        return size;
+    }
+
+    @Override
+    public long getTtl() {
+        return ttl;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        put(key, value, ttl);
+    }
+
+    /**
+     * Entries bigger than maxEntrySize are not stored, current value of key
+     * is removed instead
+     */
+    @Override
+    public void put(K key, V value, long ttl) {
+        if (value == null) return;
+
+        store(key, value, ttl, null);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putIfAbsent(key, value, ttl);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value, long ttl) {
+        if (value == null) return get(key);
+
+        byte[] encodedKey = keyCodec.encode(key);
+        byte[] encodedValue = valueCodec.encode(value);
+        int hash = hash(encodedKey);
+        int set = setOf(hash);
+        int stripe = stripeOf(set);
+        FileLock fileLock = lockStripe(stripe);
+
+        try {
+            int offset = findSlot(set, hash, encodedKey);
+            V current = validValue(offset);
+
+            if (current == null) writeOrClear(offset, set, hash, encodedKey, encodedValue, ttl);
+
+            return current;
+        } finally {
+            unlockStripe(stripe, fileLock);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        store(key, null, 0, null);
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        if (value == null) return false;
+
+        return store(key, null, 0, value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (newValue == null) return remove(key, oldValue);
+        if (oldValue == null) return false;
+
+        return store(key, newValue, ttl, oldValue);
+    }
+}
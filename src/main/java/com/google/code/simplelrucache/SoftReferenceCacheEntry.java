@@ -25,11 +25,10 @@ import org.slf4j.LoggerFactory;
  * 
  * @author Damian Momot
  */
-class SoftReferenceCacheEntry<V> implements LruCacheEntry<V> {
+class SoftReferenceCacheEntry<V> extends ExpiringCacheEntry<V> {
     protected static final Logger logger = LoggerFactory.getLogger(SoftReferenceCacheEntry.class);
     
     private SoftReference<V> valueReference;
-    private long expirationTime;
     
     /**
      * Creates LruCacheEntry with desired ttl
@@ -39,29 +38,21 @@ class SoftReferenceCacheEntry<V> implements LruCacheEntry<V> {
      * @throws IllegalArgumentException if ttl is not positive
      */
     SoftReferenceCacheEntry(V value, long ttl) {
-        if (ttl <= 0) throw new IllegalArgumentException("ttl must be positive");
+        super(ttl);
 
         valueReference = new SoftReference<V>(value);
-        expirationTime = System.currentTimeMillis() + ttl;
     }
     
     /**
-     * Returns value if entry is valid, null otherwise.
+     * Returns value if it wasn't collected, null otherwise.
      * 
-     * Entry is invalid if SoftReference is cleared or entry has expired
-     * 
-     * @return value if entry is valid
+     * @return value or null
      */
     @Override
-    public V getValue() {
-        V value = null;
-
-        //check expiration time
-        if (System.currentTimeMillis() <= expirationTime) {
-            value = valueReference.get();
+    protected V getReferent() {
+        V value = valueReference.get();
             
-            if (value == null) logger.warn("SoftReferency.get() returned null - probably JVM runs out of memory");
-        }
+        if (value == null) logger.warn("SoftReferency.get() returned null - probably JVM runs out of memory");
 
         return value;
     }
@@ -0,0 +1,37 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.nio.charset.Charset;
+
+/**
+ * ValueCodec storing Strings as UTF-8
+ *
+ * @author Damian Momot
+ */
+public class StringCodec implements ValueCodec<String> {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Override
+    public byte[] encode(String value) {
+        return value.getBytes(UTF_8);
+    }
+
+    @Override
+    public String decode(byte[] data) {
+        return new String(data, UTF_8);
+    }
+}
@@ -20,9 +20,8 @@ package com.google.code.simplelrucache;
  * 
  * @author Damian Momot
  */
-class StrongReferenceCacheEntry<V> implements LruCacheEntry<V> {
+class StrongReferenceCacheEntry<V> extends ExpiringCacheEntry<V> {
     private V value;
-    private long expirationTime;
     
     /**
      * Creates StrongReferencyCacheEntry with desired ttl
@@ -32,22 +31,13 @@ class StrongReferenceCacheEntry<V> implements LruCacheEntry<V> {
      * @throws IllegalArgumentException if ttl is not positive
      */
     StrongReferenceCacheEntry(V value, long ttl) {
-        if (ttl <= 0) throw new IllegalArgumentException("ttl must be positive");
+        super(ttl);
 
         this.value = value;
-        expirationTime = System.currentTimeMillis() + ttl;
     }
-    
-    /**
-     * Returns value if entry is valid, null otherwise.
-     * 
-     * Entry is invalid if it's expired
-     * 
-     * @return value if entry is valid
-     */
+
     @Override
-    public V getValue() {
-        if (System.currentTimeMillis() > expirationTime) return null;
-        else return value;
+    protected V getReferent() {
+        return value;
     }
 }
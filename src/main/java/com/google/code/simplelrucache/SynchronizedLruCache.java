@@ -15,17 +15,26 @@
  */
 package com.google.code.simplelrucache;
 
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Threadsafe synchronized implementation of LruCache based on LinkedHashMap.
  * Threadsafety is provided by method synchronization.
  *
  * This cache implementation should be used with low number of threads.
  *
+ * Iteration works on snapshot of entries copied with cache lock held.
+ *
  * @param <K> key type
  * @param <V> value type
  * @author Damian Momot
  */
-public class SynchronizedLruCache<K, V> extends BaseLruCache<K, V> {
+public class SynchronizedLruCache<K, V> extends BaseLruCache<K, V> implements OrderedLruCache<K, V> {
     public static final int DEFAULT_INITIAL_CAPACITY = 16;
     public static final float DEFAULT_LOAD_FACTOR = 0.75f;
 
@@ -42,7 +51,19 @@ public class SynchronizedLruCache<K, V> extends BaseLruCache<K, V> {
     public SynchronizedLruCache(int capacity, long ttl, int initialCapacity, float loadFactor) {
         super(ttl);
 
-        cacheMap = new CapacityLruLinkedHashMap<K, LruCacheEntry<V>>(capacity, initialCapacity, loadFactor);
+        cacheMap = new CapacityLruLinkedHashMap<K, LruCacheEntry<V>>(capacity, initialCapacity, loadFactor) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean isExpired(LruCacheEntry<V> entry) {
+                return !isValid(entry);
+            }
+
+            @Override
+            protected int weigh(LruCacheEntry<V> entry) {
+                return BaseLruCache.weigh(entry);
+            }
+        };
     }
 
     /**
@@ -72,6 +93,16 @@ public class SynchronizedLruCache<K, V> extends BaseLruCache<K, V> {
         cacheMap.clear();
     }
 
+    @Override
+    synchronized public Map<K, V> coldest(int limit) {
+        return getValidValues(cacheMap.entrySet().iterator(), limit);
+    }
+
+    @Override
+    synchronized public V computeIfPresent(K key, ValueUpdater<K, V> updater) throws Exception {
+        return super.computeIfPresent(key, updater);
+    }
+
     @Override
     synchronized public V get(K key) {
         return super.get(key);
@@ -92,18 +123,161 @@ public class SynchronizedLruCache<K, V> extends BaseLruCache<K, V> {
         return cacheMap.size();
     }
 
+    /**
+     * Returns total weight of entries - sum of encoded value sizes in
+     * store-by-value mode, number of entries otherwise
+     *
+     * @return
+     */
+    synchronized public long getWeight() {
+        return cacheMap.getWeight();
+    }
+
+    @Override
+    synchronized protected LruCacheEntry<V> getValidEntry(K key) {
+        return super.getValidEntry(key);
+    }
+
+    /**
+     * LinkedHashMap can't be walked backwards, so whole map is walked under
+     * cache lock, but only last limit valid entries are kept while walking
+     */
+    @Override
+    synchronized public Map<K, V> hottest(int limit) {
+        ArrayDeque<Map.Entry<K, LruCacheEntry<V>>> entries = new ArrayDeque<Map.Entry<K, LruCacheEntry<V>>>(Math.min(limit, cacheMap.size()) + 1);
+
+        for (Map.Entry<K, LruCacheEntry<V>> entry : cacheMap.entrySet()) {
+            if (entry.getValue().getValue() == null) continue;
+
+            entries.addLast(entry);
+
+            if (entries.size() > limit) entries.removeFirst();
+        }
+
+        return getValidValues(entries.descendingIterator(), limit);
+    }
+
+    /**
+     * Iterates over snapshot of all entries, which is copied under cache lock
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new ValidEntryIterator<K, V>(orderedEntries().iterator());
+    }
+
+    /**
+     * Returns copy of all entries in LRU order, least recently used first
+     *
+     * @return
+     */
+    synchronized List<Map.Entry<K, LruCacheEntry<V>>> orderedEntries() {
+        List<Map.Entry<K, LruCacheEntry<V>>> entries = new ArrayList<Map.Entry<K, LruCacheEntry<V>>>(cacheMap.size());
+
+        //entries of LinkedHashMap are mutable, so they have to be copied
+        for (Map.Entry<K, LruCacheEntry<V>> entry : cacheMap.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<K, LruCacheEntry<V>>(entry));
+        }
+
+        return entries;
+    }
+
     @Override
     synchronized public void put(K key, V value, long ttl) {
         super.put(key, value, ttl);
     }
 
+    @Override
+    synchronized public void setEventListener(CacheEventListener eventListener) {
+        super.setEventListener(eventListener);
+        cacheMap.setEventListener(eventListener);
+    }
+
+    /**
+     * Limits total weight of entries. In store-by-value mode weight of entry
+     * is size of its encoded value, so cache can be bounded by memory used by
+     * values. Entries are evicted when either capacity or maximum weight is
+     * exceeded.
+     *
+     * @param maximumWeight
+     * @throws IllegalArgumentException if maximumWeight is not positive
+     */
+    synchronized public void setMaximumWeight(long maximumWeight) {
+        cacheMap.setMaximumWeight(maximumWeight);
+    }
+
     @Override
     protected void putEntry(K key, LruCacheEntry<V> entry) {
         cacheMap.put(key, entry);
     }
 
+    @Override
+    synchronized public V putIfAbsent(K key, V value, long ttl) {
+        return super.putIfAbsent(key, value, ttl);
+    }
+
+    @Override
+    protected LruCacheEntry<V> putEntryIfAbsent(K key, LruCacheEntry<V> entry) {
+        LruCacheEntry<V> cacheEntry = getEntry(key);
+
+        if (cacheEntry == null) putEntry(key, entry);
+
+        return cacheEntry;
+    }
+
     @Override
     synchronized public void remove(K key) {
         cacheMap.remove(key);
     }
+
+    @Override
+    synchronized public boolean remove(K key, V value) {
+        //entry can't change while lock is held, so it's removed without checking it again
+        if (!holdsValue(getEntry(key), value)) return false;
+
+        cacheMap.remove(key);
+
+        return true;
+    }
+
+    @Override
+    protected boolean removeEntry(K key, LruCacheEntry<V> entry) {
+        if (cacheMap.get(key) != entry) return false;
+
+        remove(key);
+
+        return true;
+    }
+
+    @Override
+    synchronized public boolean replace(K key, V oldValue, V newValue) {
+        if (newValue == null) return remove(key, oldValue);
+
+        LruCacheEntry<V> cacheEntry = getEntry(key);
+
+        if (!holdsValue(cacheEntry, oldValue)) return false;
+
+        LruCacheEntry<V> newEntry = newEntry(key, newValue, getTtl(), cacheEntry);
+
+        if (newEntry == null) {
+            cacheMap.remove(key);
+        } else {
+            putEntry(key, newEntry);
+        }
+
+        return true;
+    }
+
+    @Override
+    protected boolean replaceEntry(K key, LruCacheEntry<V> oldEntry, LruCacheEntry<V> newEntry) {
+        if (cacheMap.get(key) != oldEntry) return false;
+
+        putEntry(key, newEntry);
+
+        return true;
+    }
+
+    @Override
+    synchronized protected V storeEntry(K key, LruCacheEntry<V> expectedEntry, LruCacheEntry<V> entry) {
+        return super.storeEntry(key, expectedEntry, entry);
+    }
 }
@@ -0,0 +1,271 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * ConcurrentLruCache which can attach tags to entries and invalidate all
+ * entries with given tag. Secondary index maps each tag to its entries and is
+ * updated whenever entry leaves cache (removal, replacement, eviction,
+ * expiration), so invalidateTag(tag) costs time proportional to number of
+ * entries with tag, not to cache size.
+ * <p>
+ * Tags belong to stored value - entries stored by methods without tags
+ * (including replacing tagged value with put(K, V)) have no tags.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class TaggedConcurrentLruCache<K, V> extends ConcurrentLruCache<K, V> {
+    /**
+     * Tagged entry, links are compared by identity
+     *
+     * @param <K>
+     * @param <V>
+     */
+    private static final class Link<K, V> {
+        final K key;
+        final LruCacheEntry<V> entry;
+        final Object[] tags;
+
+        Link(K key, LruCacheEntry<V> entry, Object[] tags) {
+            this.key = key;
+            this.entry = entry;
+            this.tags = tags;
+        }
+    }
+
+    /**
+     * Entries with the same tag. Group which became empty is dead and is
+     * replaced by new one when tag is used again.
+     *
+     * @param <K>
+     * @param <V>
+     */
+    private static final class TagGroup<K, V> {
+        //guarded by this
+        final Set<Link<K, V>> links = new HashSet<Link<K, V>>();
+        boolean dead;
+    }
+
+    private final ConcurrentMap<Object, TagGroup<K, V>> groups = new ConcurrentHashMap<Object, TagGroup<K, V>>();
+    //LruCacheEntry doesn't override equals, so entries are looked up by identity
+    private final ConcurrentMap<LruCacheEntry<V>, Link<K, V>> links = new ConcurrentHashMap<LruCacheEntry<V>, Link<K, V>>();
+
+    /**
+     * Creates new tagged concurrent LRU cache
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @param initialCapacity initial cache capacity
+     * @param concurrencyLevel
+     * @throws IllegalArgumentException if capacity or concurrencyLevel is not positive
+     */
+    public TaggedConcurrentLruCache(int capacity, long ttl, int initialCapacity, int concurrencyLevel) {
+        super(capacity, ttl, initialCapacity, concurrencyLevel);
+    }
+
+    /**
+     * Creates new TaggedConcurrentLruCache with DEFAULT_CONCURRENCY_LEVEL
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @param initialCapacity initial cache capacity
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public TaggedConcurrentLruCache(int capacity, long ttl, int initialCapacity) {
+        super(capacity, ttl, initialCapacity);
+    }
+
+    /**
+     * Creates new TaggedConcurrentLruCache with DEFAULT_CONCURRENCY_LEVEL and
+     * DEFAULT_INITIAL_CAPACITY
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public TaggedConcurrentLruCache(int capacity, long ttl) {
+        super(capacity, ttl);
+    }
+
+    /**
+     * Puts value with tags using default ttl
+     *
+     * @param key
+     * @param value
+     * @param tags
+     * @throws IllegalArgumentException if tags or any tag is null
+     */
+    public void put(K key, V value, Collection<?> tags) {
+        put(key, value, getTtl(), tags);
+    }
+
+    /**
+     * Puts value with tags
+     *
+     * @param key
+     * @param value
+     * @param ttl time to live in milliseconds
+     * @param tags
+     * @throws IllegalArgumentException if tags or any tag is null
+     */
+    public void put(K key, V value, long ttl, Collection<?> tags) {
+        if (tags == null) throw new IllegalArgumentException("tags can't be null");
+
+        Object[] tagArray = tags.toArray();
+
+        for (Object tag : tagArray) {
+            if (tag == null) throw new IllegalArgumentException("tag can't be null");
+        }
+
+        if (value == null) return;
+
+        LruCacheEntry<V> entry = newPutEntry(key, value, ttl);
+
+        if (entry == null) {
+            remove(key);
+            return;
+        }
+
+        //entry is indexed before it's visible, so its removal always finds the link
+        if (tagArray.length > 0) index(new Link<K, V>(key, entry, tagArray));
+
+        putEntry(key, entry);
+    }
+
+    /**
+     * Removes all entries with tag
+     *
+     * @param tag
+     * @return number of removed entries
+     */
+    public int invalidateTag(Object tag) {
+        TagGroup<K, V> group = groups.get(tag);
+
+        if (group == null) return 0;
+
+        List<Link<K, V>> snapshot;
+
+        synchronized (group) {
+            snapshot = new ArrayList<Link<K, V>>(group.links);
+        }
+
+        int removed = 0;
+
+        for (Link<K, V> link : snapshot) {
+            //entry could be replaced in the meantime, new one doesn't have to have tag
+            if (removeEntry(link.key, link.entry)) ++removed;
+        }
+
+        return removed;
+    }
+
+    /**
+     * Removes all valid entries matched by filter. Unlike invalidateTag it has
+     * to scan whole cache.
+     *
+     * @param filter
+     * @return number of removed entries
+     * @throws IllegalArgumentException if filter is null
+     */
+    public int invalidateIf(EntryFilter<? super K, ? super V> filter) {
+        if (filter == null) throw new IllegalArgumentException("filter can't be null");
+
+        int removed = 0;
+
+        for (Iterator<Map.Entry<K, LruCacheEntry<V>>> it = entryIterator(); it.hasNext();) {
+            Map.Entry<K, LruCacheEntry<V>> entry = it.next();
+            V value = entry.getValue().getValue();
+
+            if (value != null && filter.matches(entry.getKey(), value) && removeEntry(entry.getKey(), entry.getValue())) ++removed;
+        }
+
+        return removed;
+    }
+
+    /**
+     * Returns number of entries with tag, including expired ones which weren't
+     * removed yet
+     *
+     * @param tag
+     * @return
+     */
+    public int getTagSize(Object tag) {
+        TagGroup<K, V> group = groups.get(tag);
+
+        if (group == null) return 0;
+
+        synchronized (group) {
+            return group.links.size();
+        }
+    }
+
+    @Override
+    protected void onRemoval(K key, LruCacheEntry<V> entry) {
+        Link<K, V> link = links.remove(entry);
+
+        if (link == null) return;
+
+        for (Object tag : link.tags) {
+            TagGroup<K, V> group = groups.get(tag);
+
+            if (group == null) continue;
+
+            synchronized (group) {
+                if (group.links.remove(link) && group.links.isEmpty()) {
+                    group.dead = true;
+                    groups.remove(tag, group);
+                }
+            }
+        }
+    }
+
+    private void index(Link<K, V> link) {
+        links.put(link.entry, link);
+
+        for (Object tag : link.tags) {
+            for (;;) {
+                TagGroup<K, V> group = groups.get(tag);
+
+                if (group == null) {
+                    TagGroup<K, V> newGroup = new TagGroup<K, V>();
+
+                    group = groups.putIfAbsent(tag, newGroup);
+
+                    if (group == null) group = newGroup;
+                }
+
+                synchronized (group) {
+                    if (!group.dead) {
+                        group.links.add(link);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.LinkedHashMap;
+
+/**
+ * 2Q policy. New keys enter FIFO queue A1in. Keys evicted from A1in are
+ * remembered (without values) in ghost queue A1out, and if such key is
+ * inserted again it goes to LRU queue Am. Keys used only once never reach Am,
+ * so scans don't flush it.
+ *
+ * @param <K> class used as key of cache
+ * @author Damian Momot
+ */
+public class TwoQueueEvictionPolicy<K> implements EvictionPolicy<K> {
+    public static final float DEFAULT_IN_RATIO = 0.25f;
+    public static final float DEFAULT_OUT_RATIO = 0.5f;
+
+    private final int inCapacity;
+    private final int outCapacity;
+    private final LinkedHashMap<K, Boolean> in = new LinkedHashMap<K, Boolean>();
+    private final LinkedHashMap<K, Boolean> out = new LinkedHashMap<K, Boolean>();
+    private final LinkedHashMap<K, Boolean> main = new LinkedHashMap<K, Boolean>();
+
+    /**
+     * Creates 2Q policy
+     *
+     * @param capacity capacity of cache using this policy
+     * @param inRatio part of capacity used by A1in queue
+     * @param outRatio number of ghost keys remembered in A1out, relative to capacity
+     * @throws IllegalArgumentException if capacity is not positive or ratios are not positive
+     */
+    public TwoQueueEvictionPolicy(int capacity, float inRatio, float outRatio) {
+        PolicyLists.checkCapacity(capacity);
+        if (inRatio <= 0 || outRatio <= 0) throw new IllegalArgumentException("ratios must be positive");
+
+        inCapacity = Math.max(1, (int) (capacity * inRatio));
+        outCapacity = Math.max(1, (int) (capacity * outRatio));
+    }
+
+    /**
+     * Creates 2Q policy with DEFAULT_IN_RATIO and DEFAULT_OUT_RATIO
+     *
+     * @param capacity capacity of cache using this policy
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public TwoQueueEvictionPolicy(int capacity) {
+        this(capacity, DEFAULT_IN_RATIO, DEFAULT_OUT_RATIO);
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        //A1in is FIFO, only Am is reordered
+        if (main.containsKey(key)) PolicyLists.moveToTail(main, key);
+    }
+
+    @Override
+    public void recordInsert(K key) {
+        if (out.remove(key) != null) main.put(key, Boolean.TRUE);
+        else in.put(key, Boolean.TRUE);
+    }
+
+    @Override
+    public void recordRemove(K key) {
+        if (in.remove(key) == null) main.remove(key);
+    }
+
+    @Override
+    public K selectVictim() {
+        if (in.size() > inCapacity || main.isEmpty()) {
+            K key = PolicyLists.removeEldest(in);
+
+            out.put(key, Boolean.TRUE);
+            PolicyLists.trim(out, outCapacity);
+
+            return key;
+        }
+
+        return PolicyLists.removeEldest(main);
+    }
+
+    @Override
+    public void clear() {
+        in.clear();
+        out.clear();
+        main.clear();
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over cache entries which skips invalid ones and exposes values
+ * instead of LruCacheEntry objects.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+class ValidEntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+    private final Iterator<Map.Entry<K, LruCacheEntry<V>>> iterator;
+    private Map.Entry<K, V> next;
+
+    ValidEntryIterator(Iterator<Map.Entry<K, LruCacheEntry<V>>> iterator) {
+        this.iterator = iterator;
+        advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Map.Entry<K, V> next() {
+        if (next == null) throw new NoSuchElementException();
+
+        Map.Entry<K, V> current = next;
+        advance();
+
+        return current;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void advance() {
+        next = null;
+
+        while (next == null && iterator.hasNext()) {
+            Map.Entry<K, LruCacheEntry<V>> entry = iterator.next();
+            V value = entry.getValue().getValue();
+
+            if (value != null) next = new AbstractMap.SimpleImmutableEntry<K, V>(entry.getKey(), value);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ * Converts cache values to bytes and back. Used by store-by-value mode, in
+ * which cache keeps encoded values and decodes them on read.
+ *
+ * @param <V> class uses as values
+ * @author Damian Momot
+ * @see BaseLruCache#setValueCodec(ValueCodec, int)
+ */
+public interface ValueCodec<V> {
+    /**
+     * Encodes value
+     *
+     * @param value
+     * @return encoded value
+     * @throws IllegalArgumentException if value can't be encoded
+     */
+    byte[] encode(V value);
+
+    /**
+     * Decodes value encoded by this codec
+     *
+     * @param data
+     * @return decoded value
+     * @throws IllegalStateException if data can't be decoded
+     */
+    V decode(byte[] data);
+}
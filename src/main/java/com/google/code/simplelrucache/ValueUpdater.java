@@ -0,0 +1,36 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ * Computes new value of cache entry from its current value.
+ *
+ * @param <K> class used as key of cache
+ * @param <V> class uses as values
+ * @author Damian Momot
+ * @see LruCache#computeIfPresent(Object, ValueUpdater)
+ */
+public interface ValueUpdater<K, V> {
+    /**
+     * Returns new value for key
+     *
+     * @param key key of entry
+     * @param value current valid value
+     * @return new value or null if entry should be removed
+     * @throws Exception
+     */
+    V update(K key, V value) throws Exception;
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * Weakly referenced map key compared by identity of referent. Once referent
+ * is collected key is equal only to itself, so it can still be used to remove
+ * its mapping.
+ *
+ * @param <K> referent type
+ * @author Damian Momot
+ */
+final class WeakIdentityKey<K> extends WeakReference<K> {
+    private final int hash;
+
+    WeakIdentityKey(K key, ReferenceQueue<? super K> queue) {
+        super(key, queue);
+
+        hash = System.identityHashCode(key);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) return true;
+
+        Object key = get();
+
+        return key != null && key == referent(obj);
+    }
+
+    private static Object referent(Object key) {
+        if (key instanceof WeakIdentityKey<?>) return ((WeakIdentityKey<?>) key).get();
+        if (key instanceof Lookup<?>) return ((Lookup<?>) key).key;
+
+        return null;
+    }
+
+    /**
+     * Strong key used for lookups, so reads don't allocate references
+     *
+     * @param <K>
+     */
+    static final class Lookup<K> {
+        private final K key;
+
+        Lookup(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj == this || key == referent(obj);
+        }
+    }
+}
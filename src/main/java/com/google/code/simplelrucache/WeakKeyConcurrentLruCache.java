@@ -0,0 +1,112 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+
+/**
+ * Modification of ConcurrentLruCache which holds keys by WeakReference's and
+ * compares them by identity (==) instead of equals. It's meant for keys like
+ * Class or ClassLoader objects - entry doesn't keep its key reachable and
+ * once key is collected its entry is removed during maintenance, so it
+ * doesn't use capacity until evicted.
+ *
+ * Values should not strongly reference their keys, otherwise keys are never
+ * collected.
+ *
+ * Maps returned by hottest and coldest use equals of keys.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class WeakKeyConcurrentLruCache<K, V> extends ConcurrentLruCache<K, V> {
+    private final ReferenceQueue<K> collectedKeys = new ReferenceQueue<K>();
+
+    /**
+     * Creates new weak key concurrent LRU cache
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @param initialCapacity initial cache capacity
+     * @param concurrencyLevel
+     * @throws IllegalArgumentException if capacity or concurrencyLevel is not positive
+     */
+    public WeakKeyConcurrentLruCache(int capacity, long ttl, int initialCapacity, int concurrencyLevel) {
+        super(capacity, ttl, initialCapacity, concurrencyLevel);
+    }
+
+    /**
+     * Creates new WeakKeyConcurrentLruCache with DEFAULT_CONCURRENCY_LEVEL
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @param initialCapacity initial cache capacity
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public WeakKeyConcurrentLruCache(int capacity, long ttl, int initialCapacity) {
+        this(capacity, ttl, initialCapacity, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates new WeakKeyConcurrentLruCache with DEFAULT_CONCURRENCY_LEVEL and
+     * DEFAULT_INITIAL_CAPACITY
+     *
+     * @param capacity max cache capacity
+     * @param ttl time to live in milliseconds
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public WeakKeyConcurrentLruCache(int capacity, long ttl) {
+        this(capacity, ttl, DEFAULT_INITIAL_CAPACITY, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Applies buffered reads and writes, removes entries of collected keys and
+     * expired entries found at least recently used end. Maintenance normally
+     * runs as a side effect of cache operations, this method can be used to
+     * run it periodically.
+     */
+    @Override
+    public void cleanUp() {
+        super.cleanUp();
+    }
+
+    @Override
+    Object lookupKey(K key) {
+        return new WeakIdentityKey.Lookup<K>(key);
+    }
+
+    @Override
+    Object storeKey(K key) {
+        return new WeakIdentityKey<K>(key, collectedKeys);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    K toKey(Object storedKey) {
+        return ((WeakIdentityKey<K>) storedKey).get();
+    }
+
+    @Override
+    void maintain() {
+        Reference<? extends K> key;
+
+        while ((key = collectedKeys.poll()) != null) {
+            removeInMaintenance(key);
+        }
+    }
+}
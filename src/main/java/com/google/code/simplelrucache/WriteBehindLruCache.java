@@ -0,0 +1,317 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * LruCache wrapper which applies modifications to cache immediately and
+ * queues them for CacheWriter. Repeated modifications of the same key are
+ * coalesced - only the last one is written. Background thread waits up to
+ * flushInterval for maxBatchSize keys and passes them to writeAll/deleteAll.
+ * Failed batches are retried maxRetries times with growing delay, then
+ * dropped and counted by getFailedWrites().
+ * <p>
+ * Values loaded by get(K, Callable) and computeIfAbsent are assumed to come
+ * from backing store and aren't written. Queued but not yet written values
+ * are returned by loads instead of calling loader. clear() only affects
+ * cache.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class WriteBehindLruCache<K, V> extends ForwardingLruCache<K, V> {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_RETRY_DELAY = 100;
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindLruCache.class);
+
+    /**
+     * Queued write, or delete if value is null
+     *
+     * @param <V>
+     */
+    private static final class Write<V> {
+        final V value;
+
+        Write(V value) {
+            this.value = value;
+        }
+    }
+
+    private final CacheWriter<K, V> writer;
+    private final int maxRetries;
+    private final long retryDelay;
+    private final KeyLocks locks = new KeyLocks();
+    //batches taken by flush thread and flush() are written one at a time, so older write can't overtake newer one
+    private final Object writeLock = new Object();
+    private final WriteBuffer<K, Write<V>> writes;
+    private final AtomicLong failedWrites = new AtomicLong();
+
+    /**
+     * Creates WriteBehindLruCache and starts its flush thread
+     *
+     * @param cache wrapped cache
+     * @param writer writer of backing store
+     * @param maxBatchSize max number of keys passed to single writeAll/deleteAll
+     * @param flushInterval max time in milliseconds write waits for batch to fill
+     * @param maxRetries number of retries of failed batch
+     * @param retryDelay delay in milliseconds before first retry, doubled by each next one
+     * @throws IllegalArgumentException if cache or writer is null, maxBatchSize is not positive or other values are negative
+     */
+    public WriteBehindLruCache(LruCache<K, V> cache, CacheWriter<K, V> writer, int maxBatchSize, long flushInterval, int maxRetries, long retryDelay) {
+        super(cache);
+
+        if (writer == null) throw new IllegalArgumentException("writer can't be null");
+        if (maxRetries < 0) throw new IllegalArgumentException("maxRetries can't be negative");
+        if (retryDelay < 0) throw new IllegalArgumentException("retryDelay can't be negative");
+
+        this.writer = writer;
+        this.maxRetries = maxRetries;
+        this.retryDelay = retryDelay;
+
+        writes = new WriteBuffer<K, Write<V>>(AsyncWriteLruCache.DEFAULT_QUEUE_CAPACITY, BackpressurePolicy.BLOCK, maxBatchSize, flushInterval, "WriteBehindLruCache-flush") {
+            @Override
+            protected void apply(K key, Write<V> write) {
+                Map<K, Write<V>> batch = new LinkedHashMap<K, Write<V>>();
+                batch.put(key, write);
+
+                synchronized (writeLock) {
+                    writeBatch(batch);
+                }
+            }
+
+            @Override
+            protected void applyBatch(List<K> keys) {
+                Map<K, Write<V>> batch = new LinkedHashMap<K, Write<V>>();
+
+                synchronized (writeLock) {
+                    for (K key : keys) {
+                        Write<V> write = takePending(key);
+
+                        if (write != null) batch.put(key, write);
+                    }
+
+                    writeBatch(batch);
+                }
+            }
+        };
+        writes.start();
+    }
+
+    /**
+     * Creates WriteBehindLruCache with default batching and retry settings
+     *
+     * @param cache wrapped cache
+     * @param writer writer of backing store
+     * @throws IllegalArgumentException if cache or writer is null
+     */
+    public WriteBehindLruCache(LruCache<K, V> cache, CacheWriter<K, V> writer) {
+        this(cache, writer, DEFAULT_MAX_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL, DEFAULT_MAX_RETRIES, DEFAULT_RETRY_DELAY);
+    }
+
+    /**
+     * Writes queued modifications and stops flush thread. Batch which is being
+     * written is finished first, including its retries. Modifications made
+     * after close are written synchronously by modifying thread.
+     *
+     * @throws InterruptedException if interrupted while waiting for flush thread
+     */
+    public void close() throws InterruptedException {
+        writes.close();
+    }
+
+    /**
+     * Writes all queued modifications on caller thread
+     */
+    public void flush() {
+        writes.flush();
+    }
+
+    /**
+     * Returns number of keys waiting to be written
+     *
+     * @return
+     */
+    public int getPendingWrites() {
+        return writes.getPendingCount();
+    }
+
+    /**
+     * Returns number of keys which weren't written because all retries failed
+     *
+     * @return
+     */
+    public long getFailedWrites() {
+        return failedWrites.get();
+    }
+
+    @Override
+    public V get(K key, Callable<V> callable, long ttl) throws Exception {
+        return cache.get(key, pendingOrLoad(key, callable), ttl);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Callable<V> callable, long ttl) throws Exception {
+        return cache.computeIfAbsent(key, pendingOrLoad(key, callable), ttl);
+    }
+
+    @Override
+    public V computeIfPresent(K key, final ValueUpdater<K, V> updater) throws Exception {
+        final List<Write<V>> updates = new ArrayList<Write<V>>(1);
+
+        synchronized (locks.of(key)) {
+            V value = cache.computeIfPresent(key, new ValueUpdater<K, V>() {
+                @Override
+                public V update(K key, V value) throws Exception {
+                    V newValue = updater.update(key, value);
+
+                    //updater can be retried, only last result is stored
+                    updates.clear();
+                    updates.add(new Write<V>(newValue));
+
+                    return newValue;
+                }
+            });
+
+            if (!updates.isEmpty()) writes.submit(key, updates.get(0));
+
+            return value;
+        }
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
+        if (value == null) return;
+
+        synchronized (locks.of(key)) {
+            cache.put(key, value, ttl);
+            writes.submit(key, new Write<V>(value));
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value, long ttl) {
+        if (value == null) return cache.get(key);
+
+        synchronized (locks.of(key)) {
+            V current = cache.putIfAbsent(key, value, ttl);
+
+            if (current == null) writes.submit(key, new Write<V>(value));
+
+            return current;
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        synchronized (locks.of(key)) {
+            cache.remove(key);
+            writes.submit(key, new Write<V>(null));
+        }
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        synchronized (locks.of(key)) {
+            if (!cache.remove(key, value)) return false;
+
+            writes.submit(key, new Write<V>(null));
+
+            return true;
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        synchronized (locks.of(key)) {
+            if (!cache.replace(key, oldValue, newValue)) return false;
+
+            writes.submit(key, new Write<V>(newValue));
+
+            return true;
+        }
+    }
+
+    private Callable<V> pendingOrLoad(final K key, final Callable<V> callable) {
+        return new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                //backing store doesn't have queued value yet
+                Write<V> write = writes.getPending(key);
+
+                return write != null ? write.value : callable.call();
+            }
+        };
+    }
+
+    private void writeBatch(Map<K, Write<V>> batch) {
+        Map<K, V> values = new LinkedHashMap<K, V>();
+        List<K> deleted = new ArrayList<K>();
+
+        for (Map.Entry<K, Write<V>> write : batch.entrySet()) {
+            if (write.getValue().value != null) values.put(write.getKey(), write.getValue().value);
+            else deleted.add(write.getKey());
+        }
+
+        if (!values.isEmpty()) writeWithRetries(values, null);
+        if (!deleted.isEmpty()) writeWithRetries(null, deleted);
+    }
+
+    private void writeWithRetries(Map<K, V> values, Collection<K> deleted) {
+        int count = values != null ? values.size() : deleted.size();
+
+        for (int attempt = 0;; ++attempt) {
+            try {
+                if (values != null) writer.writeAll(values);
+                else writer.deleteAll(deleted);
+
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxRetries) {
+                    failedWrites.addAndGet(count);
+                    logger.error("Writing batch of " + count + " keys failed after " + attempt + " retries", e);
+
+                    return;
+                }
+
+                logger.warn("Writing batch of " + count + " keys failed, retrying", e);
+            }
+
+            try {
+                Thread.sleep(retryDelay << Math.min(attempt, 16));
+            } catch (InterruptedException e) {
+                //writing thread was interrupted by its owner (close() doesn't do that), batch is dropped
+                Thread.currentThread().interrupt();
+                failedWrites.addAndGet(count);
+
+                return;
+            }
+        }
+    }
+}
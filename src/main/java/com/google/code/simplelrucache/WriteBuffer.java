@@ -0,0 +1,306 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue of keyed writes applied in batches by single drain thread.
+ * Only last write of each key is kept - write submitted while previous one
+ * for the same key is still pending replaces it without using queue.
+ * <p>
+ * Writes of the same key are never applied concurrently, so newer write
+ * can't be overwritten by older one. Once closed, writes are applied
+ * synchronously by submitting thread.
+ *
+ * @param <K> key type
+ * @param <W> write type
+ * @author Damian Momot
+ */
+abstract class WriteBuffer<K, W> {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBuffer.class);
+
+    /** Max number of keys taken from queue at once */
+    static final int MAX_BATCH_SIZE = 256;
+
+    //how often blocked submit checks whether buffer was closed
+    private static final long BLOCK_CHECK_INTERVAL = 100;
+
+    private final ConcurrentMap<K, W> pending = new ConcurrentHashMap<K, W>();
+    private final ArrayBlockingQueue<K> queue;
+    private final BackpressurePolicy backpressurePolicy;
+    private final int maxBatchSize;
+    private final long batchWindow;
+    private final KeyLocks locks = new KeyLocks();
+    private final Thread drainThread;
+    private volatile boolean closed;
+
+    //guarded by drainLock, batch being applied is not interrupted by close()
+    private final Object drainLock = new Object();
+    private boolean applying;
+
+    /**
+     * Creates write buffer, drain thread has to be started with start()
+     *
+     * @param capacity max number of queued keys
+     * @param backpressurePolicy what to do when queue is full
+     * @param maxBatchSize max number of keys applied together
+     * @param batchWindow time in milliseconds drain thread waits for batch to fill, 0 applies keys which are already queued
+     * @param name name of drain thread
+     * @throws IllegalArgumentException if capacity or maxBatchSize is not positive, batchWindow is negative or backpressurePolicy is null
+     */
+    WriteBuffer(int capacity, BackpressurePolicy backpressurePolicy, int maxBatchSize, long batchWindow, String name) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        if (backpressurePolicy == null) throw new IllegalArgumentException("backpressurePolicy can't be null");
+        if (maxBatchSize <= 0) throw new IllegalArgumentException("maxBatchSize must be positive");
+        if (batchWindow < 0) throw new IllegalArgumentException("batchWindow can't be negative");
+
+        queue = new ArrayBlockingQueue<K>(capacity);
+        this.backpressurePolicy = backpressurePolicy;
+        this.maxBatchSize = maxBatchSize;
+        this.batchWindow = batchWindow;
+
+        drainThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, name);
+        drainThread.setDaemon(true);
+    }
+
+    /**
+     * Creates write buffer which applies up to MAX_BATCH_SIZE already queued
+     * keys at once
+     *
+     * @param capacity max number of queued keys
+     * @param backpressurePolicy what to do when queue is full
+     * @param name name of drain thread
+     * @throws IllegalArgumentException if capacity is not positive or backpressurePolicy is null
+     */
+    WriteBuffer(int capacity, BackpressurePolicy backpressurePolicy, String name) {
+        this(capacity, backpressurePolicy, MAX_BATCH_SIZE, 0, name);
+    }
+
+    /**
+     * Applies write
+     *
+     * @param key
+     * @param write
+     */
+    protected abstract void apply(K key, W write);
+
+    /**
+     * Applies pending writes of batch of keys taken from queue. By default
+     * each key is flushed separately, subclasses can apply writes together
+     * with takePending.
+     *
+     * @param keys
+     */
+    protected void applyBatch(List<K> keys) {
+        for (K key : keys) {
+            try {
+                flush(key);
+            } catch (RuntimeException e) {
+                logger.error("Asynchronous write of key " + key + " failed", e);
+            }
+        }
+    }
+
+    void start() {
+        drainThread.start();
+    }
+
+    /**
+     * Stops drain thread and applies remaining writes on caller thread. Batch
+     * which is being applied is finished first. Writes submitted later are
+     * applied synchronously.
+     *
+     * @throws InterruptedException if interrupted while waiting for drain thread
+     */
+    void close() throws InterruptedException {
+        synchronized (drainLock) {
+            closed = true;
+
+            //idle drain thread is woken up, busy one stops after its batch
+            if (!applying) drainThread.interrupt();
+        }
+
+        drainThread.join();
+        flush();
+    }
+
+    /**
+     * Queues write, or applies it on caller thread if buffer is closed
+     *
+     * @param key
+     * @param write
+     */
+    void submit(K key, W write) {
+        //key is already queued
+        if (pending.put(key, write) != null) return;
+
+        if (!closed && !queue.offer(key)) {
+            switch (backpressurePolicy) {
+                case BLOCK:
+                    block(key);
+                    break;
+                case DISCARD:
+                    //writes of other threads coalesced into this one expect it to be queued
+                    if (!pending.remove(key, write)) flush(key);
+                    return;
+                case CALLER_RUNS:
+                    flush(key);
+                    return;
+            }
+        }
+
+        //closed before or while key was queued, nobody drains queue anymore
+        if (closed) flush(key);
+    }
+
+    /**
+     * Waits for free space in queue and queues key. Gives up once buffer is
+     * closed, as closed buffer can stay full.
+     *
+     * @param key
+     */
+    private void block(K key) {
+        try {
+            while (!closed && !queue.offer(key, BLOCK_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+                //retry until there's space or buffer is closed
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            flush(key);
+        }
+    }
+
+    /**
+     * Returns pending write of key
+     *
+     * @param key
+     * @return write or null if key has no pending write
+     */
+    W getPending(K key) {
+        return pending.get(key);
+    }
+
+    /**
+     * Returns number of pending writes
+     *
+     * @return
+     */
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Removes pending write of key, caller becomes responsible for applying it
+     *
+     * @param key
+     * @return write or null if key has no pending write
+     */
+    W takePending(K key) {
+        return pending.remove(key);
+    }
+
+    /**
+     * Applies pending write of key on caller thread
+     *
+     * @param key
+     */
+    void flush(K key) {
+        synchronized (locks.of(key)) {
+            W write = pending.remove(key);
+
+            if (write != null) apply(key, write);
+        }
+    }
+
+    /**
+     * Applies all pending writes on caller thread and empties queue
+     */
+    void flush() {
+        //every queued key is pending, so queue is emptied before pending keys are taken
+        queue.clear();
+        applyBatch(new ArrayList<K>(pending.keySet()));
+    }
+
+    /**
+     * Drops all pending writes. Writes already taken by flush(K) are applied
+     * before it returns.
+     */
+    void clear() {
+        queue.clear();
+        pending.clear();
+        locks.barrier();
+    }
+
+    private void drain() {
+        List<K> batch = new ArrayList<K>(maxBatchSize);
+
+        try {
+            for (;;) {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - 1);
+
+                //wait for batch to fill, but not longer than batchWindow
+                long deadline = System.currentTimeMillis() + batchWindow;
+
+                for (long remaining = batchWindow; batch.size() < maxBatchSize && remaining > 0; remaining = deadline - System.currentTimeMillis()) {
+                    K key = queue.poll(remaining, TimeUnit.MILLISECONDS);
+
+                    if (key == null) break;
+
+                    batch.add(key);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+
+                synchronized (drainLock) {
+                    //keys collected for batch are still pending and applied by close()
+                    if (closed) return;
+
+                    applying = true;
+                }
+
+                try {
+                    applyBatch(batch);
+                } catch (RuntimeException e) {
+                    logger.error("Asynchronous write failed", e);
+                }
+
+                synchronized (drainLock) {
+                    applying = false;
+
+                    if (closed) return;
+                }
+
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            //closed, keys collected for batch are still pending and applied by close()
+        }
+    }
+}
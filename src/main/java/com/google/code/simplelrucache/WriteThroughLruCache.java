@@ -0,0 +1,145 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ * LruCache wrapper which writes every modification to CacheWriter before
+ * applying it to cache. Modifications of the same key are serialized, so
+ * cache and backing store see them in the same order. If writer fails cache
+ * isn't modified and CacheWriterException is thrown (computeIfPresent
+ * rethrows writer exception).
+ * <p>
+ * Values loaded by get(K, Callable) and computeIfAbsent are assumed to come
+ * from backing store and aren't written. clear() only affects cache.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Damian Momot
+ */
+public class WriteThroughLruCache<K, V> extends ForwardingLruCache<K, V> {
+    private final CacheWriter<K, V> writer;
+    private final KeyLocks locks = new KeyLocks();
+
+    /**
+     * Creates WriteThroughLruCache
+     *
+     * @param cache wrapped cache
+     * @param writer writer of backing store
+     * @throws IllegalArgumentException if cache or writer is null
+     */
+    public WriteThroughLruCache(LruCache<K, V> cache, CacheWriter<K, V> writer) {
+        super(cache);
+
+        if (writer == null) throw new IllegalArgumentException("writer can't be null");
+
+        this.writer = writer;
+    }
+
+    @Override
+    public V computeIfPresent(K key, final ValueUpdater<K, V> updater) throws Exception {
+        synchronized (locks.of(key)) {
+            return cache.computeIfPresent(key, new ValueUpdater<K, V>() {
+                @Override
+                public V update(K key, V value) throws Exception {
+                    V newValue = updater.update(key, value);
+
+                    if (newValue != null) writer.write(key, newValue);
+                    else writer.delete(key);
+
+                    return newValue;
+                }
+            });
+        }
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
+        if (value == null) return;
+
+        synchronized (locks.of(key)) {
+            write(key, value);
+            cache.put(key, value, ttl);
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value, long ttl) {
+        if (value == null) return cache.get(key);
+
+        synchronized (locks.of(key)) {
+            V current = cache.get(key);
+
+            if (current != null) return current;
+
+            write(key, value);
+            cache.put(key, value, ttl);
+
+            return null;
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        synchronized (locks.of(key)) {
+            delete(key);
+            cache.remove(key);
+        }
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        synchronized (locks.of(key)) {
+            if (value == null || !value.equals(cache.get(key))) return false;
+
+            delete(key);
+            //entry could expire or be evicted since check, store is already changed
+            cache.remove(key);
+
+            return true;
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (newValue == null) return remove(key, oldValue);
+
+        synchronized (locks.of(key)) {
+            if (oldValue == null || !oldValue.equals(cache.get(key))) return false;
+
+            write(key, newValue);
+            //store already has new value even if entry was evicted since check
+            cache.put(key, newValue);
+
+            return true;
+        }
+    }
+
+    private void write(K key, V value) {
+        try {
+            writer.write(key, value);
+        } catch (Exception e) {
+            throw new CacheWriterException("Writing key " + key + " failed", e);
+        }
+    }
+
+    private void delete(K key) {
+        try {
+            writer.delete(key);
+        } catch (Exception e) {
+            throw new CacheWriterException("Deleting key " + key + " failed", e);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class AdaptiveLruCacheTest extends LruCacheTest {
+    @Override
+    protected LruCache<String, String> createCache(int capacity, long ttl) {
+        return new AdaptiveLruCache<String, String>(capacity, ttl);
+    }
+
+    private void migrationTest(AdaptiveLruCache<String, String> cache, boolean toConcurrent, long migrationCount) throws InterruptedException {
+        for (int i = 0; i < 10; ++i) {
+            cache.put("key" + i, "value" + i);
+        }
+
+        cache.put("short", "value", 20);
+        //key0 becomes most recently used
+        cache.get("key0");
+
+        cache.migrate(toConcurrent);
+
+        assertEquals(toConcurrent, cache.isConcurrent());
+        assertEquals(migrationCount, cache.getMigrationCount());
+        assertEquals(11, cache.getSize());
+
+        //fill up to capacity, eviction must follow LRU order of old engine
+        cache.put("new0", "value");
+        cache.put("new1", "value");
+
+        assertNull(cache.get("key1"));
+        assertNull(cache.get("key2"));
+        assertEquals("value0", cache.get("key0"));
+        assertEquals("value3", cache.get("key3"));
+
+        Thread.sleep(40);
+
+        assertFalse(cache.contains("short"));
+    }
+
+    @Test
+    public void migrateToConcurrentTest() throws InterruptedException {
+        AdaptiveLruCache<String, String> cache = new AdaptiveLruCache<String, String>(11, 3600 * 1000);
+
+        assertFalse(cache.isConcurrent());
+        migrationTest(cache, true, 1);
+    }
+
+    @Test
+    public void migrateToSynchronizedTest() throws InterruptedException {
+        AdaptiveLruCache<String, String> cache = new AdaptiveLruCache<String, String>(11, 3600 * 1000);
+
+        cache.migrate(true);
+        cache.clear();
+        migrationTest(cache, false, 2);
+    }
+
+    @Test
+    public void migrateToSameEngineTest() {
+        AdaptiveLruCache<String, String> cache = new AdaptiveLruCache<String, String>(10, 3600 * 1000);
+
+        cache.put("key", "value");
+        cache.migrate(false);
+
+        assertFalse(cache.isConcurrent());
+        assertEquals(0, cache.getMigrationCount());
+        assertEquals("value", cache.get("key"));
+    }
+
+    @Test
+    public void concurrentMigrationTest() throws InterruptedException {
+        final AdaptiveLruCache<String, String> cache = new AdaptiveLruCache<String, String>(1000, 3600 * 1000);
+        final boolean[] failed = new boolean[1];
+
+        for (int i = 0; i < 500; ++i) {
+            cache.put("key" + i, "value" + i);
+        }
+
+        Thread[] threads = new Thread[4];
+
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20000; ++i) {
+                        String key = "key" + (i % 500);
+
+                        if (!("value" + (i % 500)).equals(cache.get(key))) failed[0] = true;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        for (int i = 0; i < 10; ++i) {
+            cache.migrate(i % 2 == 0);
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(failed[0]);
+        assertEquals(500, cache.getSize());
+        assertTrue(cache.getMigrationCount() >= 10);
+    }
+
+    private void recordSamples(AdaptiveLruCache<String, String> cache, int count, int concurrency, long cost) {
+        for (int i = 0; i < count; ++i) {
+            cache.recordSample(concurrency, cost);
+        }
+    }
+
+    @Test
+    public void sampleThresholdsTest() throws InterruptedException {
+        AdaptiveLruCache<String, String> cache = new AdaptiveLruCache<String, String>(10, 3600 * 1000);
+
+        cache.put("key", "value");
+
+        //no decision before MIN_MIGRATION_INTERVAL passes
+        recordSamples(cache, AdaptiveLruCache.DECISION_SAMPLES, 4, 1000);
+        assertFalse(cache.isConcurrent());
+
+        Thread.sleep(AdaptiveLruCache.MIN_MIGRATION_INTERVAL + 50);
+
+        //average concurrency below CONTENTION_HIGH
+        recordSamples(cache, AdaptiveLruCache.DECISION_SAMPLES, 1, 1000);
+        assertFalse(cache.isConcurrent());
+
+        //decision is made only after DECISION_SAMPLES samples
+        recordSamples(cache, AdaptiveLruCache.DECISION_SAMPLES - 1, 2, 1000);
+        assertFalse(cache.isConcurrent());
+        recordSamples(cache, 1, 2, 1000);
+        assertTrue(cache.isConcurrent());
+        assertEquals(1, cache.getMigrationCount());
+        assertEquals("value", cache.get("key"));
+
+        Thread.sleep(AdaptiveLruCache.MIN_MIGRATION_INTERVAL + 50);
+
+        //average concurrency above CONTENTION_LOW keeps concurrent engine
+        recordSamples(cache, AdaptiveLruCache.DECISION_SAMPLES, 2, 500);
+        assertTrue(cache.isConcurrent());
+
+        recordSamples(cache, AdaptiveLruCache.DECISION_SAMPLES, 1, 500);
+        assertFalse(cache.isConcurrent());
+        assertEquals(2, cache.getMigrationCount());
+
+        Thread.sleep(AdaptiveLruCache.MIN_MIGRATION_INTERVAL + 50);
+
+        //synchronized engine is not slower than concurrent one was
+        recordSamples(cache, AdaptiveLruCache.DECISION_SAMPLES, 4, 500);
+        assertFalse(cache.isConcurrent());
+
+        recordSamples(cache, AdaptiveLruCache.DECISION_SAMPLES, 4, 1000);
+        assertTrue(cache.isConcurrent());
+        assertEquals(3, cache.getMigrationCount());
+    }
+
+    @Test
+    public void callableUsingCacheDuringMigrationTest() throws Exception {
+        final AdaptiveLruCache<String, String> cache = new AdaptiveLruCache<String, String>(10, 3600 * 1000);
+
+        cache.put("other", "value");
+
+        String value = cache.computeIfAbsent("key", new Callable<String>() {
+            @Override
+            public String call() {
+                //migration must not wait for this callable
+                cache.migrate(true);
+
+                return cache.get("other") + "2";
+            }
+        });
+
+        assertEquals("value2", value);
+        assertTrue(cache.isConcurrent());
+        assertEquals("value2", cache.get("key"));
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void updaterUsingCacheTest() throws Exception {
+        final AdaptiveLruCache<String, String> cache = new AdaptiveLruCache<String, String>(10, 3600 * 1000);
+
+        cache.put("key", "value");
+
+        String value = cache.computeIfPresent("key", new ValueUpdater<String, String>() {
+            @Override
+            public String update(String key, String value) {
+                cache.migrate(true);
+                cache.put("other", "other");
+
+                return value + "2";
+            }
+        });
+
+        assertEquals("value2", value);
+        assertEquals("value2", cache.get("key"));
+        assertEquals("other", cache.get("other"));
+        assertTrue(cache.isConcurrent());
+    }
+}
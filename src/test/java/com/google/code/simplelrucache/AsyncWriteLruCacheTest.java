@@ -0,0 +1,249 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class AsyncWriteLruCacheTest {
+    /**
+     * Counts puts per key, put of "blocker" waits for release
+     */
+    private static class CountingCache extends SynchronizedLruCache<String, String> {
+        final ConcurrentMap<String, AtomicInteger> puts = new ConcurrentHashMap<String, AtomicInteger>();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        CountingCache() {
+            super(100, 3600 * 1000);
+        }
+
+        @Override
+        public void put(String key, String value, long ttl) {
+            if (key.equals("blocker")) {
+                blocked.countDown();
+
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            puts.putIfAbsent(key, new AtomicInteger());
+            puts.get(key).incrementAndGet();
+            super.put(key, value, ttl);
+        }
+
+        int putCount(String key) {
+            return puts.containsKey(key) ? puts.get(key).get() : 0;
+        }
+    }
+
+    @Test
+    public void visibilityTest() throws InterruptedException {
+        SynchronizedLruCache<String, String> target = new SynchronizedLruCache<String, String>(100, 3600 * 1000);
+        AsyncWriteLruCache<String, String> cache = new AsyncWriteLruCache<String, String>(target);
+
+        for (int i = 0; i < 50; ++i) {
+            cache.put("key" + i, "value" + i);
+
+            assertEquals("value" + i, cache.get("key" + i));
+            assertTrue(cache.contains("key" + i));
+        }
+
+        cache.remove("key0");
+
+        assertNull(cache.get("key0"));
+        assertFalse(cache.contains("key0"));
+
+        cache.close();
+
+        assertEquals(0, cache.getPendingWrites());
+        assertEquals(49, target.getSize());
+        assertNull(target.get("key0"));
+        assertEquals("value1", target.get("key1"));
+    }
+
+    @Test
+    public void coalescingTest() throws InterruptedException {
+        CountingCache target = new CountingCache();
+        AsyncWriteLruCache<String, String> cache = new AsyncWriteLruCache<String, String>(target, 16, BackpressurePolicy.BLOCK);
+
+        cache.put("blocker", "value");
+        target.blocked.await();
+
+        for (int i = 0; i < 100; ++i) {
+            cache.put("key", "value" + i);
+        }
+
+        assertEquals(1, cache.getPendingWrites());
+
+        target.release.countDown();
+        cache.close();
+
+        assertEquals(1, target.putCount("key"));
+        assertEquals("value99", target.get("key"));
+    }
+
+    @Test
+    public void synchronousOperationTest() throws InterruptedException {
+        CountingCache target = new CountingCache();
+        AsyncWriteLruCache<String, String> cache = new AsyncWriteLruCache<String, String>(target, 16, BackpressurePolicy.BLOCK);
+
+        cache.put("blocker", "value");
+        target.blocked.await();
+        cache.put("key", "value");
+
+        //pending write is applied before replace
+        assertTrue(cache.replace("key", "value", "value2"));
+        assertEquals("value2", target.get("key"));
+
+        target.release.countDown();
+        cache.close();
+
+        assertEquals("value2", target.get("key"));
+        assertEquals(1, target.putCount("key"));
+    }
+
+    @Test
+    public void discardTest() throws InterruptedException {
+        CountingCache target = new CountingCache();
+        AsyncWriteLruCache<String, String> cache = new AsyncWriteLruCache<String, String>(target, 1, BackpressurePolicy.DISCARD);
+
+        cache.put("blocker", "value");
+        target.blocked.await();
+        cache.put("key1", "value");
+        cache.put("key2", "value");
+
+        assertNull(cache.get("key2"));
+
+        target.release.countDown();
+        cache.close();
+
+        assertEquals("value", target.get("key1"));
+        assertNull(target.get("key2"));
+    }
+
+    @Test
+    public void callerRunsTest() throws InterruptedException {
+        CountingCache target = new CountingCache();
+        AsyncWriteLruCache<String, String> cache = new AsyncWriteLruCache<String, String>(target, 1, BackpressurePolicy.CALLER_RUNS);
+
+        cache.put("blocker", "value");
+        target.blocked.await();
+        cache.put("key1", "value");
+        cache.put("key2", "value");
+
+        assertNull(target.get("key1"));
+        assertEquals("value", target.get("key2"));
+
+        target.release.countDown();
+        cache.close();
+
+        assertEquals("value", target.get("key1"));
+    }
+
+    @Test
+    public void writeAfterCloseTest() throws InterruptedException {
+        SynchronizedLruCache<String, String> target = new SynchronizedLruCache<String, String>(100, 3600 * 1000);
+        AsyncWriteLruCache<String, String> cache = new AsyncWriteLruCache<String, String>(target, 1, BackpressurePolicy.BLOCK);
+
+        cache.close();
+
+        //nothing drains queue after close, writes must not wait for it
+        for (int i = 0; i < 10; ++i) {
+            cache.put("key" + i, "value" + i);
+
+            assertEquals("value" + i, target.get("key" + i));
+        }
+
+        cache.remove("key0");
+
+        assertNull(target.get("key0"));
+        assertEquals(0, cache.getPendingWrites());
+    }
+
+    @Test
+    public void flushEmptiesQueueTest() throws InterruptedException {
+        CountingCache target = new CountingCache();
+        final AsyncWriteLruCache<String, String> cache = new AsyncWriteLruCache<String, String>(target, 1, BackpressurePolicy.BLOCK);
+
+        cache.put("blocker", "value");
+        target.blocked.await();
+        cache.put("key1", "value");
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                //queue is full, waits for free space
+                cache.put("key2", "value");
+            }
+        };
+        writer.start();
+
+        cache.flush();
+        writer.join(1000);
+
+        assertFalse(writer.isAlive());
+        assertEquals("value", target.get("key1"));
+
+        target.release.countDown();
+        cache.close();
+
+        assertEquals("value", target.get("key2"));
+    }
+
+    @Test
+    public void clearWaitsForAppliedWriteTest() throws InterruptedException {
+        CountingCache target = new CountingCache();
+        final AsyncWriteLruCache<String, String> cache = new AsyncWriteLruCache<String, String>(target, 16, BackpressurePolicy.BLOCK);
+
+        cache.put("blocker", "value");
+        target.blocked.await();
+
+        Thread clearer = new Thread() {
+            @Override
+            public void run() {
+                cache.clear();
+            }
+        };
+        clearer.start();
+        clearer.join(100);
+
+        assertTrue(clearer.isAlive());
+
+        target.release.countDown();
+        clearer.join();
+        cache.close();
+
+        //write applied during clear doesn't survive it
+        assertNull(target.get("blocker"));
+    }
+}
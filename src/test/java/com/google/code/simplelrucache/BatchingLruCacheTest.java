@@ -0,0 +1,156 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class BatchingLruCacheTest {
+    private static class RecordingLoader implements BatchLoader<String, String> {
+        final List<Collection<String>> batches = new CopyOnWriteArrayList<Collection<String>>();
+        volatile boolean failing;
+
+        @Override
+        public Map<String, String> loadAll(Collection<String> keys) throws Exception {
+            batches.add(new ArrayList<String>(keys));
+
+            if (failing) throw new IOException("backend down");
+
+            Map<String, String> values = new HashMap<String, String>();
+
+            for (String key : keys) {
+                if (!key.startsWith("missing")) values.put(key, "value-" + key);
+            }
+
+            return values;
+        }
+    }
+
+    private static final Callable<String> unused = new Callable<String>() {
+        @Override
+        public String call() {
+            throw new AssertionError("callable is not used");
+        }
+    };
+
+    private static List<Object> getConcurrently(final LruCache<String, String> cache, int threads) throws InterruptedException {
+        final List<Object> results = new CopyOnWriteArrayList<Object>();
+        List<Thread> started = new ArrayList<Thread>();
+
+        for (int i = 0; i < threads; ++i) {
+            final String key = "key" + i;
+
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        results.add(cache.get(key, unused));
+                    } catch (Exception e) {
+                        results.add(e);
+                    }
+                }
+            };
+            thread.start();
+            started.add(thread);
+        }
+
+        for (Thread thread : started) {
+            thread.join();
+        }
+
+        return results;
+    }
+
+    @Test
+    public void coalescingTest() throws Exception {
+        RecordingLoader loader = new RecordingLoader();
+        BatchingLruCache<String, String> cache = new BatchingLruCache<String, String>(new ConcurrentLruCache<String, String>(100, 3600 * 1000), loader, 100, 200);
+        List<Object> results = getConcurrently(cache, 8);
+
+        assertEquals(1, loader.batches.size());
+        assertEquals(8, loader.batches.get(0).size());
+        assertEquals(1, cache.getBatchLoads());
+
+        for (int i = 0; i < 8; ++i) {
+            assertTrue(results.contains("value-key" + i));
+            assertEquals("value-key" + i, cache.get("key" + i));
+        }
+
+        //hits don't load
+        assertEquals("value-key0", cache.get("key0", unused));
+        assertEquals(1, loader.batches.size());
+    }
+
+    @Test
+    public void maxBatchSizeTest() throws Exception {
+        RecordingLoader loader = new RecordingLoader();
+        BatchingLruCache<String, String> cache = new BatchingLruCache<String, String>(new ConcurrentLruCache<String, String>(100, 3600 * 1000), loader, 3, 200);
+
+        assertEquals(10, getConcurrently(cache, 10).size());
+
+        int keys = 0;
+
+        for (Collection<String> batch : loader.batches) {
+            assertTrue(batch.size() <= 3);
+            keys += batch.size();
+        }
+
+        assertEquals(10, keys);
+        assertTrue(loader.batches.size() >= 4);
+    }
+
+    @Test
+    public void missingKeyTest() throws Exception {
+        RecordingLoader loader = new RecordingLoader();
+        BatchingLruCache<String, String> cache = new BatchingLruCache<String, String>(new ConcurrentLruCache<String, String>(100, 3600 * 1000), loader, 10, 0);
+
+        assertNull(cache.computeIfAbsent("missing", unused));
+        assertNull(cache.get("missing"));
+        assertEquals("value-key", cache.computeIfAbsent("key", unused));
+    }
+
+    @Test
+    public void failureTest() throws Exception {
+        RecordingLoader loader = new RecordingLoader();
+        BatchingLruCache<String, String> cache = new BatchingLruCache<String, String>(new ConcurrentLruCache<String, String>(100, 3600 * 1000), loader, 100, 100);
+
+        loader.failing = true;
+
+        for (Object result : getConcurrently(cache, 4)) {
+            assertTrue(result instanceof IOException);
+        }
+
+        loader.failing = false;
+
+        assertEquals("value-key0", cache.get("key0", unused));
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class CacheEventListenerTest {
+    private static class RecordingListener implements CacheEventListener {
+        final List<String> events = new ArrayList<String>();
+
+        @Override
+        public synchronized void onLoad(Object key, long duration, LoadOutcome outcome) {
+            events.add("load " + key + " " + outcome);
+        }
+
+        @Override
+        public synchronized void onEviction(EvictionCause cause, int count) {
+            events.add("eviction " + cause + " " + count);
+        }
+
+        @Override
+        public synchronized void onExpirationSweep(int count, long duration) {
+            events.add("sweep " + count);
+        }
+
+        @Override
+        public synchronized void onLockWait(long duration) {
+        }
+    }
+
+    private static Callable<String> returning(final String value) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return value;
+            }
+        };
+    }
+
+    private void assertLoadEvents(BaseLruCache<String, String> cache) throws Exception {
+        RecordingListener listener = new RecordingListener();
+
+        cache.setEventListener(listener);
+        cache.get("key", returning("value"));
+        cache.get("key", returning("value"));
+        cache.get("null", returning(null));
+
+        try {
+            cache.get("failed", new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    throw new IOException();
+                }
+            });
+            fail();
+        } catch (IOException e) {
+            //expected
+        }
+
+        assertEquals(Arrays.asList("load key LOADED", "load null NULL", "load failed FAILED"), listener.events);
+    }
+
+    @Test
+    public void loadTest() throws Exception {
+        assertLoadEvents(new SynchronizedLruCache<String, String>(10, 1000));
+        assertLoadEvents(new ConcurrentLruCache<String, String>(10, 1000));
+    }
+
+    private void assertEvictionEvents(BaseLruCache<String, String> cache) {
+        RecordingListener listener = new RecordingListener();
+
+        cache.setEventListener(listener);
+
+        for (int i = 0; i < 4; ++i) {
+            cache.put("key" + i, "value");
+        }
+
+        if (cache instanceof ConcurrentLruCache) ((ConcurrentLruCache<String, String>) cache).cleanUp();
+
+        assertEquals(Arrays.asList("eviction CAPACITY 1", "eviction CAPACITY 1"), listener.events);
+    }
+
+    @Test
+    public void evictionTest() {
+        assertEvictionEvents(new SynchronizedLruCache<String, String>(2, 3600 * 1000));
+        assertEvictionEvents(new ConcurrentLruCache<String, String>(2, 3600 * 1000));
+    }
+
+    @Test
+    public void weightEvictionTest() {
+        SynchronizedLruCache<String, String> synchronizedCache = new SynchronizedLruCache<String, String>(10, 3600 * 1000);
+        ConcurrentLruCache<String, String> concurrentCache = new ConcurrentLruCache<String, String>(10, 3600 * 1000);
+        RecordingListener synchronizedListener = new RecordingListener();
+        RecordingListener concurrentListener = new RecordingListener();
+
+        synchronizedCache.setEventListener(synchronizedListener);
+        concurrentCache.setEventListener(concurrentListener);
+
+        for (int i = 0; i < 5; ++i) {
+            synchronizedCache.put("key" + i, "value");
+            concurrentCache.put("key" + i, "value");
+        }
+
+        synchronizedCache.setMaximumWeight(2);
+        concurrentCache.setMaximumWeight(2);
+
+        assertEquals(Arrays.asList("eviction WEIGHT 3"), synchronizedListener.events);
+        assertEquals(Arrays.asList("eviction WEIGHT 3"), concurrentListener.events);
+    }
+
+    @Test
+    public void expirationTest() throws InterruptedException {
+        ConcurrentLruCache<String, String> concurrentCache = new ConcurrentLruCache<String, String>(10, 3600 * 1000);
+        SynchronizedLruCache<String, String> synchronizedCache = new SynchronizedLruCache<String, String>(10, 3600 * 1000);
+        RecordingListener concurrentListener = new RecordingListener();
+        RecordingListener synchronizedListener = new RecordingListener();
+
+        concurrentCache.setEventListener(concurrentListener);
+        synchronizedCache.setEventListener(synchronizedListener);
+
+        //ttl long enough for all puts to finish before first entry expires
+        for (int i = 0; i < 3; ++i) {
+            concurrentCache.put("key" + i, "value", 100);
+        }
+
+        synchronizedCache.put("key", "value", 100);
+        Thread.sleep(200);
+        concurrentCache.cleanUp();
+        synchronizedCache.put("key2", "value");
+
+        assertEquals(Arrays.asList("sweep 3"), concurrentListener.events);
+        assertEquals(Arrays.asList("eviction EXPIRED 1"), synchronizedListener.events);
+    }
+
+    @Test
+    public void loggingListenerTest() throws Exception {
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(1, 3600 * 1000);
+
+        cache.setEventListener(new LoggingCacheEventListener(0, 0, 1));
+        cache.get("key", returning("value"));
+        cache.put("key2", "value");
+        cache.cleanUp();
+
+        assertTrue(cache.getSize() <= 1);
+    }
+}
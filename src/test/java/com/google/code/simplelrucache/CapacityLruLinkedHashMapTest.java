@@ -79,4 +79,81 @@ public class CapacityLruLinkedHashMapTest {
             assertTrue(map.containsKey(keys[i]));
         }
     }
+
+    @Test
+    public void expiredEldestTest() {
+        map = new CapacityLruLinkedHashMap<String, String>(capacity, 1, 0.75f) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean isExpired(String value) {
+                return value.startsWith("expired");
+            }
+        };
+
+        map.put(keys[0], "expired");
+        map.put(keys[1], values[1]);
+
+        assertFalse(map.containsKey(keys[0]));
+        assertTrue(map.containsKey(keys[1]));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void weightTest() {
+        map = new CapacityLruLinkedHashMap<String, String>(capacity, 1, 0.75f) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected int weigh(String value) {
+                return value.length();
+            }
+        };
+
+        map.setMaximumWeight(10);
+        map.put(keys[0], "aaaa");
+        map.put(keys[1], "bbbb");
+
+        assertEquals(8, map.getWeight());
+
+        //new value removes two least recently used ones
+        map.put(keys[2], "ccccccc");
+
+        assertEquals(7, map.getWeight());
+        assertEquals(1, map.size());
+
+        map.put(keys[2], "cc");
+        map.remove(keys[2]);
+
+        assertEquals(0, map.getWeight());
+    }
+
+    @Test
+    public void trimWeightTest() {
+        map = new CapacityLruLinkedHashMap<String, String>(capacity, 1, 0.75f) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected int weigh(String value) {
+                return value.length();
+            }
+        };
+
+        map.put(keys[0], "aaaa");
+        map.put(keys[1], "bbbb");
+        map.put(keys[2], "cccc");
+        map.setMaximumWeight(5);
+
+        assertEquals(1, map.size());
+        assertEquals(4, map.getWeight());
+
+        map.put(keys[3], "dd");
+
+        assertEquals(1, map.size());
+        assertEquals(2, map.getWeight());
+
+        map.remove(keys[3]);
+
+        assertEquals(0, map.getWeight());
+    }
 }
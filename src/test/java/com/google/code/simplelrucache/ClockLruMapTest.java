@@ -0,0 +1,102 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class ClockLruMapTest {
+    private ClockLruMap<String, String> map;
+    private static String[] keys;
+    private static String[] values;
+    private static int capacity;
+
+    @Before
+    public void init() {
+        map = new ClockLruMap<String, String>(capacity, 4);
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        keys = new String[] {"aa", "bb", "cc", "dd", "ee", "ff", "gg", "hh"};
+        values = new String[] {"aaa", "bbb", "ccc", "ddd", "eer", "fff", "ggg", "hhh"};
+        capacity = 5;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorZeroCapacityTest() {
+        map = new ClockLruMap<String, String>(0, 4);
+    }
+
+    @Test
+    public void capacityTest() {
+        for (int i = 0; i < keys.length; ++i) {
+            map.put(keys[i], values[i]);
+        }
+
+        assertEquals(capacity, map.size());
+
+        for(int i = 0; i < keys.length - capacity; ++i) {
+            assertNull(map.get(keys[i]));
+        }
+
+        for(int i = keys.length - capacity; i < keys.length; ++i) {
+            assertEquals(values[i], map.get(keys[i]));
+        }
+    }
+
+    @Test
+    public void secondChanceTest() {
+        for (int i = 0; i < capacity; ++i) {
+            map.put(keys[i], values[i]);
+        }
+
+        map.get(keys[0]);
+        map.put(keys[capacity], values[capacity]);
+
+        //referenced entry survives, next one in ring is evicted
+        assertEquals(values[0], map.get(keys[0]));
+        assertNull(map.get(keys[1]));
+        assertEquals(capacity, map.size());
+    }
+
+    @Test
+    public void removeReusesSlotTest() {
+        for (int i = 0; i < capacity; ++i) {
+            map.put(keys[i], values[i]);
+        }
+
+        assertEquals(values[2], map.remove(keys[2]));
+        map.put(keys[capacity], values[capacity]);
+
+        for (int i = 0; i <= capacity; ++i) {
+            if (i == 2) assertNull(map.get(keys[i]));
+            else assertEquals(values[i], map.get(keys[i]));
+        }
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(keys[0]));
+    }
+}
@@ -15,13 +15,113 @@
  */
 package com.google.code.simplelrucache;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
 /**
  *
  * @author Damian Momot
  */
-public class ConcurrentLruCacheTest extends LruCacheTest {
+public class ConcurrentLruCacheTest extends OrderedLruCacheTest {
     @Override
-    protected LruCache<String, String> createCache(int capacity, long ttl) {
+    protected OrderedLruCache<String, String> createCache(int capacity, long ttl) {
         return new ConcurrentLruCache<String, String>(capacity, ttl);
     }
+
+    private static Map<Integer, Integer> createEntries(int from, int to) {
+        Map<Integer, Integer> entries = new LinkedHashMap<Integer, Integer>();
+
+        for (int i = from; i < to; ++i) {
+            entries.put(i, i * 2);
+        }
+
+        return entries;
+    }
+
+    @Test
+    public void preloadTest() throws InterruptedException {
+        ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<Integer, Integer>(10000, 3600 * 1000);
+
+        cache.preload(createEntries(0, 5000).entrySet().iterator(), 4);
+
+        assertEquals(5000, cache.getSize());
+        for (int i = 0; i < 5000; ++i) {
+            assertEquals(Integer.valueOf(i * 2), cache.get(i));
+        }
+    }
+
+    @Test
+    public void preloadCapacityTest() throws InterruptedException {
+        ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<Integer, Integer>(1000, 3600 * 1000);
+
+        cache.preload(createEntries(0, 5000).entrySet().iterator(), 4);
+
+        assertEquals(1000, cache.getSize());
+    }
+
+    @Test
+    public void preloadWithoutReorderTest() throws InterruptedException {
+        ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<Integer, Integer>(10, 3600 * 1000);
+
+        cache.put(0, 0);
+        cache.put(1, 1);
+        cache.preload(createEntries(0, 1).entrySet().iterator(), 1, 3600 * 1000, false);
+
+        assertEquals(Integer.valueOf(0), new ArrayList<Integer>(cache.coldest(1).keySet()).get(0));
+
+        cache.preload(createEntries(0, 1).entrySet().iterator(), 1, 3600 * 1000, true);
+
+        assertEquals(Integer.valueOf(1), new ArrayList<Integer>(cache.coldest(1).keySet()).get(0));
+    }
+
+    @Test
+    public void preloadFailureStopsThreadsTest() throws InterruptedException {
+        ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<Integer, Integer>(1000, 3600 * 1000);
+        final AtomicInteger taken = new AtomicInteger();
+
+        //endless iterator, fails once
+        Iterator<Map.Entry<Integer, Integer>> entries = new Iterator<Map.Entry<Integer, Integer>>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Map.Entry<Integer, Integer> next() {
+                int i = taken.incrementAndGet();
+
+                if (i == 10000) throw new IllegalStateException();
+
+                return new AbstractMap.SimpleEntry<Integer, Integer>(i, i);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        try {
+            cache.preload(entries, 4);
+            fail();
+        } catch (IllegalStateException e) {
+            //expected
+        }
+
+        //threads finish their current batches
+        Thread.sleep(100);
+        int takenAfterFailure = taken.get();
+        Thread.sleep(100);
+
+        assertEquals(takenAfterFailure, taken.get());
+    }
 }
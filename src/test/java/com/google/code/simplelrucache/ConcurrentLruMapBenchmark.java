@@ -0,0 +1,208 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+/**
+ * Throughput comparison of ConcurrentLruMap and ConcurrentLinkedHashMap 1.4
+ * which it replaced. Not run by tests, start with:
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:CLHM_JAR com.google.code.simplelrucache.ConcurrentLruMapBenchmark [threads...]
+ * </pre>
+ * Each thread performs reads and writes (90% reads, -DreadPercent changes it)
+ * of keys drawn from skewed distribution over twice the capacity. Ratio above 1 means ConcurrentLruMap
+ * is faster. Numbers are meaningful only with at least as many cores as
+ * threads.
+ *
+ * @author Damian Momot
+ */
+public class ConcurrentLruMapBenchmark {
+    static final int CAPACITY = 10000;
+    static final int KEY_SPACE = CAPACITY * 2;
+    static final int READ_PERCENT = Integer.getInteger("readPercent", 90);
+    static final long WARMUP_MILLIS = 1000;
+    static final long MEASURE_MILLIS = 2000;
+    static final int ROUNDS = 3;
+
+    /**
+     * Map operations under test
+     */
+    interface Target {
+        Integer get(Integer key);
+
+        void put(Integer key, Integer value);
+    }
+
+    static Target lruMap(int concurrencyLevel) {
+        final ConcurrentLruMap<Integer, Integer> map = new ConcurrentLruMap<Integer, Integer>(CAPACITY, CAPACITY, concurrencyLevel);
+
+        return new Target() {
+            @Override
+            public Integer get(Integer key) {
+                return map.get(key);
+            }
+
+            @Override
+            public void put(Integer key, Integer value) {
+                map.put(key, value);
+            }
+        };
+    }
+
+    static Target linkedHashMap(int concurrencyLevel) {
+        final ConcurrentLinkedHashMap<Integer, Integer> map = new ConcurrentLinkedHashMap.Builder<Integer, Integer>()
+                .maximumWeightedCapacity(CAPACITY)
+                .initialCapacity(CAPACITY)
+                .concurrencyLevel(concurrencyLevel)
+                .build();
+
+        return new Target() {
+            @Override
+            public Integer get(Integer key) {
+                return map.get(key);
+            }
+
+            @Override
+            public void put(Integer key, Integer value) {
+                map.put(key, value);
+            }
+        };
+    }
+
+    /**
+     * Returns keys with skewed distribution - square of uniform variable
+     * makes low keys much more frequent
+     *
+     * @param seed
+     * @return
+     */
+    static Integer[] keys(long seed) {
+        Random random = new Random(seed);
+        Integer[] keys = new Integer[1 << 16];
+
+        for (int i = 0; i < keys.length; ++i) {
+            double uniform = random.nextDouble();
+            keys[i] = (int) (uniform * uniform * KEY_SPACE);
+        }
+
+        return keys;
+    }
+
+    /**
+     * Runs threads against target for given time
+     *
+     * @param target
+     * @param threads
+     * @param millis
+     * @return operations per second
+     * @throws InterruptedException
+     */
+    static double run(final Target target, int threads, long millis) throws InterruptedException {
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicLong operations = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; ++t) {
+            final Integer[] keys = keys(t);
+
+            new Thread() {
+                @Override
+                public void run() {
+                    long count = 0;
+                    int index = 0;
+
+                    try {
+                        start.await();
+
+                        while (!stop.get()) {
+                            //check stop flag once per 256 operations
+                            for (int i = 0; i < 256; ++i, ++index) {
+                                Integer key = keys[index & (keys.length - 1)];
+
+                                if ((index % 100) < READ_PERCENT) target.get(key);
+                                else target.put(key, key);
+                            }
+
+                            count += 256;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        operations.addAndGet(count);
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        done.await();
+
+        return operations.get() * 1e9 / (System.nanoTime() - begin);
+    }
+
+    static void prefill(Target target) {
+        for (Integer key : keys(-1)) {
+            target.put(key, key);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] threadCounts = {1, 2, 4, 8, 16};
+
+        if (args.length > 0) {
+            threadCounts = new int[args.length];
+
+            for (int i = 0; i < args.length; ++i) {
+                threadCounts[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+        System.out.println("threads\tConcurrentLruMap ops/s\tConcurrentLinkedHashMap ops/s\tratio");
+
+        for (int threads : threadCounts) {
+            double lru = 0;
+            double linked = 0;
+
+            //alternate implementations so both see similar machine state
+            for (int round = 0; round < ROUNDS; ++round) {
+                Target lruTarget = lruMap(16);
+                prefill(lruTarget);
+                run(lruTarget, threads, WARMUP_MILLIS);
+                lru += run(lruTarget, threads, MEASURE_MILLIS);
+
+                Target linkedTarget = linkedHashMap(16);
+                prefill(linkedTarget);
+                run(linkedTarget, threads, WARMUP_MILLIS);
+                linked += run(linkedTarget, threads, MEASURE_MILLIS);
+            }
+
+            System.out.printf("%d\t%.0f\t%.0f\t%.2f%n", threads, lru / ROUNDS, linked / ROUNDS, lru / linked);
+        }
+    }
+}
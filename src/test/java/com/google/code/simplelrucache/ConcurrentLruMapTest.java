@@ -0,0 +1,236 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class ConcurrentLruMapTest {
+    private ConcurrentLruMap<String, String> map;
+    private static String[] keys;
+    private static String[] values;
+    private static int capacity;
+
+    @Before
+    public void init() {
+        map = new ConcurrentLruMap<String, String>(capacity, 1, 4);
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        keys = new String[] {"aa", "bb", "cc", "dd", "ee", "ff", "gg", "hh"};
+        values = new String[] {"aaa", "bbb", "ccc", "ddd", "eer", "fff", "ggg", "hhh"};
+        capacity = 5;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorZeroCapacityTest() {
+        map = new ConcurrentLruMap<String, String>(0, 1, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorZeroConcurrencyLevelTest() {
+        map = new ConcurrentLruMap<String, String>(capacity, 1, 0);
+    }
+
+    @Test
+    public void capacityTest() {
+        for (int i = 0; i < capacity; ++i) {
+            map.put(keys[i], values[i]);
+        }
+
+        assertEquals(capacity, map.size());
+
+        for (int i = capacity; i < keys.length; ++i) {
+            map.put(keys[i], values[i]);
+        }
+
+        assertEquals(capacity, map.size());
+
+        for(int i = 0; i < keys.length - capacity; ++i) {
+            assertNull(map.get(keys[i]));
+        }
+
+        for(int i = keys.length - capacity; i < keys.length; ++i) {
+            assertEquals(values[i], map.get(keys[i]));
+        }
+    }
+
+    @Test
+    public void accessOrderTest() {
+        for (int i = 0; i < capacity; ++i) {
+            map.put(keys[i], values[i]);
+        }
+
+        //enough reads to force read buffer drain
+        for (int i = 0; i < ConcurrentLruMap.READ_BUFFER_SIZE; ++i) {
+            map.get(keys[0]);
+        }
+
+        map.put(keys[capacity], values[capacity]);
+
+        assertEquals(values[0], map.get(keys[0]));
+        assertNull(map.get(keys[1]));
+    }
+
+    @Test
+    public void updateAndRemoveTest() {
+        map.put(keys[0], values[0]);
+
+        assertEquals(values[0], map.put(keys[0], values[1]));
+        assertEquals(values[1], map.get(keys[0]));
+        assertEquals(1, map.size());
+
+        assertEquals(values[1], map.remove(keys[0]));
+        assertNull(map.remove(keys[0]));
+        assertEquals(0, map.size());
+
+        map.put(keys[0], values[0]);
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(keys[0]));
+    }
+
+    @Test
+    public void expireTest() {
+        map = new ConcurrentLruMap<String, String>(capacity, 1, 4) {
+            @Override
+            protected boolean isExpired(String value) {
+                return value.startsWith("expired");
+            }
+        };
+
+        map.put(keys[0], "expired");
+        map.put(keys[1], values[1]);
+        map.put(keys[2], "expired");
+        map.cleanUp();
+
+        //only expired entries at least recently used end are removed
+        assertNull(map.get(keys[0]));
+        assertEquals(values[1], map.get(keys[1]));
+        assertEquals("expired", map.get(keys[2]));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void weightTest() {
+        map = new ConcurrentLruMap<String, String>(capacity, 1, 4) {
+            @Override
+            protected int weigh(String value) {
+                return value.length();
+            }
+        };
+
+        map.setMaximumWeight(10);
+        map.put(keys[0], "aaaa");
+        map.put(keys[1], "bbbb");
+
+        assertEquals(8, map.weight());
+
+        //update makes value heavier, least recently used one is evicted
+        map.put(keys[1], "bbbbbbb");
+
+        assertEquals(7, map.weight());
+        assertNull(map.get(keys[0]));
+
+        map.remove(keys[1]);
+
+        assertEquals(0, map.weight());
+    }
+
+    @Test
+    public void onRemovalTest() {
+        final StringBuilder removed = new StringBuilder();
+
+        map = new ConcurrentLruMap<String, String>(2, 1, 4) {
+            @Override
+            protected void onRemoval(String key, String value) {
+                removed.append(key).append('=').append(value).append(' ');
+            }
+        };
+
+        map.put("a", "1");
+        map.put("a", "2");
+        map.replace("a", "2", "3");
+        map.remove("a", "3");
+        map.remove("a");
+        map.put("b", "1");
+        map.put("c", "1");
+        map.put("d", "1");
+        map.cleanUp();
+        map.clear();
+
+        assertEquals("a=1 a=2 a=3 b=1 c=1 d=1 ", removed.toString());
+    }
+
+    @Test
+    public void concurrentCapacityTest() throws InterruptedException {
+        final int threads = 8;
+        final int capacity = 100;
+        final ConcurrentLruMap<Integer, Integer> map = new ConcurrentLruMap<Integer, Integer>(capacity, 16, threads);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger errors = new AtomicInteger();
+
+        for (int t = 0; t < threads; ++t) {
+            final int seed = t;
+
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 20000; ++i) {
+                            Integer key = (i * 31 + seed) % 1000;
+
+                            if (i % 3 == 0) map.remove(key);
+                            else if (i % 2 == 0) map.put(key, key);
+                            else {
+                                Integer value = map.get(key);
+
+                                if (value != null && !key.equals(value)) errors.incrementAndGet();
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        errors.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        done.await();
+
+        //single threaded write drains everything that is left
+        map.put(-1, -1);
+
+        assertEquals(0, errors.get());
+        assertTrue(map.size() <= capacity);
+        assertFalse(map.size() == 0);
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+abstract public class EarlyExpirationTest {
+    /**
+     * Returns next number on each call, simulating slow load
+     */
+    private static class CountingCallable implements Callable<String> {
+        private int calls;
+
+        @Override
+        public String call() throws Exception {
+            Thread.sleep(2);
+
+            return String.valueOf(++calls);
+        }
+    }
+
+    abstract protected BaseLruCache<String, String> createCache(int capacity, long ttl);
+
+    private BaseLruCache<String, String> createCache(int capacity) {
+        return createCache(capacity, 3600 * 1000);
+    }
+
+    @Test
+    public void ttlJitterTest() {
+        BaseLruCache<String, String> cache = createCache(1000);
+
+        cache.setTtlJitter(0.5);
+
+        long start = System.currentTimeMillis();
+        Set<Long> expirationTimes = new HashSet<Long>();
+
+        for (int i = 0; i < 100; ++i) {
+            cache.put("key" + i, "value", 100000);
+        }
+
+        long end = System.currentTimeMillis();
+
+        for (int i = 0; i < 100; ++i) {
+            long expirationTime = ((ExpiringCacheEntry<String>) cache.getEntry("key" + i)).getExpirationTime();
+
+            assertTrue(expirationTime >= start + 50000);
+            assertTrue(expirationTime <= end + 100000);
+            expirationTimes.add(expirationTime);
+        }
+
+        assertTrue(expirationTimes.size() > 10);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void ttlJitterOutOfRangeTest() {
+        createCache(10).setTtlJitter(1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void negativeEarlyRefreshTest() {
+        createCache(10).setEarlyRefresh(-1);
+    }
+
+    @Test
+    public void earlyRefreshTest() throws Exception {
+        BaseLruCache<String, String> cache = createCache(10);
+
+        CountingCallable callable = new CountingCallable();
+
+        //refresh window is much longer than ttl, so every load refreshes
+        cache.setEarlyRefresh(1e9);
+
+        assertEquals("1", cache.get("key", callable));
+        assertEquals("2", cache.get("key", callable));
+        assertEquals("2", cache.get("key"));
+        assertEquals("3", cache.computeIfAbsent("key", callable));
+    }
+
+    @Test
+    public void earlyRefreshDisabledTest() throws Exception {
+        BaseLruCache<String, String> cache = createCache(10);
+
+        CountingCallable callable = new CountingCallable();
+
+        cache.setEarlyRefresh(0);
+
+        assertEquals("1", cache.get("key", callable));
+        assertEquals("1", cache.get("key", callable));
+    }
+
+    @Test
+    public void earlyRefreshFailureTest() throws Exception {
+        BaseLruCache<String, String> cache = createCache(10);
+
+        cache.setEarlyRefresh(1e9);
+
+        assertEquals("1", cache.get("key", new CountingCallable()));
+        //current value is kept if refresh returns nothing
+        assertEquals("1", cache.get("key", new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Thread.sleep(2);
+
+                return null;
+            }
+        }));
+    }
+
+    @Test
+    public void earlyRefreshExpiringImmediatelyTest() throws Exception {
+        BaseLruCache<String, String> cache = createCache(10);
+
+        cache.setEarlyRefresh(1e9);
+        cache.setExpiry(new Expiry<String, String>() {
+            @Override
+            public long expireAfterCreate(String key, String value, long ttl) {
+                return ttl;
+            }
+
+            @Override
+            public long expireAfterUpdate(String key, String value, long ttl, long currentDuration) {
+                return 0;
+            }
+
+            @Override
+            public long expireAfterRead(String key, String value, long currentDuration) {
+                return currentDuration;
+            }
+        });
+
+        CountingCallable callable = new CountingCallable();
+
+        assertEquals("1", cache.get("key", callable));
+        //refreshed value isn't cached, but superseded one is dropped
+        assertEquals("2", cache.get("key", callable));
+        assertNull(cache.get("key"));
+    }
+}
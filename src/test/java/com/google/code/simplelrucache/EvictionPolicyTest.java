@@ -0,0 +1,130 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+abstract public class EvictionPolicyTest {
+    protected static final int capacity = 10;
+
+    abstract protected EvictionPolicy<Integer> createPolicy(int capacity);
+
+    /**
+     * Simulates cache with given policy
+     *
+     * @return number of hits
+     */
+    protected int simulate(EvictionPolicy<Integer> policy, int[] trace) {
+        Set<Integer> resident = new HashSet<Integer>();
+        int hits = 0;
+
+        for (int key : trace) {
+            if (resident.contains(key)) {
+                ++hits;
+                policy.recordAccess(key);
+            } else {
+                resident.add(key);
+                policy.recordInsert(key);
+
+                while (resident.size() > capacity) {
+                    Integer victim = policy.selectVictim();
+
+                    assertTrue(resident.remove(victim));
+                }
+            }
+        }
+
+        return hits;
+    }
+
+    @Test
+    public void victimIsResidentTest() {
+        int[] trace = new int[1000];
+
+        for (int i = 0; i < trace.length; ++i) {
+            trace[i] = (i * 7919) % 37;
+        }
+
+        simulate(createPolicy(capacity), trace);
+    }
+
+    @Test
+    public void removeTest() {
+        EvictionPolicy<Integer> policy = createPolicy(capacity);
+
+        policy.recordInsert(1);
+        policy.recordInsert(2);
+        policy.recordAccess(2);
+        policy.recordRemove(1);
+
+        assertEquals(Integer.valueOf(2), policy.selectVictim());
+    }
+
+    @Test
+    public void clearTest() {
+        EvictionPolicy<Integer> policy = createPolicy(capacity);
+
+        policy.recordInsert(1);
+        policy.clear();
+        policy.recordInsert(2);
+
+        assertEquals(Integer.valueOf(2), policy.selectVictim());
+    }
+
+    /**
+     * Hot keys accessed in bursts separated by scans as long as capacity
+     */
+    protected int[] scanTrace() {
+        int[] trace = new int[30 * (40 + capacity)];
+        int scanKey = 1000;
+        int i = 0;
+
+        for (int block = 0; block < 30; ++block) {
+            for (int j = 0; j < 40; ++j) {
+                trace[i++] = j % 5;
+            }
+
+            for (int j = 0; j < capacity; ++j) {
+                trace[i++] = scanKey++;
+            }
+        }
+
+        return trace;
+    }
+
+    /**
+     * Scan resistant policy keeps hot keys through scans, which LRU loses on
+     * every scan
+     */
+    @Test
+    public void scanHitRatioTest() {
+        int[] trace = scanTrace();
+        int hits = simulate(createPolicy(capacity), trace);
+        int lruHits = simulate(new LruEvictionPolicy<Integer>(), trace);
+
+        assertTrue(hits > lruHits);
+    }
+}
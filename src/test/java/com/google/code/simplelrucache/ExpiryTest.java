@@ -0,0 +1,146 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+abstract public class ExpiryTest {
+    /**
+     * Takes ttl from value ("value:ttl"), keeps remaining lifetime on update
+     * and prolongs entry to readTtl on read if it's set
+     */
+    private static class ValueExpiry implements Expiry<String, String> {
+        private final long readTtl;
+
+        ValueExpiry(long readTtl) {
+            this.readTtl = readTtl;
+        }
+
+        private long parse(String value) {
+            return Long.parseLong(value.substring(value.indexOf(':') + 1));
+        }
+
+        @Override
+        public long expireAfterCreate(String key, String value, long ttl) {
+            return parse(value);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, String value, long ttl, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, String value, long currentDuration) {
+            return readTtl > 0 ? readTtl : currentDuration;
+        }
+    }
+
+    abstract protected BaseLruCache<String, String> createCache(int capacity, long ttl);
+
+    private BaseLruCache<String, String> createCache(long readTtl) {
+        BaseLruCache<String, String> cache = createCache(10, 3600 * 1000);
+
+        cache.setExpiry(new ValueExpiry(readTtl));
+
+        return cache;
+    }
+
+    @Test
+    public void expireAfterCreateTest() throws InterruptedException {
+        BaseLruCache<String, String> cache = createCache(0);
+
+        cache.put("short", "value:20");
+        cache.put("long", "value:3600000");
+
+        assertEquals("value:20", cache.get("short"));
+
+        Thread.sleep(40);
+
+        assertNull(cache.get("short"));
+        assertEquals("value:3600000", cache.get("long"));
+    }
+
+    @Test
+    public void computeIfAbsentTest() throws Exception {
+        BaseLruCache<String, String> cache = createCache(0);
+
+        String value = cache.computeIfAbsent("key", new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "loaded:20";
+            }
+        });
+
+        assertEquals("loaded:20", value);
+        assertTrue(cache.contains("key"));
+
+        Thread.sleep(40);
+
+        assertFalse(cache.contains("key"));
+    }
+
+    @Test
+    public void expireAfterUpdateTest() throws InterruptedException {
+        BaseLruCache<String, String> cache = createCache(0);
+
+        cache.put("key", "value:20");
+        //lifetime of replaced value is kept
+        cache.put("key", "other:3600000");
+
+        assertTrue(cache.replace("key", "other:3600000", "next:3600000"));
+        assertEquals("next:3600000", cache.get("key"));
+
+        Thread.sleep(40);
+
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void expireAfterReadTest() throws InterruptedException {
+        BaseLruCache<String, String> cache = createCache(3600 * 1000);
+
+        cache.put("key", "value:20");
+
+        assertEquals("value:20", cache.get("key"));
+
+        Thread.sleep(40);
+
+        assertEquals("value:20", cache.get("key"));
+    }
+
+    @Test
+    public void immediateExpirationTest() {
+        BaseLruCache<String, String> cache = createCache(0);
+
+        cache.put("key", "value:0");
+
+        assertFalse(cache.contains("key"));
+        assertNull(cache.putIfAbsent("key", "value:-5"));
+        assertEquals(0, cache.getSize());
+    }
+}
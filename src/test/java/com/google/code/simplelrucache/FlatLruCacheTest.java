@@ -0,0 +1,63 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class FlatLruCacheTest extends OrderedLruCacheTest {
+    @Override
+    protected OrderedLruCache<String, String> createCache(int capacity, long ttl) {
+        return new FlatLruCache<String, String>(capacity, ttl);
+    }
+
+    @Test
+    public void randomOperationsTest() {
+        FlatLruCache<Integer, Integer> cache = new FlatLruCache<Integer, Integer>(100, 3600 * 1000);
+        SynchronizedLruCache<Integer, Integer> expected = new SynchronizedLruCache<Integer, Integer>(100, 3600 * 1000);
+        Random random = new Random(1);
+
+        //removals in the middle of probe sequences shift later entries back
+        for (int i = 0; i < 100000; ++i) {
+            Integer key = random.nextInt(300) * 1024;
+
+            switch (random.nextInt(3)) {
+                case 0:
+                    cache.put(key, i);
+                    expected.put(key, i);
+                    break;
+                case 1:
+                    assertEquals(expected.get(key), cache.get(key));
+                    break;
+                case 2:
+                    cache.remove(key);
+                    expected.remove(key);
+                    break;
+            }
+
+            assertEquals(expected.getSize(), cache.getSize());
+        }
+
+        assertEquals(expected.coldest(100), cache.coldest(100));
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class HotKeyTrackerTest {
+    @Test
+    public void topKeysTest() {
+        HotKeyTracker<String> tracker = new HotKeyTracker<String>(3, 1);
+
+        for (int i = 0; i < 1000; ++i) {
+            tracker.record("hot0");
+            if (i % 2 == 0) tracker.record("hot1");
+            if (i % 4 == 0) tracker.record("hot2");
+            tracker.record("cold" + i);
+        }
+
+        HotKeyTracker.Snapshot<String> snapshot = tracker.snapshot();
+        List<HotKeyTracker.HotKey<String>> hotKeys = snapshot.getHotKeys();
+
+        assertEquals(3, hotKeys.size());
+        assertEquals("hot0", hotKeys.get(0).getKey());
+        assertEquals("hot1", hotKeys.get(1).getKey());
+        assertEquals("hot2", hotKeys.get(2).getKey());
+        //count-min sketch never underestimates
+        assertTrue(hotKeys.get(0).getCount() >= 1000);
+        assertTrue(hotKeys.get(0).getCount() < 1100);
+        assertTrue(hotKeys.get(0).getRate() > 0);
+        assertEquals(2750, snapshot.getReadCount());
+    }
+
+    @Test
+    public void sampledTest() {
+        HotKeyTracker<Integer> tracker = new HotKeyTracker<Integer>(2);
+
+        for (int i = 0; i < 100000; ++i) {
+            tracker.record(i % 10 == 0 ? 0 : i % 3 == 0 ? 1 : i);
+        }
+
+        List<HotKeyTracker.HotKey<Integer>> hotKeys = tracker.getHotKeys();
+
+        assertEquals(2, hotKeys.size());
+        assertEquals(Integer.valueOf(1), hotKeys.get(0).getKey());
+        assertEquals(Integer.valueOf(0), hotKeys.get(1).getKey());
+        assertTrue(hotKeys.get(1).getCount() > 5000 && hotKeys.get(1).getCount() < 20000);
+    }
+
+    @Test
+    public void agingTest() {
+        HotKeyTracker<String> tracker = new HotKeyTracker<String>(1, 1);
+        int aging = 1024 * HotKeyTracker.AGING_FACTOR;
+
+        for (int i = 0; i < aging; ++i) {
+            tracker.record(i % 2 == 0 ? "old" : "cold" + i);
+        }
+
+        //halved counts of old key are overtaken by new traffic
+        for (int i = 0; i < aging / 2; ++i) {
+            tracker.record("new");
+        }
+
+        assertEquals("new", tracker.getHotKeys().get(0).getKey());
+    }
+
+    @Test
+    public void singleReadsNotTrackedTest() {
+        HotKeyTracker<String> tracker = new HotKeyTracker<String>(10, 1);
+
+        for (int i = 0; i < 100; ++i) {
+            tracker.record("key" + i);
+        }
+
+        assertTrue(tracker.getHotKeys().isEmpty());
+        assertEquals(100, tracker.snapshot().getReadCount());
+
+        tracker.record("key0");
+
+        assertEquals("key0", tracker.getHotKeys().get(0).getKey());
+    }
+
+    @Test
+    public void cacheTest() throws Exception {
+        HotKeyTracker<String> tracker = new HotKeyTracker<String>(1, 1);
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(10, 1000);
+
+        cache.setHotKeyTracker(tracker);
+
+        for (int i = 0; i < 10; ++i) {
+            cache.put("key" + i, "value");
+            cache.get("key");
+            cache.get("key" + i);
+        }
+
+        cache.computeIfAbsent("key", new Callable<String>() {
+            @Override
+            public String call() {
+                return "value";
+            }
+        });
+
+        assertEquals("key", tracker.getHotKeys().get(0).getKey());
+        assertEquals(11, tracker.getHotKeys().get(0).getCount());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void invalidSampleRateTest() {
+        new HotKeyTracker<String>(10, 0);
+    }
+}
@@ -20,7 +20,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -214,4 +217,126 @@ abstract public class LruCacheTest {
             assertFalse(cache.contains(keys[i]));
         }
     }
+
+    @Test
+    public void putIfAbsentTest() throws InterruptedException {
+        LruCache<String, String> cache = createCache(capacity, ttl);
+
+        assertNull(cache.putIfAbsent(key, value));
+        assertEquals(value, cache.putIfAbsent(key, "other"));
+        assertEquals(value, cache.get(key));
+
+        //expired entry is treated as absent
+        cache.put(key, value, 10);
+        Thread.sleep(20);
+
+        assertNull(cache.putIfAbsent(key, "other"));
+        assertEquals("other", cache.get(key));
+    }
+
+    @Test
+    public void computeIfAbsentTest() throws Exception {
+        LruCache<String, String> cache = createCache(capacity, ttl);
+
+        assertEquals(SimpleCallable.str, cache.computeIfAbsent(key, new SimpleCallable()));
+        assertEquals(SimpleCallable.str, cache.get(key));
+
+        cache.put(key, value);
+
+        assertEquals(value, cache.computeIfAbsent(key, new SimpleCallable()));
+        assertEquals(value, cache.get(key, new SimpleCallable()));
+    }
+
+    @Test
+    public void computeIfPresentTest() throws Exception {
+        LruCache<String, String> cache = createCache(capacity, ttl);
+        ValueUpdater<String, String> appender = new ValueUpdater<String, String>() {
+            @Override
+            public String update(String key, String value) {
+                return value + key;
+            }
+        };
+
+        assertNull(cache.computeIfPresent(key, appender));
+        assertFalse(cache.contains(key));
+
+        cache.put(key, value);
+
+        assertEquals(value + key, cache.computeIfPresent(key, appender));
+        assertEquals(value + key, cache.get(key));
+
+        assertNull(cache.computeIfPresent(key, new ValueUpdater<String, String>() {
+            @Override
+            public String update(String key, String value) {
+                return null;
+            }
+        }));
+        assertFalse(cache.contains(key));
+    }
+
+    @Test
+    public void replaceTest() {
+        LruCache<String, String> cache = createCache(capacity, ttl);
+
+        assertFalse(cache.replace(key, value, "other"));
+
+        cache.put(key, value);
+
+        assertFalse(cache.replace(key, "other", "another"));
+        assertTrue(cache.replace(key, value, "other"));
+        assertEquals("other", cache.get(key));
+    }
+
+    @Test
+    public void conditionalRemoveTest() {
+        LruCache<String, String> cache = createCache(capacity, ttl);
+
+        assertFalse(cache.remove(key, value));
+
+        cache.put(key, value);
+
+        assertFalse(cache.remove(key, "other"));
+        assertTrue(cache.contains(key));
+        assertTrue(cache.remove(key, value));
+        assertFalse(cache.contains(key));
+    }
+
+    @Test
+    public void concurrentPutIfAbsentTest() throws InterruptedException {
+        final LruCache<String, String> cache = createCache(capacity, ttl);
+        final int threads = 8;
+        final Set<String> seen = new HashSet<String>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; ++t) {
+            final String threadValue = "value" + t;
+
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+
+                        String current = cache.putIfAbsent(key, threadValue);
+
+                        synchronized (seen) {
+                            seen.add(current == null ? threadValue : current);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        start.countDown();
+        done.await();
+
+        //every thread observed the same winner
+        assertEquals(1, seen.size());
+        assertEquals(seen.iterator().next(), cache.get(key));
+    }
 }
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class LruEvictionPolicyTest extends EvictionPolicyTest {
+    @Override
+    protected EvictionPolicy<Integer> createPolicy(int capacity) {
+        return new LruEvictionPolicy<Integer>();
+    }
+
+    /**
+     * LRU isn't scan resistant - every scan flushes all 5 hot keys, so each
+     * block starts with 5 misses
+     */
+    @Override
+    @Test
+    public void scanHitRatioTest() {
+        int[] trace = scanTrace();
+
+        assertEquals(30 * (40 - 5), simulate(createPolicy(capacity), trace));
+    }
+}
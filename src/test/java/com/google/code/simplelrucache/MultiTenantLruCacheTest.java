@@ -0,0 +1,127 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class MultiTenantLruCacheTest extends LruCacheTest {
+    @Override
+    protected LruCache<String, String> createCache(int capacity, long ttl) {
+        return new MultiTenantLruCache<String, String>(capacity, ttl).addTenant("tenant", 0, capacity);
+    }
+
+    private static void fill(LruCache<String, String> cache, String prefix, int count) {
+        for (int i = 0; i < count; ++i) {
+            cache.put(prefix + i, "value");
+        }
+    }
+
+    @Test
+    public void sharedBudgetTest() {
+        MultiTenantLruCache<String, String> cache = new MultiTenantLruCache<String, String>(100, 3600 * 1000);
+        LruCache<String, String> busy = cache.addTenant("busy", 10, 100);
+        LruCache<String, String> idle = cache.addTenant("idle", 10, 100);
+
+        //busy tenant uses budget which idle one doesn't need
+        fill(busy, "busy", 90);
+        assertEquals(90, busy.getSize());
+
+        fill(idle, "idle", 40);
+        assertEquals(100, cache.getSize());
+        assertEquals(40, idle.getSize());
+        assertEquals(60, busy.getSize());
+
+        //tenant over its share evicts its own least recently used entries
+        assertTrue(busy.contains("busy89"));
+        assertFalse(busy.contains("busy0"));
+
+        fill(busy, "more", 200);
+        assertEquals(40, idle.getSize());
+        assertEquals(60, busy.getSize());
+
+        //idle tenant grows back to its fair share
+        fill(idle, "again", 100);
+        assertEquals(50, cache.getFairShare("idle"));
+        assertEquals(50, idle.getSize());
+        assertEquals(50, busy.getSize());
+    }
+
+    @Test
+    public void minimumTest() {
+        MultiTenantLruCache<String, String> cache = new MultiTenantLruCache<String, String>(100, 3600 * 1000);
+        LruCache<String, String> small = cache.addTenant("small", 0, 100);
+        LruCache<String, String> guaranteed = cache.addTenant("guaranteed", 70, 100);
+
+        assertEquals(15, cache.getFairShare("small"));
+        assertEquals(85, cache.getFairShare("guaranteed"));
+
+        fill(guaranteed, "guaranteed", 75);
+        fill(small, "small", 100);
+
+        assertEquals(100, cache.getSize());
+        assertEquals(75, guaranteed.getSize());
+        assertEquals(25, small.getSize());
+    }
+
+    @Test
+    public void maximumTest() {
+        MultiTenantLruCache<String, String> cache = new MultiTenantLruCache<String, String>(100, 3600 * 1000);
+        LruCache<String, String> tenant = cache.addTenant("tenant", 0, 20);
+
+        fill(tenant, "key", 50);
+
+        assertEquals(20, tenant.getSize());
+    }
+
+    @Test
+    public void tenantsTest() {
+        MultiTenantLruCache<String, String> cache = new MultiTenantLruCache<String, String>(100, 3600 * 1000);
+        LruCache<String, String> tenant = cache.addTenant("a", 60, 100);
+
+        try {
+            cache.addTenant("b", 50, 100);
+            fail();
+        } catch (IllegalArgumentException e) {
+            //minimums exceed capacity
+        }
+
+        try {
+            cache.addTenant("a", 0, 100);
+            fail();
+        } catch (IllegalArgumentException e) {
+            //duplicate name
+        }
+
+        fill(tenant, "key", 10);
+        assertTrue(cache.removeTenant("a"));
+        assertFalse(cache.removeTenant("a"));
+        assertNull(cache.getTenant("a"));
+        assertEquals(0, tenant.getSize());
+
+        cache.addTenant("b", 50, 100);
+        assertEquals(1, cache.getTenantNames().size());
+    }
+}
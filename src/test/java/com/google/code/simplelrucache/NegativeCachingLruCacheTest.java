@@ -0,0 +1,109 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class NegativeCachingLruCacheTest extends LruCacheTest {
+    private static class CountingCallable implements Callable<String> {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final String result;
+
+        CountingCallable(String result) {
+            this.result = result;
+        }
+
+        @Override
+        public String call() throws Exception {
+            calls.incrementAndGet();
+            return result;
+        }
+    }
+
+    @Override
+    protected LruCache<String, String> createCache(int capacity, long ttl) {
+        return new NegativeCachingLruCache<String, String>(new SynchronizedLruCache<String, String>(capacity, ttl), 4, 10);
+    }
+
+    @Test
+    public void absentKeyNotReloadedTest() throws Exception {
+        //absent ttl long enough not to pass between first two loads on busy machine
+        NegativeCachingLruCache<String, String> cache = new NegativeCachingLruCache<String, String>(new SynchronizedLruCache<String, String>(16, 3600 * 1000), 4, 200);
+        CountingCallable callable = new CountingCallable(null);
+
+        assertNull(cache.get("aa", callable));
+        assertNull(cache.get("aa", callable));
+        assertEquals(1, callable.calls.get());
+
+        assertTrue(cache.isAbsent("aa"));
+        assertFalse(cache.contains("aa"));
+        assertNull(cache.get("aa"));
+        assertEquals(0, cache.getSize());
+
+        Thread.sleep(400);
+
+        assertFalse(cache.isAbsent("aa"));
+        assertNull(cache.get("aa", callable));
+        assertEquals(2, callable.calls.get());
+    }
+
+    @Test
+    public void putDuringNullLoadTest() throws Exception {
+        final NegativeCachingLruCache<String, String> cache = (NegativeCachingLruCache<String, String>) createCache(16, 3600 * 1000);
+
+        //value is put concurrently with load which finds nothing
+        assertNull(cache.get("aa", new Callable<String>() {
+            @Override
+            public String call() {
+                cache.put("aa", "aaa");
+                return null;
+            }
+        }));
+
+        assertFalse(cache.isAbsent("aa"));
+        assertEquals("aaa", cache.get("aa"));
+    }
+
+    @Test
+    public void putClearsAbsentMarkerTest() throws Exception {
+        NegativeCachingLruCache<String, String> cache = (NegativeCachingLruCache<String, String>) createCache(16, 3600 * 1000);
+
+        cache.get("aa", new CountingCallable(null));
+        cache.put("aa", "aaa");
+
+        assertFalse(cache.isAbsent("aa"));
+        assertEquals("aaa", cache.get("aa", new CountingCallable(null)));
+
+        cache.remove("aa");
+        cache.get("bb", new CountingCallable(null));
+        cache.clear();
+
+        assertFalse(cache.isAbsent("bb"));
+        assertNull(cache.get("aa"));
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+abstract public class OrderedLruCacheTest extends LruCacheTest {
+    @Override
+    abstract protected OrderedLruCache<String, String> createCache(int capacity, long ttl);
+
+    private OrderedLruCache<String, String> createOrderedCache() {
+        OrderedLruCache<String, String> cache = createCache(10, 3600 * 1000);
+
+        for (String key : new String[] {"aa", "bb", "cc", "dd"}) {
+            cache.put(key, key + key);
+        }
+
+        cache.get("aa");
+
+        return cache;
+    }
+
+    @Test
+    public void hottestTest() {
+        OrderedLruCache<String, String> cache = createOrderedCache();
+
+        assertEquals(Arrays.asList("aa", "dd"), new ArrayList<String>(cache.hottest(2).keySet()));
+        assertEquals("aaaa", cache.hottest(1).get("aa"));
+        assertEquals(4, cache.hottest(10).size());
+    }
+
+    @Test
+    public void coldestTest() {
+        OrderedLruCache<String, String> cache = createOrderedCache();
+
+        assertEquals(Arrays.asList("bb", "cc", "dd"), new ArrayList<String>(cache.coldest(3).keySet()));
+        assertEquals(Arrays.asList("bb", "cc", "dd", "aa"), new ArrayList<String>(cache.coldest(10).keySet()));
+    }
+
+    @Test
+    public void expiredEntriesSkippedTest() throws InterruptedException {
+        OrderedLruCache<String, String> cache = createOrderedCache();
+
+        cache.put("ee", "eeee", 10);
+        Thread.sleep(20);
+
+        assertFalse(cache.hottest(10).containsKey("ee"));
+        assertFalse(cache.coldest(10).containsKey("ee"));
+
+        for (Map.Entry<String, String> entry : cache) {
+            assertFalse("ee".equals(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void limitCountsOnlyValidEntriesTest() throws InterruptedException {
+        OrderedLruCache<String, String> cache = createCache(10, 3600 * 1000);
+
+        cache.put("xx", "xxxx", 10);
+
+        for (String key : new String[] {"aa", "bb", "cc", "dd"}) {
+            cache.put(key, key + key);
+        }
+
+        cache.put("yy", "yyyy", 10);
+        cache.put("zz", "zzzz", 10);
+        Thread.sleep(20);
+
+        assertEquals(Arrays.asList("aa", "bb"), new ArrayList<String>(cache.coldest(2).keySet()));
+        assertEquals(Arrays.asList("dd", "cc"), new ArrayList<String>(cache.hottest(2).keySet()));
+    }
+
+    @Test
+    public void iteratorTest() {
+        OrderedLruCache<String, String> cache = createOrderedCache();
+        Map<String, String> entries = new HashMap<String, String>();
+
+        for (Map.Entry<String, String> entry : cache) {
+            entries.put(entry.getKey(), entry.getValue());
+
+            //modification during iteration is allowed
+            cache.remove(entry.getKey());
+        }
+
+        assertEquals(4, entries.size());
+        assertEquals("bbbb", entries.get("bb"));
+        assertTrue(cache.isEmpty());
+
+        List<String> keys = new ArrayList<String>();
+        for (Map.Entry<String, String> entry : cache) {
+            keys.add(entry.getKey());
+        }
+
+        assertTrue(keys.isEmpty());
+    }
+}
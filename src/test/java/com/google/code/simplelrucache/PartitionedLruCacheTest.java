@@ -0,0 +1,147 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class PartitionedLruCacheTest extends LruCacheTest {
+    private static final String[] nodes = {"node0", "node1", "node2"};
+
+    @Override
+    protected LruCache<String, String> createCache(int capacity, long ttl) {
+        return new PartitionedLruCache<String, String>("node0", new SynchronizedLruCache<String, String>(capacity, ttl), new LoopbackCacheTransport<String, String>(), Collections.<String>emptyList());
+    }
+
+    private Map<String, PartitionedLruCache<String, String>> createCluster(int capacity) {
+        LoopbackCacheTransport<String, String> transport = new LoopbackCacheTransport<String, String>();
+        Map<String, PartitionedLruCache<String, String>> cluster = new HashMap<String, PartitionedLruCache<String, String>>();
+
+        for (String node : nodes) {
+            LruCache<String, String> cache = new ConcurrentLruCache<String, String>(capacity, 3600 * 1000);
+
+            transport.register(node, cache);
+            cluster.put(node, new PartitionedLruCache<String, String>(node, cache, transport, Arrays.asList(nodes)));
+        }
+
+        return cluster;
+    }
+
+    @Test
+    public void routingTest() {
+        Map<String, PartitionedLruCache<String, String>> cluster = createCluster(100);
+
+        cluster.get("node0").put("key", "value");
+
+        for (String node : nodes) {
+            assertEquals("value", cluster.get(node).get("key"));
+            assertEquals(cluster.get("node0").getOwner("key"), cluster.get(node).getOwner("key"));
+        }
+
+        assertEquals(1, cluster.get("node1").getSize());
+
+        cluster.get("node2").remove("key");
+
+        assertNull(cluster.get("node0").get("key"));
+    }
+
+    @Test
+    public void aggregateCapacityTest() {
+        PartitionedLruCache<String, String> cache = createCluster(1000).get("node1");
+        Map<String, Integer> owned = new HashMap<String, Integer>();
+
+        for (int i = 0; i < 1500; ++i) {
+            String key = "key" + i;
+            String owner = cache.getOwner(key);
+
+            cache.put(key, "value" + i);
+            owned.put(owner, owned.containsKey(owner) ? owned.get(owner) + 1 : 1);
+        }
+
+        assertEquals(3000, cache.getCapacity());
+        assertEquals(1500, cache.getSize());
+
+        for (String node : nodes) {
+            assertTrue(owned.get(node) > 300 && owned.get(node) < 700);
+        }
+    }
+
+    @Test
+    public void removeNodeTest() {
+        PartitionedLruCache<String, String> cache = createCluster(100).get("node0");
+        Map<String, String> owners = new HashMap<String, String>();
+
+        for (int i = 0; i < 1000; ++i) {
+            owners.put("key" + i, cache.getOwner("key" + i));
+        }
+
+        cache.removeNode("node2");
+
+        assertEquals(2, cache.getNodes().size());
+
+        //only keys of removed node move
+        for (Map.Entry<String, String> entry : owners.entrySet()) {
+            String owner = cache.getOwner(entry.getKey());
+
+            if (entry.getValue().equals("node2")) assertTrue(!owner.equals("node2"));
+            else assertEquals(entry.getValue(), owner);
+        }
+
+        cache.addNode("node2");
+
+        for (Map.Entry<String, String> entry : owners.entrySet()) {
+            assertEquals(entry.getValue(), cache.getOwner(entry.getKey()));
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void removeLocalNodeTest() {
+        createCluster(100).get("node0").removeNode("node0");
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void unknownNodeTest() {
+        PartitionedLruCache<String, String> cache = new PartitionedLruCache<String, String>("node0", new SynchronizedLruCache<String, String>(10, 1000), new LoopbackCacheTransport<String, String>(), Arrays.asList(nodes));
+
+        for (int i = 0; i < 100; ++i) {
+            cache.get("key" + i);
+        }
+    }
+
+    @Test
+    public void localCacheTest() {
+        LruCache<String, String> local = new SynchronizedLruCache<String, String>(10, 1000);
+        PartitionedLruCache<String, String> cache = new PartitionedLruCache<String, String>("node0", local, new LoopbackCacheTransport<String, String>(), Collections.<String>emptyList());
+        String value = "value";
+
+        cache.put("key", value);
+
+        assertSame(value, local.get("key"));
+    }
+}
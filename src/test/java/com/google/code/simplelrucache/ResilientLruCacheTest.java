@@ -0,0 +1,184 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class ResilientLruCacheTest extends LruCacheTest {
+    @Override
+    protected LruCache<String, String> createCache(int capacity, long ttl) {
+        return new ResilientLruCache<String, String>(capacity, ttl, 0, 1000);
+    }
+
+    private static Callable<String> failing(final AtomicInteger calls) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                calls.incrementAndGet();
+
+                throw new IOException("backend down");
+            }
+        };
+    }
+
+    private static Callable<String> blocking(final CountDownLatch release, final String value) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                release.await();
+
+                return value;
+            }
+        };
+    }
+
+    private static void awaitValue(LruCache<String, String> cache, String key, String value) throws InterruptedException {
+        for (int i = 0; i < 100 && !value.equals(cache.get(key)); ++i) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(value, cache.get(key));
+    }
+
+    @Test
+    public void putIfAbsentOverStaleValueTest() throws Exception {
+        ResilientLruCache<String, String> cache = new ResilientLruCache<String, String>(10, 50, 50, 1000);
+
+        cache.put("key", "value");
+        Thread.sleep(70);
+
+        //stale value is replaced, new one is kept for its own ttl rather than default one
+        assertNull(cache.putIfAbsent("key", "value2", 3600 * 1000));
+        Thread.sleep(150);
+
+        assertEquals("value2", cache.get("key"));
+    }
+
+    @Test
+    public void staleOnErrorTest() throws Exception {
+        ResilientLruCache<String, String> cache = new ResilientLruCache<String, String>(10, 3600 * 1000, 3600 * 1000, 1000);
+        AtomicInteger calls = new AtomicInteger();
+
+        cache.put("key", "stale", 1);
+        Thread.sleep(10);
+
+        assertNull(cache.get("key"));
+        assertEquals("stale", cache.get("key", failing(calls)));
+        assertEquals(1, cache.getStaleHits());
+        assertEquals(1, cache.getLoadFailures());
+
+        //failed load is retried in background
+        for (int i = 0; i < 100 && calls.get() < 2; ++i) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void staleOnTimeoutTest() throws Exception {
+        ResilientLruCache<String, String> cache = new ResilientLruCache<String, String>(10, 3600 * 1000, 3600 * 1000, 50);
+        CountDownLatch release = new CountDownLatch(1);
+
+        cache.put("key", "stale", 1);
+        Thread.sleep(10);
+
+        assertEquals("stale", cache.get("key", blocking(release, "fresh")));
+        assertEquals(1, cache.getLoadTimeouts());
+        assertEquals(1, cache.getStaleHits());
+
+        //slow load completes in background
+        release.countDown();
+        awaitValue(cache, "key", "fresh");
+    }
+
+    @Test
+    public void noStaleValueTest() throws Exception {
+        ResilientLruCache<String, String> cache = new ResilientLruCache<String, String>(10, 3600 * 1000, 3600 * 1000, 50);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            cache.get("key", failing(new AtomicInteger()));
+            fail();
+        } catch (IOException e) {
+            //loader exception is rethrown
+        }
+
+        try {
+            cache.get("key", blocking(release, "value"));
+            fail();
+        } catch (TimeoutException e) {
+            //nothing to serve
+        }
+
+        release.countDown();
+        awaitValue(cache, "key", "value");
+    }
+
+    @Test
+    public void sharedLoadTest() throws Exception {
+        final ResilientLruCache<String, String> cache = new ResilientLruCache<String, String>(10, 3600 * 1000, 0, 1000);
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        cache.get("key", new Callable<String>() {
+                            @Override
+                            public String call() throws Exception {
+                                calls.incrementAndGet();
+                                release.await();
+
+                                return "value";
+                            }
+                        });
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        Thread.sleep(50);
+        release.countDown();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals("value", cache.get("key"));
+    }
+}
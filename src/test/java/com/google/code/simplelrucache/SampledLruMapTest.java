@@ -0,0 +1,89 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class SampledLruMapTest {
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorZeroCapacityTest() {
+        new SampledLruMap<String, String>(0, 5, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorZeroSampleSizeTest() {
+        new SampledLruMap<String, String>(5, 0, 4);
+    }
+
+    @Test
+    public void capacityTest() {
+        SampledLruMap<Integer, Integer> map = new SampledLruMap<Integer, Integer>(50, 5, 4);
+
+        for (int i = 0; i < 500; ++i) {
+            map.put(i, i);
+        }
+
+        assertEquals(50, map.size());
+    }
+
+    @Test
+    public void fullSampleEvictsOldestTest() {
+        //sample as big as map finds exact LRU entry, samples may repeat so use many
+        SampledLruMap<Integer, Integer> map = new SampledLruMap<Integer, Integer>(4, 64, 4);
+
+        for (int i = 0; i < 4; ++i) {
+            map.put(i, i);
+        }
+
+        map.get(0);
+        map.put(4, 4);
+
+        assertEquals(Integer.valueOf(0), map.get(0));
+        assertNull(map.get(1));
+    }
+
+    @Test
+    public void expiredEvictedFirstTest() {
+        SampledLruMap<Integer, Integer> map = new SampledLruMap<Integer, Integer>(4, 64, 4) {
+            @Override
+            protected boolean isExpired(Integer value) {
+                return value < 0;
+            }
+        };
+
+        map.put(0, 0);
+        map.put(1, 1);
+        map.put(2, -2);
+        map.put(3, 3);
+        map.put(4, 4);
+
+        assertNull(map.get(2));
+        assertEquals(Integer.valueOf(0), map.get(0));
+        assertEquals(4, map.size());
+
+        assertEquals(Integer.valueOf(1), map.remove(1));
+        assertNull(map.remove(1));
+        map.clear();
+        assertEquals(0, map.size());
+    }
+}
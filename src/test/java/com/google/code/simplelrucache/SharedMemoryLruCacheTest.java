@@ -0,0 +1,337 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class SharedMemoryLruCacheTest {
+    private File file;
+    private List<SharedMemoryLruCache<String, String>> caches;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("shared-lru-cache", ".bin");
+        file.delete();
+        caches = new ArrayList<SharedMemoryLruCache<String, String>>();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (SharedMemoryLruCache<String, String> cache : caches) {
+            cache.close();
+        }
+
+        file.delete();
+    }
+
+    private static SharedMemoryLruCache<String, String> create(File file, int capacity, long ttl) throws IOException {
+        return new SharedMemoryLruCache<String, String>(file, capacity, 64, ttl, new StringCodec(), new StringCodec());
+    }
+
+    private SharedMemoryLruCache<String, String> open(int capacity, long ttl) throws IOException {
+        SharedMemoryLruCache<String, String> cache = create(file, capacity, ttl);
+
+        caches.add(cache);
+
+        return cache;
+    }
+
+    /**
+     * Writes key0..key31 to cache in file given as first argument, given
+     * number of times or until killed when it's negative
+     */
+    public static class Writer {
+        public static void main(String[] args) throws IOException {
+            SharedMemoryLruCache<String, String> cache = create(new File(args[0]), 16, 3600 * 1000);
+            int rounds = Integer.parseInt(args[1]);
+
+            for (int i = 0; rounds < 0 || i < rounds * 32; ++i) {
+                String key = "key" + i % 32;
+
+                cache.put(key, key + ":" + i);
+            }
+
+            cache.close();
+        }
+    }
+
+    private Process startWriter(int rounds) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Writer.class.getName(), file.getPath(), String.valueOf(rounds)).redirectErrorStream(true).start();
+    }
+
+    @Test
+    public void operationsTest() throws Exception {
+        SharedMemoryLruCache<String, String> cache = open(64, 3600 * 1000);
+
+        assertTrue(cache.isEmpty());
+
+        cache.put("key", "value");
+
+        assertEquals("value", cache.get("key"));
+        assertTrue(cache.contains("key"));
+        assertEquals(1, cache.getSize());
+        assertEquals("value", cache.putIfAbsent("key", "value2"));
+        assertFalse(cache.replace("key", "value2", "value3"));
+        assertTrue(cache.replace("key", "value", "value2"));
+        assertEquals("value2", cache.get("key"));
+        assertFalse(cache.remove("key", "value"));
+        assertTrue(cache.remove("key", "value2"));
+        assertNull(cache.get("key"));
+        assertNull(cache.putIfAbsent("key", "value"));
+        assertEquals("value", cache.get("key"));
+
+        cache.remove("key");
+
+        assertFalse(cache.contains("key"));
+        assertEquals(0, cache.getSize());
+        assertFalse(cache.replace("key", "value", "value2"));
+    }
+
+    @Test
+    public void sharedTest() throws IOException {
+        SharedMemoryLruCache<String, String> first = open(64, 3600 * 1000);
+        SharedMemoryLruCache<String, String> second = open(64, 3600 * 1000);
+
+        first.put("key", "value");
+
+        assertEquals("value", second.get("key"));
+
+        second.put("key", "value2");
+
+        assertEquals("value2", first.get("key"));
+
+        second.clear();
+
+        assertNull(first.get("key"));
+        assertTrue(first.isEmpty());
+    }
+
+    @Test
+    public void reopenTest() throws IOException {
+        open(64, 3600 * 1000).put("key", "value");
+        caches.get(0).close();
+        caches.clear();
+
+        assertEquals("value", open(64, 3600 * 1000).get("key"));
+    }
+
+    @Test
+    public void closeReleasesLocksTest() throws IOException {
+        int lockedFiles = SharedMemoryLruCache.lockedFiles();
+
+        open(64, 3600 * 1000);
+        open(64, 3600 * 1000);
+
+        assertEquals(lockedFiles + 1, SharedMemoryLruCache.lockedFiles());
+
+        caches.get(0).close();
+        caches.get(0).close();
+
+        assertEquals(lockedFiles + 1, SharedMemoryLruCache.lockedFiles());
+
+        caches.get(1).close();
+
+        assertEquals(lockedFiles, SharedMemoryLruCache.lockedFiles());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void layoutMismatchTest() throws IOException {
+        open(64, 3600 * 1000);
+        open(128, 3600 * 1000);
+    }
+
+    @Test
+    public void capacityTest() throws IOException {
+        SharedMemoryLruCache<String, String> cache = open(60, 3600 * 1000);
+
+        assertEquals(64, cache.getCapacity());
+
+        for (int i = 0; i < 1000; ++i) {
+            cache.put("key" + i, "value" + i);
+
+            assertEquals("value" + i, cache.get("key" + i));
+        }
+
+        assertEquals(64, cache.getSize());
+    }
+
+    @Test
+    public void clockTest() throws IOException {
+        SharedMemoryLruCache<String, String> cache = open(8, 3600 * 1000);
+
+        for (int i = 0; i < 8; ++i) {
+            cache.put("key" + i, "value");
+        }
+
+        //referenced entry gets second chance
+        cache.get("key0");
+        cache.put("key8", "value");
+
+        assertEquals("value", cache.get("key0"));
+        assertNull(cache.get("key1"));
+    }
+
+    @Test
+    public void maxEntrySizeTest() throws IOException {
+        SharedMemoryLruCache<String, String> cache = open(64, 3600 * 1000);
+        StringBuilder value = new StringBuilder();
+
+        while (value.length() < 64) value.append("value");
+
+        cache.put("key", "value");
+        cache.put("key", value.toString());
+
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void expirationTest() throws Exception {
+        SharedMemoryLruCache<String, String> cache = open(64, 3600 * 1000);
+
+        cache.put("key", "value", 1);
+        Thread.sleep(10);
+
+        assertNull(cache.get("key"));
+        assertEquals("value", cache.computeIfAbsent("key", new Callable<String>() {
+            @Override
+            public String call() {
+                return "value";
+            }
+        }));
+    }
+
+    @Test
+    public void concurrentTest() throws Exception {
+        final SharedMemoryLruCache<String, String> writer = open(16, 3600 * 1000);
+        final SharedMemoryLruCache<String, String> reader = open(16, 3600 * 1000);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicInteger errors = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int t = 0; t < 4; ++t) {
+            final boolean writes = t % 2 == 0;
+
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; running.get(); ++i) {
+                        String key = "key" + i % 32;
+
+                        if (writes) {
+                            writer.put(key, key + ":" + i);
+                        } else {
+                            String value = reader.get(key);
+
+                            //torn reads would mix keys and values
+                            if (value != null && !value.startsWith(key + ":")) errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        Thread.sleep(500);
+        running.set(false);
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void otherProcessTest() throws Exception {
+        SharedMemoryLruCache<String, String> cache = open(16, 3600 * 1000);
+
+        assertEquals(0, startWriter(1).waitFor());
+        assertEquals("key31:31", cache.get("key31"));
+
+        cache.put("key31", "value");
+
+        assertEquals(0, startWriter(1).waitFor());
+        assertEquals("key31:31", cache.get("key31"));
+    }
+
+    @Test
+    public void killedWriterTest() throws Exception {
+        SharedMemoryLruCache<String, String> cache = open(16, 3600 * 1000);
+        Process writer = startWriter(-1);
+        int errors = 0;
+
+        try {
+            //wait for writer to start
+            for (int i = 0; cache.isEmpty() && i < 1000; ++i) {
+                Thread.sleep(10);
+            }
+
+            assertFalse(cache.isEmpty());
+
+            long deadline = System.currentTimeMillis() + 500;
+
+            for (int i = 0; System.currentTimeMillis() < deadline; ++i) {
+                String key = "key" + i % 32;
+                String value = cache.get(key);
+
+                //torn reads would mix keys and values
+                if (value != null && !value.startsWith(key + ":")) ++errors;
+            }
+        } finally {
+            //most likely kills writer in the middle of write
+            writer.destroy();
+            writer.waitFor();
+        }
+
+        assertEquals(0, errors);
+
+        //slots left by killed writer are reused
+        for (int i = 0; i < 32; ++i) {
+            String key = "key" + i;
+
+            cache.put(key, "value");
+
+            assertEquals("value", cache.get(key));
+        }
+
+        assertEquals(16, cache.getSize());
+    }
+}
@@ -19,9 +19,9 @@ package com.google.code.simplelrucache;
  *
  * @author Damian Momot
  */
-public class SoftReferenceConcurrentLruCacheTest extends LruCacheTest {
+public class SoftReferenceConcurrentLruCacheTest extends OrderedLruCacheTest {
     @Override
-    protected LruCache<String, String> createCache(int capacity, long ttl) {
+    protected OrderedLruCache<String, String> createCache(int capacity, long ttl) {
         return new SoftReferenceConcurrentLruCache<String, String>(capacity, ttl);
     }
 }
@@ -19,9 +19,9 @@ package com.google.code.simplelrucache;
  *
  * @author Damian Momot
  */
-public class SoftReferenceSynchronizedLruCacheTest extends LruCacheTest {
+public class SoftReferenceSynchronizedLruCacheTest extends OrderedLruCacheTest {
     @Override
-    protected LruCache<String, String> createCache(int capacity, long ttl) {
+    protected OrderedLruCache<String, String> createCache(int capacity, long ttl) {
         return new SoftReferenceSynchronizedLruCache<String, String>(capacity, ttl);
     }
 }
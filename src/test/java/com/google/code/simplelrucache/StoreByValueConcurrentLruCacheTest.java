@@ -0,0 +1,37 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class StoreByValueConcurrentLruCacheTest extends StoreByValueTest {
+    @Override
+    protected BaseLruCache<String, String> createCache(int capacity, long ttl) {
+        return new ConcurrentLruCache<String, String>(capacity, ttl);
+    }
+
+    @Override
+    protected void setMaximumWeight(BaseLruCache<String, String> cache, long maximumWeight) {
+        ((ConcurrentLruCache<String, String>) cache).setMaximumWeight(maximumWeight);
+    }
+
+    @Override
+    protected long getWeight(BaseLruCache<String, String> cache) {
+        return ((ConcurrentLruCache<String, String>) cache).getWeight();
+    }
+}
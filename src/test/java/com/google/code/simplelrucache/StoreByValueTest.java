@@ -0,0 +1,110 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+abstract public class StoreByValueTest {
+    private static final DeflateCodec<String> codec = new DeflateCodec<String>(new StringCodec());
+
+    private static String payload(int i) {
+        StringBuilder builder = new StringBuilder();
+
+        for (int j = 0; j < 100; ++j) {
+            builder.append("{\"id\":").append(i).append(",\"index\":").append(j).append("},");
+        }
+
+        return builder.toString();
+    }
+
+    abstract protected BaseLruCache<String, String> createCache(int capacity, long ttl);
+    abstract protected void setMaximumWeight(BaseLruCache<String, String> cache, long maximumWeight);
+    abstract protected long getWeight(BaseLruCache<String, String> cache);
+
+    private BaseLruCache<String, String> createCache(int hotSetSize) {
+        BaseLruCache<String, String> cache = createCache(100, 3600 * 1000);
+
+        cache.setValueCodec(codec, hotSetSize);
+
+        return cache;
+    }
+
+    @Test
+    public void getTest() {
+        BaseLruCache<String, String> cache = createCache(0);
+
+        cache.put("key", payload(1));
+
+        assertTrue(cache.getEntry("key") instanceof CompressedCacheEntry);
+        assertEquals(payload(1), cache.get("key"));
+        //value is decoded on each read
+        assertNotSame(cache.get("key"), cache.get("key"));
+        assertTrue(cache.replace("key", payload(1), payload(2)));
+        assertEquals(payload(2), cache.get("key"));
+    }
+
+    @Test
+    public void hotSetTest() {
+        BaseLruCache<String, String> cache = createCache(2);
+
+        for (int i = 0; i < 3; ++i) {
+            cache.put("key" + i, payload(i));
+        }
+
+        String value = cache.get("key0");
+
+        assertSame(value, cache.get("key0"));
+
+        cache.get("key1");
+        cache.get("key2");
+
+        //key0 was pushed out of hot set
+        assertNotSame(value, cache.get("key0"));
+        assertEquals(value, cache.get("key0"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void negativeHotSetSizeTest() {
+        createCache(-1);
+    }
+
+    @Test
+    public void weightTest() {
+        BaseLruCache<String, String> cache = createCache(0);
+        int weight = codec.encode(payload(0)).length;
+
+        setMaximumWeight(cache, weight * 5 + weight / 2);
+
+        for (int i = 0; i < 20; ++i) {
+            cache.put("key" + i, payload(0));
+        }
+
+        assertEquals(5, cache.getSize());
+        assertEquals(weight * 5, getWeight(cache));
+        assertNull(cache.get("key14"));
+        assertEquals(payload(0), cache.get("key15"));
+    }
+}
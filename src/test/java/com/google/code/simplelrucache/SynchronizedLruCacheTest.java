@@ -19,9 +19,9 @@ package com.google.code.simplelrucache;
  *
  * @author Damian Momot
  */
-public class SynchronizedLruCacheTest extends LruCacheTest {
+public class SynchronizedLruCacheTest extends OrderedLruCacheTest {
     @Override
-    protected LruCache<String, String> createCache(int capacity, long ttl) {
+    protected OrderedLruCache<String, String> createCache(int capacity, long ttl) {
         return new SynchronizedLruCache<String, String>(capacity, ttl);
     }
 }
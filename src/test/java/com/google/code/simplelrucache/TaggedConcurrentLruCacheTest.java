@@ -0,0 +1,140 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class TaggedConcurrentLruCacheTest extends OrderedLruCacheTest {
+    @Override
+    protected OrderedLruCache<String, String> createCache(int capacity, long ttl) {
+        return new TaggedConcurrentLruCache<String, String>(capacity, ttl);
+    }
+
+    @Test
+    public void invalidateTagTest() {
+        TaggedConcurrentLruCache<String, String> cache = new TaggedConcurrentLruCache<String, String>(100, 3600 * 1000);
+
+        cache.put("a", "value", Arrays.asList("tenant1", "product1"));
+        cache.put("b", "value", Collections.singleton("tenant1"));
+        cache.put("c", "value", Collections.singleton("tenant2"));
+        cache.put("d", "value");
+
+        assertEquals(2, cache.getTagSize("tenant1"));
+        assertEquals(2, cache.invalidateTag("tenant1"));
+
+        assertFalse(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertTrue(cache.contains("d"));
+
+        //removed entry left its other groups too
+        assertEquals(0, cache.getTagSize("tenant1"));
+        assertEquals(0, cache.getTagSize("product1"));
+        assertEquals(0, cache.invalidateTag("product1"));
+        assertEquals(1, cache.getTagSize("tenant2"));
+    }
+
+    @Test
+    public void replaceDropsTagsTest() {
+        TaggedConcurrentLruCache<String, String> cache = new TaggedConcurrentLruCache<String, String>(100, 3600 * 1000);
+
+        cache.put("a", "value1", Collections.singleton("tag"));
+        cache.put("a", "value2");
+
+        assertEquals(0, cache.getTagSize("tag"));
+        assertEquals(0, cache.invalidateTag("tag"));
+        assertEquals("value2", cache.get("a"));
+
+        cache.put("a", "value3", Collections.singleton("tag"));
+        assertTrue(cache.replace("a", "value3", "value4"));
+        assertEquals(0, cache.getTagSize("tag"));
+
+        cache.put("a", "value5", Collections.singleton("tag"));
+        cache.put("a", "value6", Collections.singleton("tag"));
+        assertEquals(1, cache.getTagSize("tag"));
+
+        cache.remove("a");
+        assertEquals(0, cache.getTagSize("tag"));
+    }
+
+    @Test
+    public void evictionUpdatesIndexTest() {
+        TaggedConcurrentLruCache<String, String> cache = new TaggedConcurrentLruCache<String, String>(10, 3600 * 1000);
+
+        for (int i = 0; i < 100; ++i) {
+            cache.put("key" + i, "value", Collections.singleton("tag"));
+        }
+
+        cache.cleanUp();
+
+        assertEquals(10, cache.getSize());
+        assertEquals(10, cache.getTagSize("tag"));
+        assertEquals(10, cache.invalidateTag("tag"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void expirationUpdatesIndexTest() throws InterruptedException {
+        TaggedConcurrentLruCache<String, String> cache = new TaggedConcurrentLruCache<String, String>(10, 50);
+
+        cache.put("a", "value", Collections.singleton("tag"));
+        cache.put("b", "value", 3600 * 1000, Collections.singleton("tag"));
+
+        Thread.sleep(100);
+        cache.cleanUp();
+
+        assertEquals(1, cache.getTagSize("tag"));
+
+        cache.clear();
+        assertEquals(0, cache.getTagSize("tag"));
+    }
+
+    @Test
+    public void invalidateIfTest() {
+        TaggedConcurrentLruCache<String, String> cache = new TaggedConcurrentLruCache<String, String>(100, 3600 * 1000);
+
+        for (int i = 0; i < 20; ++i) {
+            cache.put("key" + i, "value" + (i % 2));
+        }
+
+        assertEquals(10, cache.invalidateIf(new EntryFilter<String, String>() {
+            @Override
+            public boolean matches(String key, String value) {
+                return value.equals("value1");
+            }
+        }));
+
+        assertEquals(10, cache.getSize());
+        assertTrue(cache.contains("key0"));
+        assertFalse(cache.contains("key1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullTagTest() {
+        new TaggedConcurrentLruCache<String, String>(10, 3600 * 1000).put("a", "value", Collections.singleton(null));
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class TimeToIdleConcurrentLruCacheTest extends TimeToIdleTest {
+    @Override
+    protected BaseLruCache<String, String> createCache(int capacity, long ttl) {
+        return new ConcurrentLruCache<String, String>(capacity, ttl);
+    }
+
+    @Test
+    public void idleEntriesRemovalTest() throws InterruptedException {
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(10, Long.MAX_VALUE);
+
+        cache.setTimeToIdle(20);
+
+        for (int i = 0; i < 5; ++i) {
+            cache.put("key" + i, "value");
+        }
+
+        Thread.sleep(40);
+        cache.cleanUp();
+
+        assertEquals(0, cache.getSize());
+    }
+}
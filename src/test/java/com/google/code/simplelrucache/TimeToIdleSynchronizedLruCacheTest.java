@@ -0,0 +1,51 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class TimeToIdleSynchronizedLruCacheTest extends TimeToIdleTest {
+    @Override
+    protected BaseLruCache<String, String> createCache(int capacity, long ttl) {
+        return new SynchronizedLruCache<String, String>(capacity, ttl);
+    }
+
+    @Test
+    public void idleEntriesRemovalTest() throws InterruptedException {
+        SynchronizedLruCache<String, String> cache = new SynchronizedLruCache<String, String>(10, Long.MAX_VALUE);
+
+        cache.setTimeToIdle(20);
+
+        for (int i = 0; i < 5; ++i) {
+            cache.put("key" + i, "value");
+        }
+
+        Thread.sleep(40);
+
+        //each insertion removes idle eldest entry
+        cache.put("new", "value");
+
+        assertEquals(5, cache.getSize());
+        assertTrue(cache.contains("new"));
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+abstract public class TimeToIdleTest {
+    abstract protected BaseLruCache<String, String> createCache(int capacity, long ttl);
+
+    private BaseLruCache<String, String> createIdleCache(long ttl, long timeToIdle) {
+        BaseLruCache<String, String> cache = createCache(10, ttl);
+
+        cache.setTimeToIdle(timeToIdle);
+
+        return cache;
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void negativeTimeToIdleTest() {
+        createIdleCache(1000, -1);
+    }
+
+    @Test
+    public void readExtendsLifetimeTest() throws InterruptedException {
+        BaseLruCache<String, String> cache = createIdleCache(Long.MAX_VALUE, 100);
+
+        cache.put("used", "value");
+        cache.put("idle", "value");
+
+        for (int i = 0; i < 6; ++i) {
+            Thread.sleep(30);
+            assertEquals("value", cache.get("used"));
+        }
+
+        assertNull(cache.get("idle"));
+
+        Thread.sleep(150);
+
+        assertFalse(cache.contains("used"));
+    }
+
+    @Test
+    public void maximumLifetimeTest() throws InterruptedException {
+        BaseLruCache<String, String> cache = createIdleCache(100, 3600 * 1000);
+
+        cache.put("key", "value");
+
+        for (int i = 0; i < 3; ++i) {
+            Thread.sleep(20);
+            assertEquals("value", cache.get("key"));
+        }
+
+        Thread.sleep(100);
+
+        assertNull(cache.get("key"));
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class ValueCodecTest {
+    private static String payload() {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 200; ++i) {
+            builder.append("{\"id\":").append(i).append(",\"name\":\"ąę value\"},");
+        }
+
+        return builder.toString();
+    }
+
+    @Test
+    public void stringCodecTest() {
+        StringCodec codec = new StringCodec();
+
+        assertEquals(payload(), codec.decode(codec.encode(payload())));
+        assertArrayEquals(new byte[] {(byte) 0xc4, (byte) 0x85}, codec.encode("ą"));
+    }
+
+    @Test
+    public void serializableCodecTest() {
+        SerializableCodec<ArrayList<String>> codec = new SerializableCodec<ArrayList<String>>();
+        ArrayList<String> value = new ArrayList<String>(Arrays.asList("aa", "bb"));
+
+        assertEquals(value, codec.decode(codec.encode(value)));
+    }
+
+    @Test
+    public void deflateCodecTest() {
+        DeflateCodec<String> codec = new DeflateCodec<String>(new StringCodec());
+        String value = payload();
+        byte[] data = codec.encode(value);
+
+        assertTrue(data.length * 4 < new StringCodec().encode(value).length);
+        assertEquals(value, codec.decode(data));
+        assertEquals("", codec.decode(codec.encode("")));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void deflateCodecLevelTest() {
+        new DeflateCodec<String>(new StringCodec(), 10);
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void deflateCodecCorruptedDataTest() {
+        DeflateCodec<String> codec = new DeflateCodec<String>(new StringCodec());
+        byte[] data = codec.encode(payload());
+
+        codec.decode(Arrays.copyOf(data, data.length / 2));
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class WeakKeyConcurrentLruCacheTest extends OrderedLruCacheTest {
+    @Override
+    protected OrderedLruCache<String, String> createCache(int capacity, long ttl) {
+        return new WeakKeyConcurrentLruCache<String, String>(capacity, ttl);
+    }
+
+    @Test
+    public void identityTest() {
+        WeakKeyConcurrentLruCache<String, String> cache = new WeakKeyConcurrentLruCache<String, String>(10, 3600 * 1000);
+        String key = new String("key");
+        String equalKey = new String("key");
+
+        cache.put(key, "value");
+
+        assertEquals("value", cache.get(key));
+        assertNull(cache.get(equalKey));
+
+        cache.put(equalKey, "value2");
+
+        assertEquals(2, cache.getSize());
+        assertEquals("value", cache.get(key));
+        assertEquals("value2", cache.get(equalKey));
+    }
+
+    @Test
+    public void collectedKeyTest() throws InterruptedException {
+        WeakKeyConcurrentLruCache<Object, String> cache = new WeakKeyConcurrentLruCache<Object, String>(10, 3600 * 1000);
+        Object key = new Object();
+        Object liveKey = new Object();
+        WeakReference<Object> reference = new WeakReference<Object>(key);
+
+        cache.put(key, "value");
+        cache.put(liveKey, "value2");
+        key = null;
+
+        for (int i = 0; i < 50 && reference.get() != null; ++i) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        //collected reference is enqueued asynchronously
+        for (int i = 0; i < 50 && cache.getSize() > 1; ++i) {
+            cache.cleanUp();
+            Thread.sleep(10);
+        }
+
+        assertNull(reference.get());
+        assertEquals(1, cache.getSize());
+        assertEquals("value2", cache.get(liveKey));
+        assertEquals(1, cache.orderedEntries().size());
+    }
+}
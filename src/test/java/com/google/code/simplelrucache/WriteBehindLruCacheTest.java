@@ -0,0 +1,241 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class WriteBehindLruCacheTest {
+    /**
+     * Keeps written values in map and records batch sizes, first failures
+     * calls fail
+     */
+    private static class BatchWriter implements CacheWriter<String, String> {
+        final Map<String, String> store = new ConcurrentHashMap<String, String>();
+        final List<Integer> batches = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger writes = new AtomicInteger();
+        final AtomicInteger failures;
+
+        BatchWriter(int failures) {
+            this.failures = new AtomicInteger(failures);
+        }
+
+        @Override
+        public void write(String key, String value) throws Exception {
+            writeAll(Collections.singletonMap(key, value));
+        }
+
+        @Override
+        public void writeAll(Map<String, String> values) throws Exception {
+            if (failures.getAndDecrement() > 0) throw new Exception("store unavailable");
+
+            batches.add(values.size());
+            writes.addAndGet(values.size());
+            store.putAll(values);
+        }
+
+        @Override
+        public void delete(String key) throws Exception {
+            deleteAll(Collections.singleton(key));
+        }
+
+        @Override
+        public void deleteAll(Collection<String> keys) throws Exception {
+            if (failures.getAndDecrement() > 0) throw new Exception("store unavailable");
+
+            batches.add(keys.size());
+            store.keySet().removeAll(keys);
+        }
+    }
+
+    private static LruCache<String, String> newCache() {
+        return new SynchronizedLruCache<String, String>(1000, 3600 * 1000);
+    }
+
+    @Test
+    public void coalescingTest() throws InterruptedException {
+        BatchWriter writer = new BatchWriter(0);
+        WriteBehindLruCache<String, String> cache = new WriteBehindLruCache<String, String>(newCache(), writer, 100, 3600 * 1000, 0, 0);
+
+        for (int i = 0; i < 10; ++i) {
+            cache.put("key", "value" + i);
+
+            //cache is updated immediately
+            assertEquals("value" + i, cache.get("key"));
+        }
+
+        cache.put("removed", "value");
+        cache.remove("removed");
+        assertFalse(cache.contains("removed"));
+
+        assertEquals(2, cache.getPendingWrites());
+        cache.close();
+
+        assertEquals(1, writer.writes.get());
+        assertEquals("value9", writer.store.get("key"));
+        assertFalse(writer.store.containsKey("removed"));
+        assertEquals(0, cache.getPendingWrites());
+    }
+
+    @Test
+    public void sizeBoundedBatchTest() throws InterruptedException {
+        BatchWriter writer = new BatchWriter(0);
+        WriteBehindLruCache<String, String> cache = new WriteBehindLruCache<String, String>(newCache(), writer, 10, 3600 * 1000, 0, 0);
+
+        for (int i = 0; i < 35; ++i) {
+            cache.put("key" + i, "value" + i);
+        }
+
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (writer.writes.get() < 30 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        cache.close();
+
+        assertEquals(35, writer.store.size());
+        assertEquals(10, writer.batches.get(0).intValue());
+        assertEquals(10, writer.batches.get(1).intValue());
+        assertEquals(10, writer.batches.get(2).intValue());
+        assertEquals(5, writer.batches.get(3).intValue());
+    }
+
+    @Test
+    public void timeBoundedBatchTest() throws InterruptedException {
+        BatchWriter writer = new BatchWriter(0);
+        WriteBehindLruCache<String, String> cache = new WriteBehindLruCache<String, String>(newCache(), writer, 100, 50, 0, 0);
+
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (writer.store.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals("value1", writer.store.get("key1"));
+        assertEquals("value2", writer.store.get("key2"));
+
+        cache.close();
+    }
+
+    @Test
+    public void retryTest() throws InterruptedException {
+        BatchWriter writer = new BatchWriter(2);
+        WriteBehindLruCache<String, String> cache = new WriteBehindLruCache<String, String>(newCache(), writer, 100, 3600 * 1000, 2, 1);
+
+        cache.put("key", "value");
+        cache.flush();
+
+        assertEquals("value", writer.store.get("key"));
+        assertEquals(0, cache.getFailedWrites());
+
+        writer.failures.set(3);
+        cache.put("key", "other");
+        cache.flush();
+
+        assertEquals("value", writer.store.get("key"));
+        assertEquals(1, cache.getFailedWrites());
+
+        cache.close();
+    }
+
+    @Test
+    public void pendingValueLoadTest() throws Exception {
+        BatchWriter writer = new BatchWriter(0);
+        //capacity 1 evicts written value before it reaches store
+        WriteBehindLruCache<String, String> cache = new WriteBehindLruCache<String, String>(new SynchronizedLruCache<String, String>(1, 3600 * 1000), writer, 100, 3600 * 1000, 0, 0);
+        Callable<String> stale = new Callable<String>() {
+            @Override
+            public String call() {
+                return "stale";
+            }
+        };
+
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+
+        assertFalse(cache.contains("key1"));
+        assertEquals("value1", cache.get("key1", stale));
+
+        //queued delete isn't reverted by load either
+        cache.remove("key1");
+        assertNull(cache.get("key1", stale));
+
+        cache.close();
+        assertTrue(writer.store.containsKey("key2"));
+        assertFalse(writer.store.containsKey("key1"));
+    }
+
+    @Test
+    public void writeAfterCloseTest() throws InterruptedException {
+        BatchWriter writer = new BatchWriter(0);
+        WriteBehindLruCache<String, String> cache = new WriteBehindLruCache<String, String>(newCache(), writer, 100, 3600 * 1000, 0, 0);
+
+        cache.close();
+
+        //written synchronously, flush thread is gone
+        for (int i = 0; i < 10; ++i) {
+            cache.put("key" + i, "value" + i);
+
+            assertEquals("value" + i, writer.store.get("key" + i));
+        }
+
+        cache.remove("key0");
+
+        assertFalse(writer.store.containsKey("key0"));
+        assertEquals(0, cache.getPendingWrites());
+    }
+
+    @Test
+    public void closeDuringRetryTest() throws InterruptedException {
+        BatchWriter writer = new BatchWriter(1);
+        WriteBehindLruCache<String, String> cache = new WriteBehindLruCache<String, String>(newCache(), writer, 100, 0, 1, 200);
+
+        cache.put("key", "value");
+
+        long deadline = System.currentTimeMillis() + 10000;
+
+        //first attempt failed, flush thread waits before retry
+        while (writer.failures.get() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        cache.close();
+
+        assertEquals("value", writer.store.get("key"));
+        assertEquals(0, cache.getFailedWrites());
+    }
+}
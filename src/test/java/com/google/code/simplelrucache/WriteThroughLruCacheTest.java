@@ -0,0 +1,192 @@
+/**
+ * Copyright 2011 Damian Momot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.simplelrucache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Damian Momot
+ */
+public class WriteThroughLruCacheTest extends LruCacheTest {
+    /**
+     * Keeps written values in map, fails when failing is set
+     */
+    private static class MapWriter implements CacheWriter<String, String> {
+        final Map<String, String> store = new ConcurrentHashMap<String, String>();
+        volatile boolean failing;
+
+        @Override
+        public void write(String key, String value) throws Exception {
+            if (failing) throw new Exception("store unavailable");
+
+            store.put(key, value);
+        }
+
+        @Override
+        public void writeAll(Map<String, String> values) throws Exception {
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                write(entry.getKey(), entry.getValue());
+            }
+        }
+
+        @Override
+        public void delete(String key) throws Exception {
+            if (failing) throw new Exception("store unavailable");
+
+            store.remove(key);
+        }
+
+        @Override
+        public void deleteAll(Collection<String> keys) throws Exception {
+            for (String key : keys) {
+                delete(key);
+            }
+        }
+    }
+
+    @Override
+    protected LruCache<String, String> createCache(int capacity, long ttl) {
+        return new WriteThroughLruCache<String, String>(new SynchronizedLruCache<String, String>(capacity, ttl), new MapWriter());
+    }
+
+    @Test
+    public void writeThroughTest() throws Exception {
+        MapWriter writer = new MapWriter();
+        LruCache<String, String> cache = new WriteThroughLruCache<String, String>(new SynchronizedLruCache<String, String>(10, 3600 * 1000), writer);
+
+        cache.put("key1", "value1");
+        assertEquals("value1", writer.store.get("key1"));
+
+        assertEquals("value1", cache.putIfAbsent("key1", "other"));
+        assertNull(cache.putIfAbsent("key2", "value2"));
+        assertEquals("value2", writer.store.get("key2"));
+
+        assertFalse(cache.replace("key1", "other", "value3"));
+        assertTrue(cache.replace("key1", "value1", "value3"));
+        assertEquals("value3", writer.store.get("key1"));
+
+        cache.computeIfPresent("key1", new ValueUpdater<String, String>() {
+            @Override
+            public String update(String key, String value) {
+                return value + "!";
+            }
+        });
+        assertEquals("value3!", writer.store.get("key1"));
+
+        assertFalse(cache.remove("key2", "other"));
+        assertTrue(cache.remove("key2", "value2"));
+        assertFalse(writer.store.containsKey("key2"));
+
+        cache.remove("key1");
+        assertTrue(writer.store.isEmpty());
+    }
+
+    @Test
+    public void loadedValueNotWrittenTest() throws Exception {
+        MapWriter writer = new MapWriter();
+        LruCache<String, String> cache = new WriteThroughLruCache<String, String>(new SynchronizedLruCache<String, String>(10, 3600 * 1000), writer);
+
+        assertEquals("loaded", cache.get("key", new Callable<String>() {
+            @Override
+            public String call() {
+                return "loaded";
+            }
+        }));
+        assertTrue(writer.store.isEmpty());
+    }
+
+    @Test
+    public void failedWriteTest() throws Exception {
+        MapWriter writer = new MapWriter();
+        LruCache<String, String> cache = new WriteThroughLruCache<String, String>(new SynchronizedLruCache<String, String>(10, 3600 * 1000), writer);
+
+        cache.put("key1", "value1");
+        writer.failing = true;
+
+        try {
+            cache.put("key1", "value2");
+            fail();
+        } catch (CacheWriterException e) {
+            //expected
+        }
+
+        try {
+            cache.remove("key1");
+            fail();
+        } catch (CacheWriterException e) {
+            //expected
+        }
+
+        try {
+            cache.computeIfPresent("key1", new ValueUpdater<String, String>() {
+                @Override
+                public String update(String key, String value) {
+                    return "value3";
+                }
+            });
+            fail();
+        } catch (Exception e) {
+            assertEquals("store unavailable", e.getMessage());
+        }
+
+        assertEquals("value1", cache.get("key1"));
+        assertEquals("value1", writer.store.get("key1"));
+    }
+
+    @Test
+    public void evictedDuringWriteTest() throws Exception {
+        final LruCache<String, String> backing = new SynchronizedLruCache<String, String>(10, 3600 * 1000);
+        //entry is evicted while store is written
+        MapWriter writer = new MapWriter() {
+            @Override
+            public void write(String key, String value) throws Exception {
+                super.write(key, value);
+                backing.clear();
+            }
+
+            @Override
+            public void delete(String key) throws Exception {
+                super.delete(key);
+                backing.clear();
+            }
+        };
+        LruCache<String, String> cache = new WriteThroughLruCache<String, String>(backing, writer);
+
+        backing.put("key", "value1");
+
+        assertTrue(cache.replace("key", "value1", "value2"));
+        assertEquals("value2", writer.store.get("key"));
+        assertEquals("value2", cache.get("key"));
+
+        backing.put("key", "value2");
+
+        assertTrue(cache.remove("key", "value2"));
+        assertFalse(writer.store.containsKey("key"));
+        assertNull(cache.get("key"));
+    }
+}